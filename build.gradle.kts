@@ -101,3 +101,27 @@ task<JavaExec>("prelude") {
     args = listOf(preludeOutputDir)
     dependsOn("copyPrelude")
 }
+
+
+// Benchmarks
+
+val jmhVersion = "1.21"
+
+val jmhSourceSet = java.sourceSets.create("jmh") {
+    compileClasspath += java.sourceSets["main"].output + configurations.runtimeClasspath
+    runtimeClasspath += output + compileClasspath
+}
+
+dependencies {
+    "jmhCompile"("org.openjdk.jmh:jmh-core:$jmhVersion")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+}
+
+task<JavaExec>("jmh") {
+    description = "Runs JMH benchmarks; use -PjmhArgs=\"...\" to pass options to JMH, for example a benchmark name pattern"
+    group = "Verification"
+    main = "org.openjdk.jmh.Main"
+    classpath = jmhSourceSet.runtimeClasspath
+    args = (project.findProperty("jmhArgs") as String?)?.split(" ")?.filter { it.isNotEmpty() } ?: emptyList()
+    dependsOn("jmhClasses")
+}
@@ -0,0 +1,104 @@
+package org.arend.benchmark;
+
+import org.arend.core.definition.Definition;
+import org.arend.error.ListErrorReporter;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.library.FileSourceLibrary;
+import org.arend.library.LibraryManager;
+import org.arend.module.ModulePath;
+import org.arend.naming.reference.Referable;
+import org.arend.naming.reference.TCReferable;
+import org.arend.naming.scope.Scope;
+import org.arend.prelude.Prelude;
+import org.arend.prelude.PreludeFileLibrary;
+import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.ConcurrentTypecheckerState;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.arend.util.FileUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Sets up an environment in which a module can be loaded and typechecked.
+ * The prelude is typechecked from lib/Prelude.ard, so benchmarks should be run from the root of the repository.
+ */
+public abstract class ArendBenchmark {
+  protected final TypecheckerState typecheckerState = new ConcurrentTypecheckerState();
+  protected final ListErrorReporter errorReporter = new ListErrorReporter();
+  protected LibraryManager libraryManager;
+  protected FileSourceLibrary library;
+  private Path mySourceDir;
+
+  protected void loadPrelude() {
+    libraryManager = new LibraryManager(name -> { throw new IllegalStateException(); }, new InstanceProviderSet(), errorReporter, errorReporter);
+    PreludeFileLibrary preludeLibrary = new PreludeFileLibrary(null, typecheckerState);
+    if (!libraryManager.loadLibrary(preludeLibrary)) {
+      throw new IllegalStateException("Cannot load prelude");
+    }
+    new Prelude.PreludeTypechecking(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE).typecheckLibrary(preludeLibrary);
+    checkErrors();
+  }
+
+  /**
+   * Loads and typechecks a module.
+   * The module is written to a temporary directory which is deleted by {@link #cleanup}.
+   */
+  protected void loadModule(String name, String text) throws IOException {
+    mySourceDir = Files.createTempDirectory("arend-benchmark");
+    ModulePath modulePath = new ModulePath(name);
+    Files.write(FileUtils.sourceFile(mySourceDir, modulePath), text.getBytes(StandardCharsets.UTF_8));
+
+    library = new FileSourceLibrary("benchmark", mySourceDir, null, Collections.singleton(modulePath), true, Collections.emptyList(), typecheckerState);
+    if (!libraryManager.loadLibrary(library)) {
+      throw new IllegalStateException("Cannot load module " + name);
+    }
+    checkErrors();
+    newTypechecking().typecheckLibrary(library);
+    checkErrors();
+  }
+
+  protected TypecheckingOrderingListener newTypechecking() {
+    return new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, errorReporter, PositionComparator.INSTANCE);
+  }
+
+  protected TCReferable getReferable(String name) {
+    Scope scope = library.getModuleScopeProvider().forModule(library.getLoadedModules().iterator().next());
+    Referable referable = scope == null ? null : scope.resolveName(name);
+    if (!(referable instanceof TCReferable)) {
+      throw new IllegalStateException("Cannot find definition " + name);
+    }
+    return (TCReferable) referable;
+  }
+
+  protected Definition getDefinition(String name) {
+    return typecheckerState.getTypechecked(getReferable(name));
+  }
+
+  protected Concrete.Definition getConcrete(String name) {
+    return (Concrete.Definition) ConcreteReferableProvider.INSTANCE.getConcrete(getReferable(name));
+  }
+
+  protected void checkErrors() {
+    if (!errorReporter.getErrorList().isEmpty()) {
+      throw new IllegalStateException(errorReporter.getErrorList().iterator().next().toString());
+    }
+  }
+
+  protected void cleanup() throws IOException {
+    if (mySourceDir != null) {
+      try (Stream<Path> files = Files.walk(mySourceDir)) {
+        files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+      }
+      mySourceDir = null;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package org.arend.benchmark;
+
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.FunCallExpression;
+import org.arend.core.expr.SmallIntegerExpression;
+import org.arend.core.expr.visitor.NormalizationCache;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.core.sort.Sort;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures evaluation of arithmetic and of recursive functions defined by pattern matching.
+ * The benchmarks are run without {@link NormalizationCache}, with a cold cache, and with a warm cache.
+ * A cold cache is cleared inside every invocation, so it measures the reuse of normal forms within a single normalization and includes the cost of clearing.
+ * A warm cache is cleared only before every iteration, so it measures lookups of normal forms computed by earlier invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizationBenchmark extends ArendBenchmark {
+  private static final String MODULE =
+    "\\func arith (n : Nat) : Nat => n Nat.* n Nat.+ Nat.div (n Nat.* 1000) 7\n" +
+    "\\func fib (n : Nat) : Nat\n" +
+    "  | 0 => 0\n" +
+    "  | 1 => 1\n" +
+    "  | suc (suc n) => fib n Nat.+ fib (suc n)\n" +
+    "\\func unary (n : Nat) : Nat\n" +
+    "  | 0 => 0\n" +
+    "  | suc n => suc (suc (unary n))\n";
+
+  @Param({"none", "cold", "warm"})
+  public String cache;
+
+  private NormalizationCache myCache;
+  private Expression myArith;
+  private Expression myFib;
+  private Expression myUnary;
+
+  private static Expression call(FunctionDefinition definition, int argument) {
+    return new FunCallExpression(definition, Sort.SET0, Collections.singletonList(new SmallIntegerExpression(argument)));
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    myCache = cache.equals("none") ? null : new NormalizationCache();
+    loadPrelude();
+    loadModule("Normalization", MODULE);
+    myArith = call((FunctionDefinition) getDefinition("arith"), 123456);
+    myFib = call((FunctionDefinition) getDefinition("fib"), 15);
+    myUnary = call((FunctionDefinition) getDefinition("unary"), 100);
+  }
+
+  @Setup(Level.Iteration)
+  public void clearCache() {
+    if (myCache != null) {
+      myCache.clear();
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    cleanup();
+  }
+
+  private Expression normalize(Expression expr, NormalizeVisitor.Mode mode) {
+    if (myCache != null && cache.equals("cold")) {
+      myCache.clear();
+    }
+    NormalizationCache previous = NormalizationCache.setCurrent(myCache);
+    try {
+      return expr.normalize(mode);
+    } finally {
+      NormalizationCache.setCurrent(previous);
+    }
+  }
+
+  @Benchmark
+  public Expression whnfArithmetic() {
+    return normalize(myArith, NormalizeVisitor.Mode.WHNF);
+  }
+
+  @Benchmark
+  public Expression nfArithmetic() {
+    return normalize(myArith, NormalizeVisitor.Mode.NF);
+  }
+
+  @Benchmark
+  public Expression nfTreeRecursion() {
+    return normalize(myFib, NormalizeVisitor.Mode.NF);
+  }
+
+  @Benchmark
+  public Expression nfLinearRecursion() {
+    return normalize(myUnary, NormalizeVisitor.Mode.NF);
+  }
+}
@@ -0,0 +1,24 @@
+package org.arend.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading and typechecking of lib/Prelude.ard.
+ * Prelude is loaded only once per JVM (see {@link org.arend.prelude.PreludeLibrary}),
+ * so every measurement is a single shot in a new fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class PreludeBenchmark extends ArendBenchmark {
+  @Benchmark
+  public Object typecheckPrelude() {
+    loadPrelude();
+    return typecheckerState;
+  }
+}
@@ -0,0 +1,85 @@
+package org.arend.benchmark;
+
+import org.arend.module.ModulePath;
+import org.arend.module.scopeprovider.ModuleScopeProvider;
+import org.arend.module.serialization.DeserializationException;
+import org.arend.module.serialization.ModuleDeserialization;
+import org.arend.module.serialization.ModuleProtos;
+import org.arend.module.serialization.ModuleSerialization;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.order.dependency.DummyDependencyListener;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing and reading of a typechecked module through {@link ModuleSerialization} and {@link ModuleDeserialization}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark extends ArendBenchmark {
+  private static final int DEFINITIONS = 20;
+
+  private ModulePath myModulePath;
+  private ChildGroup myGroup;
+  private ModuleScopeProvider myModuleScopeProvider;
+  private byte[] myBytes;
+
+  private static String module() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < DEFINITIONS; i++) {
+      builder
+        .append("\\data List").append(i).append(" (A : \\Type) | nil").append(i).append(" | cons").append(i).append(" A (List").append(i).append(" A)\n")
+        .append("\\func length").append(i).append(" {A : \\Type} (xs : List").append(i).append(" A) : Nat\n")
+        .append("  | nil").append(i).append(" => 0\n")
+        .append("  | cons").append(i).append(" _ xs => suc (length").append(i).append(" xs)\n")
+        .append("\\class Monoid").append(i).append(" (E : \\Set) {\n")
+        .append("  | ide").append(i).append(" : E\n")
+        .append("  | op").append(i).append(" : E -> E -> E\n")
+        .append("  | ide-left").append(i).append(" (x : E) : op").append(i).append(" ide").append(i).append(" x = x\n")
+        .append("}\n");
+    }
+    return builder.toString();
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    loadPrelude();
+    loadModule("Serialization", module());
+    myModulePath = library.getLoadedModules().iterator().next();
+    myGroup = library.getModuleGroup(myModulePath);
+    myModuleScopeProvider = libraryManager.getAvailableModuleScopeProvider(library);
+    myBytes = serialize().toByteArray();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    cleanup();
+  }
+
+  private ModuleProtos.Module serialize() {
+    ModuleProtos.Module module = new ModuleSerialization(typecheckerState, errorReporter).writeModule(myGroup, myModulePath, IdReferableConverter.INSTANCE);
+    checkErrors();
+    return module;
+  }
+
+  @Benchmark
+  public byte[] write() {
+    return serialize().toByteArray();
+  }
+
+  @Benchmark
+  public ModuleDeserialization read() throws IOException, DeserializationException {
+    library.unloadGroup(myGroup);
+    ModuleDeserialization deserialization = new ModuleDeserialization(ModuleProtos.Module.parseFrom(myBytes), typecheckerState, IdReferableConverter.INSTANCE);
+    deserialization.readDefinitions(myGroup);
+    deserialization.readModule(myModuleScopeProvider, DummyDependencyListener.INSTANCE, true);
+    return deserialization;
+  }
+}
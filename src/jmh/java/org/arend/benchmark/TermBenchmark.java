@@ -0,0 +1,87 @@
+package org.arend.benchmark;
+
+import org.arend.core.context.binding.Binding;
+import org.arend.core.context.binding.TypedBinding;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.*;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.core.sort.Sort;
+import org.arend.typechecking.implicitargs.equations.Equations;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link org.arend.core.expr.visitor.CompareVisitor} and {@link org.arend.core.subst.SubstVisitor} on a large term.
+ * The term is the normal form of a function applied to a variable;
+ * it consists of nested lambdas and tuples of stuck calls of arithmetic functions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TermBenchmark extends ArendBenchmark {
+  @Param({"16", "64"})
+  public int size;
+
+  private Binding myVariable;
+  private Expression myTerm;
+  private Expression myTermCopy;
+  private Expression myDifferentTerm;
+
+  private String module() {
+    StringBuilder builder = new StringBuilder("\\func term (x : Nat) => \\lam");
+    for (int i = 0; i < size; i++) {
+      builder.append(" (y").append(i).append(" : Nat)");
+    }
+    builder.append(" =>");
+    for (int i = 0; i < size; i++) {
+      builder.append(" (x Nat.+ y").append(i).append(",");
+    }
+    builder.append(" x");
+    for (int i = 0; i < size; i++) {
+      builder.append(")");
+    }
+    return builder.toString();
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    loadPrelude();
+    loadModule("Term", module());
+    FunctionDefinition term = (FunctionDefinition) getDefinition("term");
+    myVariable = new TypedBinding("z", ExpressionFactory.Nat());
+    myTerm = new FunCallExpression(term, Sort.SET0, Collections.singletonList(new ReferenceExpression(myVariable))).normalize(NormalizeVisitor.Mode.NF);
+    myTermCopy = myTerm.copy();
+    myDifferentTerm = myTerm.subst(myVariable, new SmallIntegerExpression(0));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    cleanup();
+  }
+
+  @Benchmark
+  public boolean compareEqual() {
+    return Expression.compare(myTerm, myTermCopy, Equations.CMP.EQ);
+  }
+
+  @Benchmark
+  public boolean compareDifferent() {
+    return Expression.compare(myTerm, myDifferentTerm, Equations.CMP.EQ);
+  }
+
+  @Benchmark
+  public Expression substVariable() {
+    return myTerm.subst(myVariable, new SmallIntegerExpression(42));
+  }
+
+  @Benchmark
+  public Expression copy() {
+    return myTerm.copy();
+  }
+}
@@ -0,0 +1,79 @@
+package org.arend.benchmark;
+
+import org.arend.naming.reference.TCReferable;
+import org.arend.term.concrete.Concrete;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures typechecking of definitions which produce many inference variables and level equations,
+ * so most of the time is spent in {@link org.arend.typechecking.implicitargs.equations.TwoStageEquations}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypecheckingBenchmark extends ArendBenchmark {
+  @Param({"16", "64"})
+  public int depth;
+
+  private TCReferable myValuesRef;
+  private Concrete.Definition myValues;
+  private TCReferable myTypesRef;
+  private Concrete.Definition myTypes;
+
+  private String module() {
+    StringBuilder values = new StringBuilder("\\func values => ");
+    StringBuilder types = new StringBuilder("\\func types => ");
+    for (int i = 0; i < depth; i++) {
+      values.append("id (suc (");
+      types.append("id (\\Sigma \\Type (");
+    }
+    values.append("0");
+    types.append("Nat");
+    for (int i = 0; i < depth; i++) {
+      values.append("))");
+      types.append("))");
+    }
+
+    return
+      "\\func id {A : \\Type} (a : A) => a\n" +
+      values + "\n" +
+      types + "\n";
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    loadPrelude();
+    loadModule("Typechecking", module());
+    myValuesRef = getReferable("values");
+    myValues = getConcrete("values");
+    myTypesRef = getReferable("types");
+    myTypes = getConcrete("types");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    cleanup();
+  }
+
+  private boolean typecheck(TCReferable referable, Concrete.Definition definition) {
+    typecheckerState.reset(referable);
+    return newTypechecking().typecheckDefinitions(Collections.singletonList(definition));
+  }
+
+  @Benchmark
+  public boolean inferValueArguments() {
+    return typecheck(myValuesRef, myValues);
+  }
+
+  @Benchmark
+  public boolean inferUniverseLevels() {
+    return typecheck(myTypesRef, myTypes);
+  }
+}
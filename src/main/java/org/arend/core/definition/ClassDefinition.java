@@ -11,6 +11,7 @@ import java.util.*;
 
 public class ClassDefinition extends Definition {
   private final Set<ClassDefinition> mySuperClasses;
+  private volatile Set<ClassDefinition> myAncestors; // direct and indirect super classes; null if it is not computed yet
   private final LinkedHashSet<ClassField> myFields;
   private final List<ClassField> myPersonalFields;
   private final Map<ClassField, LamExpression> myImplemented;
@@ -142,11 +143,31 @@ public class ClassDefinition extends Definition {
   }
 
   public boolean isSubClassOf(ClassDefinition classDefinition) {
-    if (this.equals(classDefinition)) return true;
+    return this.equals(classDefinition) || getAncestors().contains(classDefinition);
+  }
+
+  /**
+   * @return the set of direct and indirect super classes of this class.
+   *         It is computed by {@link #updateAncestors} or on the first request after super classes of this class change.
+   */
+  public Set<? extends ClassDefinition> getAncestors() {
+    Set<ClassDefinition> ancestors = myAncestors;
+    return ancestors != null ? ancestors : updateAncestors();
+  }
+
+  /**
+   * Computes the set of direct and indirect super classes of this class.
+   * It should be invoked when super classes of this class and their ancestors are filled in,
+   * that is, after super classes of a class are typechecked and after all classes of a module are deserialized.
+   */
+  public Set<? extends ClassDefinition> updateAncestors() {
+    Set<ClassDefinition> ancestors = new HashSet<>();
     for (ClassDefinition superClass : mySuperClasses) {
-      if (superClass.isSubClassOf(classDefinition)) return true;
+      ancestors.add(superClass);
+      ancestors.addAll(superClass.getAncestors());
     }
-    return false;
+    myAncestors = ancestors;
+    return ancestors;
   }
 
   public Set<? extends ClassDefinition> getSuperClasses() {
@@ -155,6 +176,7 @@ public class ClassDefinition extends Definition {
 
   public void addSuperClass(ClassDefinition superClass) {
     mySuperClasses.add(superClass);
+    myAncestors = null;
   }
 
   public Set<? extends ClassField> getFields() {
@@ -249,6 +271,7 @@ public class ClassDefinition extends Definition {
 
   public void clear() {
     mySuperClasses.clear();
+    myAncestors = null;
     myFields.clear();
     myPersonalFields.clear();
     myImplemented.clear();
@@ -22,6 +22,7 @@ import java.util.List;
 
 public class Constructor extends Definition implements Function {
   private final DataDefinition myDataType;
+  private int myIndex = -1;
   private DependentLink myParameters;
   private Patterns myPatterns;
   private Body myConditions;
@@ -86,6 +87,17 @@ public class Constructor extends Definition implements Function {
     return myDataType;
   }
 
+  /**
+   * @return the position of this constructor in {@link DataDefinition#getConstructors} or -1 if it was not added to its data type.
+   */
+  public int getIndex() {
+    return myIndex;
+  }
+
+  void setIndex(int index) {
+    myIndex = index;
+  }
+
   public DependentLink getDataTypeParameters() {
     return myDataType.status().headerIsOK() ? (myPatterns == null ? myDataType.getParameters() : myPatterns.getFirstBinding()) : EmptyDependentLink.getInstance();
   }
@@ -13,11 +13,14 @@ import org.arend.typechecking.implicitargs.equations.Equations;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class Definition implements Variable {
   private TCReferable myReferable;
   private TypeCheckingStatus myStatus;
   private boolean myHasUniverses;
+  private volatile Map<Long, Expression> myInternedCalls;
 
   public Definition(TCReferable referable, TypeCheckingStatus status) {
     myReferable = referable;
@@ -33,6 +36,14 @@ public abstract class Definition implements Variable {
     return myReferable;
   }
 
+  /**
+   * Replaces the referable of this definition.
+   * It is used to keep a typechecked definition when its module is parsed again.
+   */
+  public void setReferable(TCReferable referable) {
+    myReferable = referable;
+  }
+
   public DependentLink getParameters() {
     return EmptyDependentLink.getInstance();
   }
@@ -41,6 +52,24 @@ public abstract class Definition implements Variable {
 
   public abstract Expression getDefCall(Sort sortArgument, List<Expression> args);
 
+  /**
+   * Gets the table of interned argument-free calls of this definition.
+   * It is maintained by {@link org.arend.core.expr.ExpressionFactory#DefCall}.
+   */
+  public Map<Long, Expression> getInternedCalls() {
+    Map<Long, Expression> calls = myInternedCalls;
+    if (calls == null) {
+      synchronized (this) {
+        calls = myInternedCalls;
+        if (calls == null) {
+          calls = new ConcurrentHashMap<>(4);
+          myInternedCalls = calls;
+        }
+      }
+    }
+    return calls;
+  }
+
   public CoerceData getCoerceData() {
     return null;
   }
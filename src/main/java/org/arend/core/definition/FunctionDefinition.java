@@ -13,12 +13,14 @@ import org.arend.naming.reference.TCReferable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class FunctionDefinition extends Definition implements Function {
   private DependentLink myParameters;
   private Expression myResultType;
   private Expression myResultTypeLevel;
   private Body myBody;
+  private volatile Supplier<Body> myLazyBody;
   private List<Integer> myParametersTypecheckingOrder;
   private boolean myLemma;
   private List<Boolean> myGoodThisParameters = Collections.emptyList();
@@ -33,15 +35,43 @@ public class FunctionDefinition extends Definition implements Function {
 
   @Override
   public Body getBody() {
-    return myLemma ? null : myBody;
+    return myLemma ? null : getActualBody();
   }
 
   public Body getActualBody() {
+    if (myLazyBody != null) {
+      synchronized (this) {
+        Supplier<Body> lazyBody = myLazyBody;
+        if (lazyBody != null) {
+          myBody = lazyBody.get();
+          myLazyBody = null;
+        }
+      }
+    }
     return myBody;
   }
 
+  /**
+   * @return true if this function has a body; unlike {@link #getActualBody}, it does not compute a lazy body.
+   */
+  public boolean hasBody() {
+    return myBody != null || myLazyBody != null;
+  }
+
   public void setBody(Body body) {
     myBody = body;
+    myLazyBody = null;
+  }
+
+  /**
+   * Sets a body which is computed on first access.
+   * It is used to defer the deserialization of bodies until they are needed.
+   * Since errors in the body are detected only when it is computed, {@code lazyBody} should report them itself and return null;
+   * the function is treated as a function without a body in this case.
+   */
+  public void setLazyBody(Supplier<Body> lazyBody) {
+    myBody = null;
+    myLazyBody = lazyBody;
   }
 
   public boolean isLemma() {
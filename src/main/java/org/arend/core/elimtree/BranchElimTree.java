@@ -2,16 +2,16 @@ package org.arend.core.elimtree;
 
 import org.arend.core.context.param.DependentLink;
 import org.arend.core.definition.Constructor;
+import org.arend.core.definition.DataDefinition;
 import org.arend.core.expr.*;
 import org.arend.prelude.Prelude;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class BranchElimTree extends ElimTree {
   private final Map<Constructor, ElimTree> myChildren;
+  private final DataDefinition myDataType;
+  private final ElimTree[] myTable; // children indexed by Constructor.getIndex() or null if some constructors do not have indices
 
   public final static class TupleConstructor extends Constructor {
     private final int myLength;
@@ -29,9 +29,39 @@ public class BranchElimTree extends ElimTree {
   public BranchElimTree(DependentLink parameters, Map<Constructor, ElimTree> children) {
     super(parameters);
     myChildren = children;
+
+    DataDefinition dataType = null;
+    int size = 0;
+    for (Constructor constructor : children.keySet()) {
+      if (constructor == null || constructor instanceof TupleConstructor) {
+        continue;
+      }
+      if (constructor.getIndex() < 0 || dataType != null && constructor.getDataType() != dataType) {
+        dataType = null;
+        break;
+      }
+      dataType = constructor.getDataType();
+      size = Math.max(size, constructor.getIndex() + 1);
+    }
+
+    myDataType = dataType;
+    if (dataType != null) {
+      myTable = new ElimTree[size];
+      for (Map.Entry<Constructor, ElimTree> entry : children.entrySet()) {
+        if (entry.getKey() != null && !(entry.getKey() instanceof TupleConstructor)) {
+          myTable[entry.getKey().getIndex()] = entry.getValue();
+        }
+      }
+    } else {
+      myTable = null;
+    }
   }
 
   public ElimTree getChild(Constructor constructor) {
+    if (myTable != null && constructor != null && constructor.getDataType() == myDataType) {
+      int index = constructor.getIndex();
+      return index >= 0 && index < myTable.length ? myTable[index] : null;
+    }
     return myChildren.get(constructor);
   }
 
@@ -52,124 +82,99 @@ public class BranchElimTree extends ElimTree {
     return myChildren.entrySet();
   }
 
-  private List<Expression> getNewArguments(List<? extends Expression> arguments, Expression argument, int index) {
-    List<Expression> newArguments = null;
+  /**
+   * Matches the argument on the top of the stack.
+   * If it matches a constructor, the argument is replaced with its arguments.
+   *
+   * @return the child matching the argument, the child for the null constructor if the argument is a constructor which does not match,
+   *         or null if the argument is not a constructor or it does not match.
+   */
+  private ElimTree matchArgument(Deque<Expression> stack, Expression argument) {
     if (isTupleTree()) {
-      if (argument.isInstance(TupleExpression.class) || argument.isInstance(NewExpression.class)) {
-        if (argument.isInstance(TupleExpression.class)) {
-          newArguments = new ArrayList<>(argument.cast(TupleExpression.class).getFields());
-        } else {
-          newArguments = argument.cast(NewExpression.class).getExpression().getImplementedHereList();
-        }
-        newArguments.addAll(arguments.subList(index + 1, arguments.size()));
+      if (argument.isInstance(TupleExpression.class)) {
+        stack.pop();
+        pushArguments(stack, argument.cast(TupleExpression.class).getFields());
+        return getTupleChild();
+      } else if (argument.isInstance(NewExpression.class)) {
+        stack.pop();
+        pushArguments(stack, argument.cast(NewExpression.class).getExpression().getImplementedHereList());
+        return getTupleChild();
       }
     } else if (argument.isInstance(ConCallExpression.class)) {
       ConCallExpression conCall = argument.cast(ConCallExpression.class);
-      ElimTree elimTree = myChildren.get(conCall.getDefinition());
+      ElimTree elimTree = getChild(conCall.getDefinition());
       if (elimTree != null) {
-        newArguments = new ArrayList<>(conCall.getDefCallArguments().size() + arguments.size() - index - 1);
-        newArguments.addAll(conCall.getDefCallArguments());
-        newArguments.addAll(arguments.subList(index + 1, arguments.size()));
-      } else {
-        return new ArrayList<>(arguments.subList(index, arguments.size()));
+        stack.pop();
+        pushArguments(stack, conCall.getDefCallArguments());
+        return elimTree;
       }
+      return myChildren.get(null);
     } else if (argument.isInstance(IntegerExpression.class)) {
       IntegerExpression intExpr = argument.cast(IntegerExpression.class);
       boolean isZero = intExpr.isZero();
-      ElimTree elimTree = myChildren.get(isZero ? Prelude.ZERO : Prelude.SUC);
+      ElimTree elimTree = getChild(isZero ? Prelude.ZERO : Prelude.SUC);
       if (elimTree != null) {
-        newArguments = new ArrayList<>();
+        stack.pop();
         if (!isZero) {
-          newArguments.add(intExpr.pred());
+          stack.push(intExpr.pred());
         }
-        newArguments.addAll(arguments.subList(index + 1, arguments.size()));
-      } else {
-        return new ArrayList<>(arguments.subList(index, arguments.size()));
+        return elimTree;
       }
+      return myChildren.get(null);
     }
-    return newArguments;
+    return null;
   }
 
-  @Override
-  public boolean isWHNF(List<? extends Expression> arguments) {
-    int index = DependentLink.Helper.size(getParameters());
-    Expression argument = arguments.get(index);
-    if (!argument.isWHNF()) {
-      return false;
+  private static void pushArguments(Deque<Expression> stack, List<? extends Expression> arguments) {
+    for (int i = arguments.size() - 1; i >= 0; i--) {
+      stack.push(arguments.get(i));
     }
+  }
 
-    List<Expression> newArguments = getNewArguments(arguments, argument, index);
-    if (newArguments == null) {
-      return true;
+  private static Deque<Expression> skipParameters(ElimTree elimTree, Deque<Expression> stack) {
+    for (DependentLink link = elimTree.getParameters(); link.hasNext(); link = link.getNext()) {
+      stack.pop();
     }
+    return stack;
+  }
 
-    if (isTupleTree()) {
-      if (argument.isInstance(TupleExpression.class) || argument.isInstance(NewExpression.class)) {
-        ElimTree elimTree = getTupleChild();
-        if (elimTree != null) {
-          return elimTree.isWHNF(newArguments);
-        }
+  @Override
+  public boolean isWHNF(List<? extends Expression> arguments) {
+    Deque<Expression> stack = new ArrayDeque<>(arguments.size());
+    pushArguments(stack, arguments);
+    BranchElimTree elimTree = this;
+    while (true) {
+      Expression argument = skipParameters(elimTree, stack).peek();
+      if (!argument.isWHNF()) {
+        return false;
       }
-    } else if (argument.isInstance(ConCallExpression.class)) {
-      ConCallExpression conCall = argument.cast(ConCallExpression.class);
-      ElimTree elimTree = myChildren.get(conCall.getDefinition());
-      if (elimTree != null) {
-        return elimTree.isWHNF(newArguments);
-      } else {
-        elimTree = myChildren.get(null);
-        return elimTree == null || elimTree.isWHNF(newArguments);
+
+      ElimTree child = elimTree.matchArgument(stack, argument);
+      if (child == null) {
+        return true;
       }
-    } else if (argument.isInstance(IntegerExpression.class)) {
-      IntegerExpression intExpr = argument.cast(IntegerExpression.class);
-      ElimTree elimTree = myChildren.get(intExpr.isZero() ? Prelude.ZERO : Prelude.SUC);
-      if (elimTree != null) {
-        return elimTree.isWHNF(newArguments);
-      } else {
-        elimTree = myChildren.get(null);
-        return elimTree == null || elimTree.isWHNF(newArguments);
+      if (!(child instanceof BranchElimTree)) {
+        return child.isWHNF(new ArrayList<>(stack));
       }
+      elimTree = (BranchElimTree) child;
     }
-
-    return true;
   }
 
   @Override
   public Expression getStuckExpression(List<? extends Expression> arguments, Expression expression) {
-    int index = DependentLink.Helper.size(getParameters());
-    Expression argument = arguments.get(index);
-
-    List<Expression> newArguments = getNewArguments(arguments, argument, index);
-    if (newArguments == null) {
-      return argument.getStuckExpression();
-    }
-
-    if (isTupleTree()) {
-      if (argument.isInstance(TupleExpression.class) || argument.isInstance(NewExpression.class)) {
-        ElimTree elimTree = getTupleChild();
-        if (elimTree != null) {
-          return elimTree.getStuckExpression(newArguments, expression);
-        }
-      }
-    } else if (argument.isInstance(ConCallExpression.class)) {
-      ConCallExpression conCall = argument.cast(ConCallExpression.class);
-      ElimTree elimTree = myChildren.get(conCall.getDefinition());
-      if (elimTree != null) {
-        return elimTree.getStuckExpression(newArguments, expression);
-      } else {
-        elimTree = myChildren.get(null);
-        return elimTree != null ? elimTree.getStuckExpression(newArguments, expression) : expression;
+    Deque<Expression> stack = new ArrayDeque<>(arguments.size());
+    pushArguments(stack, arguments);
+    BranchElimTree elimTree = this;
+    while (true) {
+      Expression argument = skipParameters(elimTree, stack).peek();
+      ElimTree child = elimTree.matchArgument(stack, argument);
+      if (child == null) {
+        return !elimTree.isTupleTree() && (argument.isInstance(ConCallExpression.class) || argument.isInstance(IntegerExpression.class)) ? expression : argument.getStuckExpression();
       }
-    } else if (argument.isInstance(IntegerExpression.class)) {
-      IntegerExpression intExpr = argument.cast(IntegerExpression.class);
-      ElimTree elimTree = myChildren.get(intExpr.isZero() ? Prelude.ZERO : Prelude.SUC);
-      if (elimTree != null) {
-        return elimTree.getStuckExpression(newArguments, expression);
-      } else {
-        elimTree = myChildren.get(null);
-        return elimTree != null ? elimTree.getStuckExpression(newArguments, expression) : expression;
+      if (!(child instanceof BranchElimTree)) {
+        return child.getStuckExpression(new ArrayList<>(stack), expression);
       }
+      elimTree = (BranchElimTree) child;
     }
-
-    return argument.getStuckExpression();
   }
 }
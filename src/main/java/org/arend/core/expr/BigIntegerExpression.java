@@ -82,6 +82,12 @@ public class BigIntegerExpression extends IntegerExpression {
     return result.signum() >= 0 ? Pos(new BigIntegerExpression(result)) : Neg(new BigIntegerExpression(result.negate()));
   }
 
+  @Override
+  public IntegerExpression subtract(IntegerExpression expr) {
+    BigInteger result = myInteger.subtract(expr.getBigInteger());
+    return result.bitLength() < Integer.SIZE ? new SmallIntegerExpression(result.intValue()) : new BigIntegerExpression(result);
+  }
+
   @Override
   public BigIntegerExpression minus(int x) {
     return new BigIntegerExpression(myInteger.subtract(BigInteger.valueOf(x)));
@@ -27,6 +27,9 @@ import java.util.List;
 import java.util.Set;
 
 public abstract class Expression implements ExpectedType {
+  private int myStructuralHash; // 0 if it is not computed
+  private long myFreeVariablesFilter; // 0 if it is not computed
+
   public abstract <P, R> R accept(ExpressionVisitor<? super P, ? extends R> visitor, P params);
 
   @Override
@@ -42,6 +45,37 @@ public abstract class Expression implements ExpectedType {
     return this == obj || obj instanceof Expression && compare(this, (Expression) obj, Equations.CMP.EQ);
   }
 
+  /**
+   * @return a hash of this expression which does not depend on names of bound variables or 0 if it cannot be computed.
+   *         Expressions with the same hash are compared by {@link AlphaEquivalenceVisitor}.
+   */
+  public int structuralHash() {
+    return StructuralHashVisitor.hash(this);
+  }
+
+  public int getCachedStructuralHash() {
+    return myStructuralHash;
+  }
+
+  public void setCachedStructuralHash(int hash) {
+    myStructuralHash = hash;
+  }
+
+  /**
+   * @return a Bloom filter of variables which may occur in this expression, see {@link FreeVariablesFilterVisitor}.
+   */
+  public long freeVariablesFilter() {
+    return FreeVariablesFilterVisitor.filter(this);
+  }
+
+  public long getCachedFreeVariablesFilter() {
+    return myFreeVariablesFilter;
+  }
+
+  public void setCachedFreeVariablesFilter(long filter) {
+    myFreeVariablesFilter = filter;
+  }
+
   public boolean isError() {
     return isInstance(ErrorExpression.class) && !(cast(ErrorExpression.class).getError() instanceof GoalError);
   }
@@ -77,11 +111,11 @@ public abstract class Expression implements ExpectedType {
   }
 
   public boolean findBinding(Variable binding) {
-    return accept(new FindBindingVisitor(Collections.singleton(binding)), null) != null;
+    return FreeVariablesFilterVisitor.mayContain(this, binding) && accept(new FindBindingVisitor(Collections.singleton(binding)), null) != null;
   }
 
   public Variable findBinding(Set<? extends Variable> bindings) {
-    return accept(new FindBindingVisitor(bindings), null);
+    return FreeVariablesFilterVisitor.mayContainAny(this, bindings) ? accept(new FindBindingVisitor(bindings), null) : null;
   }
 
   public Expression strip(LocalErrorReporter errorReporter) {
@@ -89,7 +123,7 @@ public abstract class Expression implements ExpectedType {
   }
 
   public Expression copy() {
-    return accept(new SubstVisitor(new ExprSubstitution(), LevelSubstitution.EMPTY), null);
+    return accept(new SubstVisitor(new ExprSubstitution(), LevelSubstitution.EMPTY, true), null);
   }
 
   public final Expression subst(Variable binding, Expression substExpr) {
@@ -1,15 +1,137 @@
 package org.arend.core.expr;
 
+import org.arend.core.context.binding.LevelVariable;
 import org.arend.core.context.param.*;
-import org.arend.core.definition.ClassField;
+import org.arend.core.definition.*;
 import org.arend.core.expr.type.Type;
+import org.arend.core.sort.Level;
 import org.arend.core.sort.Sort;
 import org.arend.prelude.Prelude;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ExpressionFactory {
+  // Hash-consing
+
+  private static final int MAX_INTERNED_CONSTANT = 254;
+  private static final Map<Integer, Level> ourLevels = new ConcurrentHashMap<>();
+  private static final Map<Long, Sort> ourSorts = new ConcurrentHashMap<>();
+  private static final Map<Long, UniverseExpression> ourUniverses = new ConcurrentHashMap<>();
+  private static volatile boolean ourHashConsing = true;
+
+  public static boolean isHashConsing() {
+    return ourHashConsing;
+  }
+
+  /**
+   * Enables or disables interning of levels, sorts, universes, and argument-free definition calls.
+   * Interned objects are shared, so they can be compared by reference.
+   */
+  public static void setHashConsing(boolean hashConsing) {
+    ourHashConsing = hashConsing;
+  }
+
+  /**
+   * @return a key which uniquely determines {@code level} or -1 if the level cannot be interned.
+   */
+  private static int levelKey(Level level) {
+    if (level.isInfinity()) {
+      return 0;
+    }
+
+    LevelVariable var = level.getVar();
+    int varKey = var == null ? 1 : var == LevelVariable.PVAR ? 2 : var == LevelVariable.HVAR ? 3 : -1;
+    if (varKey == -1 || level.getConstant() > MAX_INTERNED_CONSTANT || level.getMaxConstant() > MAX_INTERNED_CONSTANT) {
+      return -1;
+    }
+    return varKey | (level.getConstant() + 1) << 2 | level.getMaxConstant() << 10;
+  }
+
+  /**
+   * @return a key which uniquely determines {@code sort} or -1 if the sort cannot be interned.
+   */
+  public static long sortKey(Sort sort) {
+    int pKey = levelKey(sort.getPLevel());
+    int hKey = pKey == -1 ? -1 : levelKey(sort.getHLevel());
+    return hKey == -1 ? -1 : (long) pKey << 32 | hKey;
+  }
+
+  public static Level internLevel(Level level) {
+    if (!ourHashConsing || level.isInfinity()) {
+      return level;
+    }
+    int key = levelKey(level);
+    if (key == -1) {
+      return level;
+    }
+    Level result = ourLevels.putIfAbsent(key, level);
+    return result == null ? level : result;
+  }
+
+  static {
+    ourSorts.put(sortKey(Sort.PROP), Sort.PROP);
+    ourSorts.put(sortKey(Sort.SET0), Sort.SET0);
+    ourSorts.put(sortKey(Sort.STD), Sort.STD);
+  }
+
+  public static Sort internSort(Sort sort) {
+    if (!ourHashConsing) {
+      return sort;
+    }
+    long key = sortKey(sort);
+    if (key == -1) {
+      return sort;
+    }
+    Sort result = ourSorts.get(key);
+    return result != null ? result : ourSorts.computeIfAbsent(key, k -> new Sort(internLevel(sort.getPLevel()), internLevel(sort.getHLevel())));
+  }
+
+  public static UniverseExpression internUniverse(Sort sort) {
+    if (!ourHashConsing) {
+      return new UniverseExpression(sort);
+    }
+    long key = sortKey(sort);
+    if (key == -1) {
+      return new UniverseExpression(sort);
+    }
+    UniverseExpression result = ourUniverses.get(key);
+    return result != null ? result : ourUniverses.computeIfAbsent(key, k -> new UniverseExpression(internSort(sort)));
+  }
+
+  private static boolean isInternable(Definition definition) {
+    if (!definition.status().headerIsOK()) {
+      return false;
+    }
+    if (definition instanceof DataDefinition || definition instanceof FunctionDefinition) {
+      return !definition.getParameters().hasNext();
+    }
+    if (definition instanceof Constructor) {
+      Constructor constructor = (Constructor) definition;
+      return constructor.getDataType().status().headerIsOK() && !constructor.getParameters().hasNext() && !constructor.getDataTypeParameters().hasNext();
+    }
+    return false;
+  }
+
+  /**
+   * Creates a call to a definition.
+   * Calls without arguments are interned if hash-consing is enabled.
+   */
+  public static Expression DefCall(Definition definition, Sort sortArgument, List<Expression> args) {
+    if (!ourHashConsing || !args.isEmpty() || !isInternable(definition)) {
+      return definition.getDefCall(sortArgument, args);
+    }
+    long key = sortKey(sortArgument);
+    if (key == -1) {
+      return definition.getDefCall(sortArgument, args);
+    }
+    Map<Long, Expression> calls = definition.getInternedCalls();
+    Expression result = calls.get(key);
+    return result != null ? result : calls.computeIfAbsent(key, k -> definition.getDefCall(internSort(sortArgument), Collections.emptyList()));
+  }
+
   public static Expression Apps(Expression function, Expression... arguments) {
     if (arguments.length == 0) {
       return function;
@@ -26,15 +148,15 @@ public class ExpressionFactory {
   }
 
   public static DataCallExpression Interval() {
-    return new DataCallExpression(Prelude.INTERVAL, Sort.PROP, Collections.emptyList());
+    return (DataCallExpression) DefCall(Prelude.INTERVAL, Sort.PROP, Collections.emptyList());
   }
 
   public static ConCallExpression Left() {
-    return (ConCallExpression) ConCallExpression.make(Prelude.LEFT, Sort.PROP, Collections.emptyList(), Collections.emptyList());
+    return (ConCallExpression) DefCall(Prelude.LEFT, Sort.PROP, Collections.emptyList());
   }
 
   public static ConCallExpression Right() {
-    return (ConCallExpression) ConCallExpression.make(Prelude.RIGHT, Sort.PROP, Collections.emptyList(), Collections.emptyList());
+    return (ConCallExpression) DefCall(Prelude.RIGHT, Sort.PROP, Collections.emptyList());
   }
 
   public static DependentLink parameter(boolean explicit, String var, Type type) {
@@ -62,11 +184,11 @@ public class ExpressionFactory {
   }
 
   public static DataCallExpression Nat() {
-    return new DataCallExpression(Prelude.NAT, Sort.SET0, Collections.emptyList());
+    return (DataCallExpression) DefCall(Prelude.NAT, Sort.SET0, Collections.emptyList());
   }
 
   public static DataCallExpression Int() {
-    return new DataCallExpression(Prelude.INT, Sort.SET0, Collections.emptyList());
+    return (DataCallExpression) DefCall(Prelude.INT, Sort.SET0, Collections.emptyList());
   }
 
   public static IntegerExpression Zero() {
@@ -33,6 +33,11 @@ public abstract class IntegerExpression extends Expression {
 
   public abstract ConCallExpression minus(IntegerExpression expr);
 
+  /**
+   * Subtracts a number which is not greater than this one.
+   */
+  public abstract IntegerExpression subtract(IntegerExpression expr);
+
   public abstract IntegerExpression minus(int x);
 
   public abstract IntegerExpression div(IntegerExpression expr);
@@ -10,8 +10,6 @@ import static org.arend.core.expr.ExpressionFactory.Neg;
 import static org.arend.core.expr.ExpressionFactory.Pos;
 
 public class SmallIntegerExpression extends IntegerExpression {
-  private final static int MAX_VALUE_TO_MULTIPLY = 45000;
-
   private final int myInteger;
 
   public SmallIntegerExpression(int integer) {
@@ -96,9 +94,9 @@ public class SmallIntegerExpression extends IntegerExpression {
   @Override
   public IntegerExpression mul(IntegerExpression expr) {
     if (expr instanceof SmallIntegerExpression) {
-      int other = ((SmallIntegerExpression) expr).getInteger();
-      if (myInteger <= MAX_VALUE_TO_MULTIPLY && other <= MAX_VALUE_TO_MULTIPLY) {
-        return new SmallIntegerExpression(myInteger * other);
+      long product = (long) myInteger * ((SmallIntegerExpression) expr).getInteger();
+      if (product <= Integer.MAX_VALUE) {
+        return new SmallIntegerExpression((int) product);
       }
     }
 
@@ -115,6 +113,12 @@ public class SmallIntegerExpression extends IntegerExpression {
     }
   }
 
+  @Override
+  public IntegerExpression subtract(IntegerExpression expr) {
+    assert compare(expr) >= 0;
+    return new SmallIntegerExpression(myInteger - expr.getSmallInteger());
+  }
+
   @Override
   public IntegerExpression minus(int x) {
     assert x <= myInteger;
@@ -36,7 +36,7 @@ public class UniverseExpression extends Expression implements Type {
 
   @Override
   public UniverseExpression subst(SubstVisitor substVisitor) {
-    return new UniverseExpression(mySort.subst(substVisitor.getLevelSubstitution()));
+    return ExpressionFactory.internUniverse(mySort.subst(substVisitor.getLevelSubstitution()));
   }
 
   @Override
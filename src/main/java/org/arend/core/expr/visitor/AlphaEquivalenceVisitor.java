@@ -0,0 +1,206 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.context.binding.Binding;
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.definition.ClassField;
+import org.arend.core.expr.*;
+import org.arend.core.sort.Level;
+import org.arend.core.sort.Sort;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that expressions are equal up to renaming of bound variables without normalizing them.
+ * Expressions which are not hashed by {@link StructuralHashVisitor} are not equal to anything.
+ */
+public class AlphaEquivalenceVisitor extends BaseExpressionVisitor<Expression, Boolean> {
+  private final Map<Binding, Binding> mySubstitution;
+
+  /**
+   * @param substitution  maps variables of the second expression to the corresponding variables of the first one.
+   *                      Bound variables are added to it and removed after the comparison.
+   */
+  private AlphaEquivalenceVisitor(Map<Binding, Binding> substitution) {
+    mySubstitution = substitution;
+  }
+
+  public static boolean compare(Expression expr1, Expression expr2, Map<Binding, Binding> substitution) {
+    return new AlphaEquivalenceVisitor(substitution).compare(expr1, expr2);
+  }
+
+  private boolean compare(Expression expr1, Expression expr2) {
+    expr1 = expr1.getCanonicalExpression();
+    expr2 = expr2.getCanonicalExpression();
+    return expr1 == expr2 && mySubstitution.isEmpty() || expr1.accept(this, expr2);
+  }
+
+  private boolean compareLists(List<? extends Expression> list1, List<? extends Expression> list2) {
+    if (list1.size() != list2.size()) {
+      return false;
+    }
+    for (int i = 0; i < list1.size(); i++) {
+      if (!compare(list1.get(i), list2.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean compareLevels(Level level1, Level level2) {
+    return level1.getVar() == level2.getVar() && level1.getConstant() == level2.getConstant() && level1.getMaxConstant() == level2.getMaxConstant();
+  }
+
+  private static boolean compareSorts(Sort sort1, Sort sort2) {
+    return compareLevels(sort1.getPLevel(), sort2.getPLevel()) && compareLevels(sort1.getHLevel(), sort2.getHLevel());
+  }
+
+  private boolean compareParameters(DependentLink link1, DependentLink link2) {
+    for (; link1.hasNext() && link2.hasNext(); link1 = link1.getNext(), link2 = link2.getNext()) {
+      if (link1.isExplicit() != link2.isExplicit() || !compare(link1.getTypeExpr(), link2.getTypeExpr())) {
+        return false;
+      }
+      mySubstitution.put(link2, link1);
+    }
+    return !link1.hasNext() && !link2.hasNext();
+  }
+
+  private void freeParameters(DependentLink link) {
+    for (; link.hasNext(); link = link.getNext()) {
+      mySubstitution.remove(link);
+    }
+  }
+
+  @Override
+  public Boolean visitApp(AppExpression expr1, Expression expr2) {
+    AppExpression app2 = expr2.checkedCast(AppExpression.class);
+    return app2 != null && compare(expr1.getFunction(), app2.getFunction()) && compare(expr1.getArgument(), app2.getArgument());
+  }
+
+  @Override
+  public Boolean visitDefCall(DefCallExpression expr1, Expression expr2) {
+    DefCallExpression defCall2 = expr2.checkedCast(DefCallExpression.class);
+    return defCall2 != null && expr1.getDefinition() == defCall2.getDefinition() && compareSorts(expr1.getSortArgument(), defCall2.getSortArgument()) && compareLists(expr1.getDefCallArguments(), defCall2.getDefCallArguments());
+  }
+
+  @Override
+  public Boolean visitConCall(ConCallExpression expr1, Expression expr2) {
+    return visitDefCall(expr1, expr2) && compareLists(expr1.getDataTypeArguments(), expr2.cast(ConCallExpression.class).getDataTypeArguments());
+  }
+
+  @Override
+  public Boolean visitClassCall(ClassCallExpression expr1, Expression expr2) {
+    if (!visitDefCall(expr1, expr2)) {
+      return false;
+    }
+
+    Map<ClassField, Expression> implementations2 = expr2.cast(ClassCallExpression.class).getImplementedHere();
+    if (expr1.getImplementedHere().size() != implementations2.size()) {
+      return false;
+    }
+    for (Map.Entry<ClassField, Expression> entry : expr1.getImplementedHere().entrySet()) {
+      Expression impl2 = implementations2.get(entry.getKey());
+      if (impl2 == null || !compare(entry.getValue(), impl2)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public Boolean visitReference(ReferenceExpression expr1, Expression expr2) {
+    ReferenceExpression ref2 = expr2.checkedCast(ReferenceExpression.class);
+    if (ref2 == null) {
+      return false;
+    }
+    Binding binding2 = mySubstitution.get(ref2.getBinding());
+    return (binding2 == null ? ref2.getBinding() : binding2) == expr1.getBinding();
+  }
+
+  @Override
+  public Boolean visitInferenceReference(InferenceReferenceExpression expr1, Expression expr2) {
+    return false;
+  }
+
+  @Override
+  public Boolean visitLam(LamExpression expr1, Expression expr2) {
+    LamExpression lam2 = expr2.checkedCast(LamExpression.class);
+    if (lam2 == null) {
+      return false;
+    }
+    boolean ok = compareParameters(expr1.getParameters(), lam2.getParameters()) && compare(expr1.getBody(), lam2.getBody());
+    freeParameters(lam2.getParameters());
+    return ok;
+  }
+
+  @Override
+  public Boolean visitPi(PiExpression expr1, Expression expr2) {
+    PiExpression pi2 = expr2.checkedCast(PiExpression.class);
+    if (pi2 == null) {
+      return false;
+    }
+    boolean ok = compareParameters(expr1.getParameters(), pi2.getParameters()) && compare(expr1.getCodomain(), pi2.getCodomain());
+    freeParameters(pi2.getParameters());
+    return ok;
+  }
+
+  @Override
+  public Boolean visitSigma(SigmaExpression expr1, Expression expr2) {
+    SigmaExpression sigma2 = expr2.checkedCast(SigmaExpression.class);
+    if (sigma2 == null) {
+      return false;
+    }
+    boolean ok = compareParameters(expr1.getParameters(), sigma2.getParameters());
+    freeParameters(sigma2.getParameters());
+    return ok;
+  }
+
+  @Override
+  public Boolean visitUniverse(UniverseExpression expr1, Expression expr2) {
+    UniverseExpression universe2 = expr2.checkedCast(UniverseExpression.class);
+    return universe2 != null && compareSorts(expr1.getSort(), universe2.getSort());
+  }
+
+  @Override
+  public Boolean visitError(ErrorExpression expr1, Expression expr2) {
+    return false;
+  }
+
+  @Override
+  public Boolean visitTuple(TupleExpression expr1, Expression expr2) {
+    TupleExpression tuple2 = expr2.checkedCast(TupleExpression.class);
+    return tuple2 != null && compareLists(expr1.getFields(), tuple2.getFields());
+  }
+
+  @Override
+  public Boolean visitProj(ProjExpression expr1, Expression expr2) {
+    ProjExpression proj2 = expr2.checkedCast(ProjExpression.class);
+    return proj2 != null && expr1.getField() == proj2.getField() && compare(expr1.getExpression(), proj2.getExpression());
+  }
+
+  @Override
+  public Boolean visitNew(NewExpression expr1, Expression expr2) {
+    return false;
+  }
+
+  @Override
+  public Boolean visitLet(LetExpression expr1, Expression expr2) {
+    return false;
+  }
+
+  @Override
+  public Boolean visitCase(CaseExpression expr1, Expression expr2) {
+    return false;
+  }
+
+  @Override
+  public Boolean visitOfType(OfTypeExpression expr1, Expression expr2) {
+    return false;
+  }
+
+  @Override
+  public Boolean visitInteger(IntegerExpression expr1, Expression expr2) {
+    IntegerExpression int2 = expr2.checkedCast(IntegerExpression.class);
+    return int2 != null && expr1.isEqual(int2);
+  }
+}
@@ -19,6 +19,7 @@ import org.arend.term.concrete.Concrete;
 import org.arend.typechecking.error.local.GoalError;
 import org.arend.typechecking.implicitargs.equations.DummyEquations;
 import org.arend.typechecking.implicitargs.equations.Equations;
+import org.arend.util.Pair;
 
 import java.util.*;
 
@@ -208,6 +209,12 @@ public class CompareVisitor extends BaseExpressionVisitor<Expression, Boolean> {
     if (stuckVar1 != stuckVar2 && (!myNormalCompare || myEquations == DummyEquations.getInstance())) {
       return false;
     }
+    if (stuckVar1 == null && stuckVar2 == null) {
+      int hash1 = expr1.structuralHash();
+      if (hash1 != 0 && hash1 == expr2.structuralHash() && AlphaEquivalenceVisitor.compare(expr1, expr2, mySubstitution)) {
+        return true;
+      }
+    }
     if (stuckVar1 == stuckVar2 && nonNormalizingCompare(expr1, expr2)) {
       return true;
     }
@@ -331,6 +338,15 @@ public class CompareVisitor extends BaseExpressionVisitor<Expression, Boolean> {
     if (!compareDef(expr1, defCall2, correctOrder)) {
       return false;
     }
+    if (expr1.getDefinition() == Prelude.SUC) {
+      // e1 + k1 = e2 + k2 iff e1 + (k1 - m) = e2 + (k2 - m), where m = min(k1, k2)
+      Pair<Expression, IntegerExpression> pair1 = NormalizeVisitor.splitOffset(expr1);
+      Pair<Expression, IntegerExpression> pair2 = NormalizeVisitor.splitOffset(defCall2);
+      IntegerExpression min = pair1.proj2.compare(pair2.proj2) <= 0 ? pair1.proj2 : pair2.proj2;
+      Expression arg1 = NormalizeVisitor.makeOffset(pair1.proj1, pair1.proj2.subtract(min), expr1.getSortArgument());
+      Expression arg2 = NormalizeVisitor.makeOffset(pair2.proj1, pair2.proj2.subtract(min), defCall2.getSortArgument());
+      return correctOrder ? compare(arg1, arg2) : compare(arg2, arg1);
+    }
     for (int i = 0; i < expr1.getDefCallArguments().size(); i++) {
       if (correctOrder ? !compare(expr1.getDefCallArguments().get(i), defCall2.getDefCallArguments().get(i)) : !compare(defCall2.getDefCallArguments().get(i), expr1.getDefCallArguments().get(i))) {
         return false;
@@ -648,15 +664,13 @@ public class CompareVisitor extends BaseExpressionVisitor<Expression, Boolean> {
     }
 
     myCMP = origCMP;
-    if (!compare(link1.hasNext() ? new PiExpression(expr1.getResultSort(), link1, expr1.getCodomain()) : expr1.getCodomain(), link2.hasNext() ? new PiExpression(piExpr2.getResultSort(), link2, piExpr2.getCodomain()) : piExpr2.getCodomain())) {
-      return false;
-    }
+    boolean ok = compare(link1.hasNext() ? new PiExpression(expr1.getResultSort(), link1, expr1.getCodomain()) : expr1.getCodomain(), link2.hasNext() ? new PiExpression(piExpr2.getResultSort(), link2, piExpr2.getCodomain()) : piExpr2.getCodomain());
 
     for (DependentLink link = piExpr2.getParameters(); link != link2; link = link.getNext()) {
       mySubstitution.remove(link);
     }
     mySubstitution.remove(link2);
-    return true;
+    return ok;
   }
 
   private boolean compareParameters(List<DependentLink> params1, List<DependentLink> params2) {
@@ -667,6 +681,9 @@ public class CompareVisitor extends BaseExpressionVisitor<Expression, Boolean> {
     Equations.CMP origCMP = myCMP;
     for (int i = 0; i < params1.size() && i < params2.size(); ++i) {
       if (!compare(params1.get(i).getTypeExpr(), params2.get(i).getTypeExpr())) {
+        for (int j = 0; j < i; j++) {
+          mySubstitution.remove(params2.get(j));
+        }
         return false;
       }
       mySubstitution.put(params2.get(i), params1.get(i));
@@ -795,6 +812,9 @@ public class CompareVisitor extends BaseExpressionVisitor<Expression, Boolean> {
     if (constructor2 == Prelude.ZERO) {
       return true;
     }
-    return compare(expr.pred(), conCall2.getDefCallArguments().get(0));
+
+    // n = e + k iff n - k = e
+    Pair<Expression, IntegerExpression> pair = NormalizeVisitor.splitOffset(conCall2);
+    return expr.compare(pair.proj2) >= 0 && compare(expr.subtract(pair.proj2), pair.proj1);
   }
 }
@@ -0,0 +1,121 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.elimtree.Body;
+import org.arend.core.elimtree.ElimTree;
+import org.arend.core.elimtree.LeafElimTree;
+import org.arend.core.expr.*;
+import org.arend.core.sort.Sort;
+import org.arend.core.subst.ExprSubstitution;
+import org.arend.core.subst.LevelSubstitution;
+import org.arend.typechecking.order.listener.TypecheckingCounters;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.arend.util.ComputationInterruptedException;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Evaluates elimination trees in an environment.
+ * If the body of a clause is a function call or a case expression, it is not substituted;
+ * instead, the evaluation continues in the elimination tree of the function or the case expression
+ * and only the arguments of the call are substituted.
+ * Case expressions share the environment of the enclosing clause.
+ * The body of a clause is substituted only when it is in weak head normal form or when the evaluation gets stuck.
+ */
+class EnvironmentEvaluator {
+  private final NormalizeVisitor myNormalizer;
+  private final NormalizeVisitor.Mode myMode;
+
+  EnvironmentEvaluator(NormalizeVisitor normalizer, NormalizeVisitor.Mode mode) {
+    myNormalizer = normalizer;
+    myMode = mode;
+  }
+
+  /**
+   * @return the result of evaluation or null if the evaluation of {@code elimTree} itself is stuck.
+   */
+  Expression eval(ElimTree elimTree, List<? extends Expression> arguments, ExprSubstitution environment, LevelSubstitution levelSubstitution) {
+    Deque<Expression> stack = NormalizeVisitor.makeStack(arguments);
+    Expression stuckBody = null;
+    ExprSubstitution stuckEnvironment = null;
+    LevelSubstitution stuckLevelSubstitution = null;
+
+    while (true) {
+      for (DependentLink link = elimTree.getParameters(); link.hasNext(); link = link.getNext()) {
+        environment.add(link, stack.pop());
+      }
+
+      if (!(elimTree instanceof LeafElimTree)) {
+        elimTree = myNormalizer.updateStack(stack, elimTree);
+        if (elimTree == null) {
+          return stuckBody == null ? null : stuckBody.subst(stuckEnvironment, stuckLevelSubstitution);
+        }
+        continue;
+      }
+
+      Expression body = ((LeafElimTree) elimTree).getExpression();
+      if (body instanceof FunCallExpression && canUnfold(((FunCallExpression) body).getDefinition())) {
+        FunctionDefinition function = ((FunCallExpression) body).getDefinition();
+        List<Expression> args = substArguments(((FunCallExpression) body).getDefCallArguments(), environment, levelSubstitution);
+        Sort sortArgument = ((FunCallExpression) body).getSortArgument().subst(levelSubstitution);
+        FunCallExpression funCall = new FunCallExpression(function, sortArgument, args);
+        if (NormalizationCache.getCurrent() != null && NormalizationCache.makeKey(funCall, myMode) != null) {
+          return funCall;
+        }
+        if (TypecheckingOrderingListener.CANCELLATION_INDICATOR.isCanceled()) {
+          throw new ComputationInterruptedException();
+        }
+        if (!TypecheckingCounters.step(TypecheckingCounters.Counter.DELTA_STEPS)) {
+          return funCall;
+        }
+
+        stuckBody = funCall;
+        stuckEnvironment = new ExprSubstitution();
+        stuckLevelSubstitution = LevelSubstitution.EMPTY;
+        elimTree = (ElimTree) function.getBody();
+        stack = NormalizeVisitor.makeStack(args);
+        environment = new ExprSubstitution();
+        levelSubstitution = sortArgument.toLevelSubstitution();
+        continue;
+      }
+
+      if (body instanceof CaseExpression && TypecheckingCounters.step(TypecheckingCounters.Counter.IOTA_STEPS)) {
+        CaseExpression caseExpr = (CaseExpression) body;
+        stuckBody = caseExpr;
+        stuckEnvironment = environment;
+        stuckLevelSubstitution = levelSubstitution;
+        elimTree = caseExpr.getElimTree();
+        stack = NormalizeVisitor.makeStack(substArguments(caseExpr.getArguments(), environment, levelSubstitution));
+        continue;
+      }
+
+      if (body instanceof ReferenceExpression) {
+        Expression value = environment.get(((ReferenceExpression) body).getBinding());
+        if (value != null) {
+          return value;
+        }
+      }
+
+      return body.subst(environment, levelSubstitution);
+    }
+  }
+
+  private boolean canUnfold(FunctionDefinition function) {
+    if (!function.status().bodyIsOK() || NormalizeVisitor.hasSpecialNormalization(function)) {
+      return false;
+    }
+    Body body = function.getBody();
+    return body instanceof ElimTree && !(myMode == NormalizeVisitor.Mode.RNF && body instanceof LeafElimTree);
+  }
+
+  private static List<Expression> substArguments(List<? extends Expression> arguments, ExprSubstitution environment, LevelSubstitution levelSubstitution) {
+    List<Expression> result = new ArrayList<>(arguments.size());
+    for (Expression argument : arguments) {
+      result.add(argument.subst(environment, levelSubstitution));
+    }
+    return result;
+  }
+}
@@ -78,12 +78,18 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitLam(LamExpression expr, Void params) {
+    if (!FreeVariablesFilterVisitor.mayContainAnyCached(expr, myBindings)) {
+      return null;
+    }
     Variable result = visitDependentLink(expr.getParameters());
     return result != null ? result : expr.getBody().accept(this, null);
   }
 
   @Override
   public Variable visitPi(PiExpression expr, Void params) {
+    if (!FreeVariablesFilterVisitor.mayContainAnyCached(expr, myBindings)) {
+      return null;
+    }
     Variable result = visitDependentLink(expr.getParameters());
     return result != null ? result : expr.getCodomain().accept(this, null);
   }
@@ -111,6 +117,9 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitSigma(SigmaExpression expr, Void params) {
+    if (!FreeVariablesFilterVisitor.mayContainAnyCached(expr, myBindings)) {
+      return null;
+    }
     return visitDependentLink(expr.getParameters());
   }
 
@@ -137,6 +146,9 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitLet(LetExpression letExpression, Void params) {
+    if (!FreeVariablesFilterVisitor.mayContainAnyCached(letExpression, myBindings)) {
+      return null;
+    }
     for (LetClause clause : letExpression.getClauses()) {
       Variable result = clause.getExpression().accept(this, null);
       if (result != null) {
@@ -148,6 +160,9 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitCase(CaseExpression expr, Void params) {
+    if (!FreeVariablesFilterVisitor.mayContainAnyCached(expr, myBindings)) {
+      return null;
+    }
     for (Expression argument : expr.getArguments()) {
       Variable result = argument.accept(this, null);
       if (result != null) {
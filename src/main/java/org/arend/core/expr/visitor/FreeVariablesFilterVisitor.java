@@ -0,0 +1,269 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.context.binding.Variable;
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.definition.ClassField;
+import org.arend.core.definition.Constructor;
+import org.arend.core.definition.Definition;
+import org.arend.core.elimtree.BranchElimTree;
+import org.arend.core.elimtree.ElimTree;
+import org.arend.core.elimtree.LeafElimTree;
+import org.arend.core.expr.*;
+import org.arend.core.expr.let.LetClause;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Computes Bloom filters of variables which occur in expressions.
+ * Every variable corresponds to one of the lower 63 bits of a filter; the highest bit marks computed filters.
+ * The filter of an expression contains the bits of variables referred to in it, including bound ones, and fields of field calls,
+ * so a variable does not occur in an expression if its bit is not set.
+ * Expressions with unsolved inference variables have the full filter.
+ * Filters are cached in expressions except for those which contain class calls and let expressions since they can be modified after construction.
+ * Visitors which check filters of many nested subexpressions should either use only cached filters (see {@link #mayContainAnyCached})
+ * or use a {@link #memoizing} visitor, so that filters which cannot be cached are not recomputed for every subexpression.
+ */
+public class FreeVariablesFilterVisitor extends BaseExpressionVisitor<Void, Long> {
+  private static final long COMPUTED = Long.MIN_VALUE;
+  private static final long FULL = -1L;
+
+  private boolean myCacheable = true;
+  private final Map<Expression, Long> myUncacheableFilters;
+
+  private FreeVariablesFilterVisitor(Map<Expression, Long> uncacheableFilters) {
+    myUncacheableFilters = uncacheableFilters;
+  }
+
+  /**
+   * Creates a visitor which also remembers filters that cannot be cached in expressions.
+   * It should be used only while the checked expressions are not modified, for example, during a single run of another visitor.
+   */
+  public static FreeVariablesFilterVisitor memoizing() {
+    return new FreeVariablesFilterVisitor(new IdentityHashMap<>());
+  }
+
+  public static long filter(Expression expr) {
+    long filter = expr.getCachedFreeVariablesFilter();
+    return filter != 0 ? filter : new FreeVariablesFilterVisitor(null).visit(expr);
+  }
+
+  private static long bit(Variable variable) {
+    return 1L << (((System.identityHashCode(variable) * 0x9E3779B9) >>> 26) % 63);
+  }
+
+  // Calls to definitions other than fields are not recorded in filters
+  private static boolean isRecorded(Variable variable) {
+    return !(variable instanceof Definition) || variable instanceof ClassField;
+  }
+
+  /**
+   * @return false if {@code variable} does not occur in {@code expr}.
+   */
+  public static boolean mayContain(Expression expr, Variable variable) {
+    if (!isRecorded(variable)) {
+      return true;
+    }
+    long bit = bit(variable);
+    return (filter(expr) & bit) != 0;
+  }
+
+  // Returns FULL if some of the variables are not recorded in filters
+  private static long bits(Collection<? extends Variable> variables) {
+    long bits = 0;
+    for (Variable variable : variables) {
+      if (!isRecorded(variable)) {
+        return FULL;
+      }
+      bits |= bit(variable);
+    }
+    return bits;
+  }
+
+  /**
+   * @return false if none of {@code variables} occurs in {@code expr}.
+   */
+  public static boolean mayContainAny(Expression expr, Collection<? extends Variable> variables) {
+    long bits = bits(variables);
+    return bits != 0 && (bits == FULL || (filter(expr) & bits) != 0);
+  }
+
+  /**
+   * Checks the filter of {@code expr} only if it is already cached, so the check takes constant time.
+   *
+   * @return false if none of {@code variables} occurs in {@code expr}.
+   */
+  public static boolean mayContainAnyCached(Expression expr, Collection<? extends Variable> variables) {
+    long filter = expr.getCachedFreeVariablesFilter();
+    return filter == 0 ? !variables.isEmpty() : (filter & bits(variables)) != 0;
+  }
+
+  /**
+   * The same as {@link #mayContainAny}, but filters are remembered by a {@link #memoizing} visitor.
+   */
+  public boolean mayContainAnyMemoized(Expression expr, Collection<? extends Variable> variables) {
+    long bits = bits(variables);
+    return bits != 0 && (bits == FULL || (visit(expr) & bits) != 0);
+  }
+
+  private long visit(Expression expr) {
+    long filter = expr.getCachedFreeVariablesFilter();
+    if (filter != 0) {
+      return filter;
+    }
+    if (myUncacheableFilters != null) {
+      Long uncacheable = myUncacheableFilters.get(expr);
+      if (uncacheable != null) {
+        myCacheable = false;
+        return uncacheable;
+      }
+    }
+
+    boolean cacheable = myCacheable;
+    myCacheable = true;
+    filter = COMPUTED | expr.accept(this, null);
+    if (myCacheable) {
+      expr.setCachedFreeVariablesFilter(filter);
+    } else if (myUncacheableFilters != null) {
+      myUncacheableFilters.put(expr, filter);
+    }
+    myCacheable &= cacheable;
+    return filter;
+  }
+
+  private long visitList(Collection<? extends Expression> exprs) {
+    long filter = 0;
+    for (Expression expr : exprs) {
+      filter |= visit(expr);
+    }
+    return filter;
+  }
+
+  private long visitParameters(DependentLink link) {
+    long filter = 0;
+    for (; link.hasNext(); link = link.getNext()) {
+      link = link.getNextTyped(null);
+      filter |= visit(link.getTypeExpr());
+    }
+    return filter;
+  }
+
+  private long visitElimTree(ElimTree elimTree) {
+    long filter = visitParameters(elimTree.getParameters());
+    if (elimTree instanceof LeafElimTree) {
+      filter |= visit(((LeafElimTree) elimTree).getExpression());
+    } else {
+      for (Map.Entry<Constructor, ElimTree> entry : ((BranchElimTree) elimTree).getChildren()) {
+        filter |= visitElimTree(entry.getValue());
+      }
+    }
+    return filter;
+  }
+
+  @Override
+  public Long visitApp(AppExpression expr, Void params) {
+    return visit(expr.getFunction()) | visit(expr.getArgument());
+  }
+
+  @Override
+  public Long visitDefCall(DefCallExpression expr, Void params) {
+    return visitList(expr.getDefCallArguments());
+  }
+
+  @Override
+  public Long visitFieldCall(FieldCallExpression expr, Void params) {
+    return bit(expr.getDefinition()) | visit(expr.getArgument());
+  }
+
+  @Override
+  public Long visitConCall(ConCallExpression expr, Void params) {
+    return visitList(expr.getDataTypeArguments()) | visitList(expr.getDefCallArguments());
+  }
+
+  @Override
+  public Long visitClassCall(ClassCallExpression expr, Void params) {
+    myCacheable = false;
+    return visitList(expr.getImplementedHere().values());
+  }
+
+  @Override
+  public Long visitReference(ReferenceExpression expr, Void params) {
+    return bit(expr.getBinding());
+  }
+
+  @Override
+  public Long visitInferenceReference(InferenceReferenceExpression expr, Void params) {
+    if (expr.getSubstExpression() != null) {
+      return visit(expr.getSubstExpression());
+    }
+    myCacheable = false;
+    return FULL;
+  }
+
+  @Override
+  public Long visitLam(LamExpression expr, Void params) {
+    return visitParameters(expr.getParameters()) | visit(expr.getBody());
+  }
+
+  @Override
+  public Long visitPi(PiExpression expr, Void params) {
+    return visitParameters(expr.getParameters()) | visit(expr.getCodomain());
+  }
+
+  @Override
+  public Long visitSigma(SigmaExpression expr, Void params) {
+    return visitParameters(expr.getParameters());
+  }
+
+  @Override
+  public Long visitUniverse(UniverseExpression expr, Void params) {
+    return 0L;
+  }
+
+  @Override
+  public Long visitError(ErrorExpression expr, Void params) {
+    return expr.getExpression() == null ? 0L : visit(expr.getExpression());
+  }
+
+  @Override
+  public Long visitTuple(TupleExpression expr, Void params) {
+    return visitList(expr.getFields()) | visit(expr.getSigmaType());
+  }
+
+  @Override
+  public Long visitProj(ProjExpression expr, Void params) {
+    return visit(expr.getExpression());
+  }
+
+  @Override
+  public Long visitNew(NewExpression expr, Void params) {
+    return visit(expr.getExpression());
+  }
+
+  @Override
+  public Long visitLet(LetExpression expr, Void params) {
+    myCacheable = false;
+    long filter = visit(expr.getExpression());
+    for (LetClause clause : expr.getClauses()) {
+      filter |= visit(clause.getExpression());
+    }
+    return filter;
+  }
+
+  @Override
+  public Long visitCase(CaseExpression expr, Void params) {
+    long filter = visitList(expr.getArguments()) | visitParameters(expr.getParameters()) | visit(expr.getResultType()) | visitElimTree(expr.getElimTree());
+    return expr.getResultTypeLevel() == null ? filter : filter | visit(expr.getResultTypeLevel());
+  }
+
+  @Override
+  public Long visitOfType(OfTypeExpression expr, Void params) {
+    return visit(expr.getExpression()) | visit(expr.getTypeOf());
+  }
+
+  @Override
+  public Long visitInteger(IntegerExpression expr, Void params) {
+    return 0L;
+  }
+}
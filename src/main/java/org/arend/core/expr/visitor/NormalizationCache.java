@@ -0,0 +1,186 @@
+package org.arend.core.expr.visitor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.*;
+import org.arend.typechecking.visitor.ProcessDefCallsVisitor;
+
+import java.util.*;
+
+/**
+ * A bounded cache of normal forms of closed function calls.
+ * A call is cached only if its sort argument is closed and its arguments are built from constructors, integers, and calls without arguments.
+ * Entries are keyed on the definition, so they must be invalidated when a definition is retypechecked or loses its body.
+ * Normal forms which are stuck on a function without a body are not cached since the body may be added later.
+ * Every {@link org.arend.typechecking.TypecheckerState} owns its cache.
+ * The normalizer uses the cache installed in the current thread by {@link #setCurrent} and does not cache anything if there is none.
+ */
+public class NormalizationCache {
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private static final ThreadLocal<NormalizationCache> ourCurrent = new ThreadLocal<>();
+
+  private final Cache<List<Object>, Expression> myCache;
+
+  public NormalizationCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity the maximal number of cached normal forms.
+   */
+  public NormalizationCache(int capacity) {
+    myCache = CacheBuilder.newBuilder().maximumSize(capacity).concurrencyLevel(Runtime.getRuntime().availableProcessors()).build();
+  }
+
+  /**
+   * @return the cache used by the normalizer in the current thread or null if normal forms are not cached.
+   */
+  public static NormalizationCache getCurrent() {
+    return ourCurrent.get();
+  }
+
+  /**
+   * Sets the cache used by the normalizer in the current thread.
+   *
+   * @param cache a cache or null if normal forms should not be cached.
+   *
+   * @return the previous cache, which should be restored afterwards.
+   */
+  public static NormalizationCache setCurrent(NormalizationCache cache) {
+    NormalizationCache previous = ourCurrent.get();
+    if (cache == null) {
+      ourCurrent.remove();
+    } else {
+      ourCurrent.set(cache);
+    }
+    return previous;
+  }
+
+  /**
+   * @return the key of a call or null if the call cannot be cached.
+   */
+  static List<Object> makeKey(DefCallExpression expr, NormalizeVisitor.Mode mode) {
+    if (mode == NormalizeVisitor.Mode.RNF) {
+      return null;
+    }
+
+    long sortKey = ExpressionFactory.sortKey(expr.getSortArgument());
+    if (sortKey == -1) {
+      return null;
+    }
+
+    List<Object> key = new ArrayList<>(expr.getDefCallArguments().size() + 3);
+    key.add(expr.getDefinition());
+    key.add(mode);
+    key.add(sortKey);
+    for (Expression arg : expr.getDefCallArguments()) {
+      Object argKey = makeValueKey(arg);
+      if (argKey == null) {
+        return null;
+      }
+      key.add(argKey);
+    }
+    return key;
+  }
+
+  private static Object makeValueKey(Expression expr) {
+    if (expr instanceof IntegerExpression) {
+      return ((IntegerExpression) expr).getBigInteger();
+    }
+
+    if (expr instanceof ConCallExpression) {
+      ConCallExpression conCall = (ConCallExpression) expr;
+      long sortKey = ExpressionFactory.sortKey(conCall.getSortArgument());
+      if (sortKey == -1) {
+        return null;
+      }
+
+      List<Object> key = new ArrayList<>(conCall.getDataTypeArguments().size() + conCall.getDefCallArguments().size() + 2);
+      key.add(conCall.getDefinition());
+      key.add(sortKey);
+      for (Expression arg : conCall.getDataTypeArguments()) {
+        Object argKey = makeValueKey(arg);
+        if (argKey == null) {
+          return null;
+        }
+        key.add(argKey);
+      }
+      for (Expression arg : conCall.getDefCallArguments()) {
+        Object argKey = makeValueKey(arg);
+        if (argKey == null) {
+          return null;
+        }
+        key.add(argKey);
+      }
+      return key;
+    }
+
+    if ((expr instanceof DataCallExpression || expr instanceof FunCallExpression) && ((DefCallExpression) expr).getDefCallArguments().isEmpty()) {
+      long sortKey = ExpressionFactory.sortKey(((DefCallExpression) expr).getSortArgument());
+      return sortKey == -1 ? null : Arrays.asList(((DefCallExpression) expr).getDefinition(), sortKey);
+    }
+
+    return null;
+  }
+
+  /**
+   * @return true if {@code result} does not contain calls to functions whose bodies are not typechecked yet.
+   */
+  static boolean isFinal(Expression result) {
+    return !result.accept(new ProcessDefCallsVisitor<Void>() {
+      @Override
+      protected boolean processDefCall(DefCallExpression expression, Void param) {
+        if (!(expression.getDefinition() instanceof FunctionDefinition)) {
+          return false;
+        }
+        FunctionDefinition function = (FunctionDefinition) expression.getDefinition();
+        return !function.status().bodyIsOK() || !function.isLemma() && !function.hasBody();
+      }
+    }, null);
+  }
+
+  Expression get(List<Object> key) {
+    return myCache.getIfPresent(key);
+  }
+
+  void put(List<Object> key, Expression result) {
+    myCache.put(key, result);
+  }
+
+  /**
+   * Removes cached normal forms of calls to {@code definition} and of calls with {@code definition} in arguments.
+   */
+  public void invalidate(Definition definition) {
+    invalidate(Collections.singleton(definition));
+  }
+
+  /**
+   * Removes cached normal forms of calls which refer to any of {@code definitions}.
+   */
+  public void invalidate(Collection<? extends Definition> definitions) {
+    if (!definitions.isEmpty()) {
+      myCache.asMap().keySet().removeIf(key -> refersTo(key, definitions));
+    }
+  }
+
+  private static boolean refersTo(Object key, Collection<? extends Definition> definitions) {
+    if (key instanceof Definition) {
+      return definitions.contains(key);
+    }
+    if (key instanceof List) {
+      for (Object subKey : (List<?>) key) {
+        if (refersTo(subKey, definitions)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public void clear() {
+    myCache.invalidateAll();
+  }
+}
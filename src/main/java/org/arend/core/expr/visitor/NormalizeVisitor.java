@@ -8,12 +8,15 @@ import org.arend.core.definition.*;
 import org.arend.core.elimtree.*;
 import org.arend.core.expr.*;
 import org.arend.core.expr.let.LetClause;
+import org.arend.core.sort.Sort;
 import org.arend.core.subst.ExprSubstitution;
 import org.arend.core.subst.LevelSubstitution;
 import org.arend.core.subst.SubstVisitor;
 import org.arend.prelude.Prelude;
+import org.arend.typechecking.order.listener.TypecheckingCounters;
 import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
 import org.arend.util.ComputationInterruptedException;
+import org.arend.util.Pair;
 
 import java.util.*;
 
@@ -22,8 +25,25 @@ import static org.arend.core.expr.ExpressionFactory.*;
 public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mode, Expression>  {
   public enum Mode { WHNF, NF, RNF }
 
+  /**
+   * Determines how function calls and case expressions are evaluated.
+   * {@link Backend#SUBSTITUTION} substitutes arguments into the body of every clause.
+   * {@link Backend#ENVIRONMENT} evaluates nested function calls and case expressions in an environment (see {@link EnvironmentEvaluator}).
+   */
+  public enum Backend { SUBSTITUTION, ENVIRONMENT }
+
   public static final NormalizeVisitor INSTANCE = new NormalizeVisitor();
 
+  private static volatile Backend ourBackend = Backend.ENVIRONMENT;
+
+  public static Backend getBackend() {
+    return ourBackend;
+  }
+
+  public static void setBackend(Backend backend) {
+    ourBackend = backend;
+  }
+
   private NormalizeVisitor() {
   }
 
@@ -37,7 +57,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
     }
     Collections.reverse(args);
 
-    if (function.isInstance(LamExpression.class)) {
+    if (function.isInstance(LamExpression.class) && TypecheckingCounters.step(TypecheckingCounters.Counter.BETA_STEPS)) {
       return normalizeLam(function.cast(LamExpression.class), args).accept(this, mode);
     }
 
@@ -106,6 +126,70 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
     throw new IllegalStateException();
   }
 
+  /**
+   * Splits an expression of the form {@code suc (... (suc (e + k)))} into {@code e} and the total offset.
+   * Only the syntactic structure of the expression is inspected.
+   */
+  static Pair<Expression, IntegerExpression> splitOffset(Expression expr) {
+    IntegerExpression offset = new SmallIntegerExpression(0);
+    while (true) {
+      ConCallExpression conCall = expr.checkedCast(ConCallExpression.class);
+      if (conCall != null && conCall.getDefinition() == Prelude.SUC) {
+        offset = offset.suc();
+        expr = conCall.getDefCallArguments().get(0);
+        continue;
+      }
+
+      FunCallExpression funCall = expr.checkedCast(FunCallExpression.class);
+      if (funCall != null && funCall.getDefinition() == Prelude.PLUS) {
+        IntegerExpression intExpr = funCall.getDefCallArguments().get(1).checkedCast(IntegerExpression.class);
+        if (intExpr != null) {
+          offset = offset.plus(intExpr);
+          expr = funCall.getDefCallArguments().get(0);
+          continue;
+        }
+      }
+
+      return new Pair<>(expr, offset);
+    }
+  }
+
+  /**
+   * Makes an expression equivalent to {@code expr + offset} which is in WHNF if the offset is positive.
+   * Instead of a chain of {@code offset} constructors, the result is {@code suc (expr + (offset - 1))}.
+   */
+  static Expression makeOffset(Expression expr, IntegerExpression offset, Sort sortArgument) {
+    if (expr.isInstance(IntegerExpression.class)) {
+      return expr.cast(IntegerExpression.class).plus(offset);
+    }
+    if (offset.isZero()) {
+      return expr;
+    }
+    if (offset.isOne()) {
+      return Suc(expr);
+    }
+
+    List<Expression> args = new ArrayList<>(2);
+    args.add(expr);
+    args.add(offset.pred());
+    return Suc(new FunCallExpression(Prelude.PLUS, sortArgument, args));
+  }
+
+  private Expression normalizeOffset(Expression expr, IntegerExpression offset, Sort sortArgument, Mode mode) {
+    if (mode == Mode.WHNF) {
+      return makeOffset(expr, offset, sortArgument);
+    }
+
+    expr = expr.accept(this, mode);
+    if (expr.isInstance(IntegerExpression.class)) {
+      return expr.cast(IntegerExpression.class).plus(offset);
+    }
+    for (int i = 0; offset.compare(i) > 0; i++) {
+      expr = Suc(expr);
+    }
+    return expr;
+  }
+
   private Expression normalizePlus(DefCallExpression expr, Mode mode) {
     List<? extends Expression> defCallArgs = expr.getDefCallArguments();
     Expression arg1 = defCallArgs.get(0);
@@ -115,19 +199,16 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
       IntegerExpression intExpr2 = arg2.cast(IntegerExpression.class);
       arg1 = arg1.accept(this, Mode.WHNF);
       if (arg1.isInstance(IntegerExpression.class)) {
+        TypecheckingCounters.increment(TypecheckingCounters.Counter.ARITHMETIC_STEPS);
         return arg1.cast(IntegerExpression.class).plus(intExpr2);
       }
       if (intExpr2.isZero()) {
         return arg1.accept(this, mode);
       }
 
-      if (mode != Mode.WHNF) {
-        arg1 = arg1.accept(this, mode);
-      }
-      for (int i = 0; intExpr2.compare(i) > 0; i++) {
-        arg1 = Suc(arg1);
-      }
-      return arg1;
+      TypecheckingCounters.increment(TypecheckingCounters.Counter.ARITHMETIC_STEPS);
+      Pair<Expression, IntegerExpression> pair = splitOffset(arg1);
+      return normalizeOffset(pair.proj1, pair.proj2.plus(intExpr2), expr.getSortArgument(), mode);
     }
 
     List<Expression> newDefCallArgs = new ArrayList<>(2);
@@ -143,6 +224,13 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
     return result;
   }
 
+  private static FunCallExpression makeMinus(Expression arg1, Expression arg2, Sort sortArgument) {
+    List<Expression> args = new ArrayList<>(2);
+    args.add(arg1);
+    args.add(arg2);
+    return new FunCallExpression(Prelude.MINUS, sortArgument, args);
+  }
+
   private Expression normalizeMinus(DefCallExpression expr, Mode mode) {
     List<? extends Expression> defCallArgs = expr.getDefCallArguments();
     Expression arg1 = defCallArgs.get(0).accept(this, Mode.WHNF);
@@ -153,68 +241,50 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
 
       arg2 = arg2.accept(this, Mode.WHNF);
       if (arg2.isInstance(IntegerExpression.class)) {
+        TypecheckingCounters.increment(TypecheckingCounters.Counter.ARITHMETIC_STEPS);
         return intExpr1.minus(arg2.cast(IntegerExpression.class));
       }
       if (intExpr1.isZero()) {
         return mode == Mode.WHNF ? Neg(arg2) : Neg(arg2.accept(this, mode));
       }
 
-      ConCallExpression conCall2 = arg2.checkedCast(ConCallExpression.class);
-      while (!intExpr1.isZero() && conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
-        intExpr1 = intExpr1.pred();
-        arg2 = conCall2.getDefCallArguments().get(0);
-        conCall2 = arg2.checkedCast(ConCallExpression.class);
+      // n - (e + k) = (n - k) - e if k <= n, and n - (e + k) = neg (e + (k - n)) otherwise
+      Pair<Expression, IntegerExpression> pair2 = splitOffset(arg2);
+      if (pair2.proj2.isZero()) {
+        return makeMinus(intExpr1, mode == Mode.WHNF ? arg2 : arg2.accept(this, mode), expr.getSortArgument());
       }
-
-      if (conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
-        return Neg(conCall2);
+      TypecheckingCounters.increment(TypecheckingCounters.Counter.ARITHMETIC_STEPS);
+      if (intExpr1.compare(pair2.proj2) < 0) {
+        return Neg(normalizeOffset(pair2.proj1, pair2.proj2.subtract(intExpr1), expr.getSortArgument(), mode));
       }
-
-      List<Expression> newDefCallArgs = new ArrayList<>(2);
-      newDefCallArgs.add(intExpr1);
-      newDefCallArgs.add(mode == Mode.WHNF ? arg2 : arg2.accept(this, mode));
-      return new FunCallExpression(Prelude.MINUS, expr.getSortArgument(), newDefCallArgs);
+      return normalizeMinus(makeMinus(intExpr1.subtract(pair2.proj2), pair2.proj1, expr.getSortArgument()), mode);
     }
 
     ConCallExpression conCall1 = arg1.checkedCast(ConCallExpression.class);
     if (conCall1 == null || conCall1.getDefinition() != Prelude.SUC) {
-      List<Expression> newDefCallArgs = new ArrayList<>(2);
-      newDefCallArgs.add(mode == Mode.WHNF ? arg1 : arg1.accept(this, mode));
-      newDefCallArgs.add(arg2.accept(this, mode));
-      return new FunCallExpression(Prelude.MINUS, expr.getSortArgument(), newDefCallArgs);
+      return makeMinus(mode == Mode.WHNF ? arg1 : arg1.accept(this, mode), arg2.accept(this, mode), expr.getSortArgument());
     }
 
+    Pair<Expression, IntegerExpression> pair1 = splitOffset(arg1);
     arg2 = arg2.accept(this, Mode.WHNF);
     if (arg2.isInstance(IntegerExpression.class)) {
+      // (e + k) - n = pos (e + (k - n)) if n < k, and (e + k) - n = e - (n - k) otherwise
       IntegerExpression intExpr2 = arg2.cast(IntegerExpression.class);
-      while (!intExpr2.isZero() && conCall1 != null && conCall1.getDefinition() == Prelude.SUC) {
-        intExpr2 = intExpr2.pred();
-        arg1 = conCall1.getDefCallArguments().get(0);
-        conCall1 = arg1.checkedCast(ConCallExpression.class);
+      TypecheckingCounters.increment(TypecheckingCounters.Counter.ARITHMETIC_STEPS);
+      if (intExpr2.compare(pair1.proj2) < 0) {
+        return Pos(normalizeOffset(pair1.proj1, pair1.proj2.subtract(intExpr2), expr.getSortArgument(), mode));
       }
-
-      if (conCall1 != null && conCall1.getDefinition() == Prelude.SUC) {
-        return Pos(conCall1);
-      }
-
-      List<Expression> newDefCallArgs = new ArrayList<>(2);
-      newDefCallArgs.add(mode == Mode.WHNF ? arg1 : arg1.accept(this, mode));
-      newDefCallArgs.add(intExpr2);
-      return new FunCallExpression(Prelude.MINUS, expr.getSortArgument(), newDefCallArgs);
+      return normalizeMinus(makeMinus(pair1.proj1, intExpr2.subtract(pair1.proj2), expr.getSortArgument()), mode);
     }
 
-    ConCallExpression conCall2 = arg2.checkedCast(ConCallExpression.class);
-    while (conCall1 != null && conCall1.getDefinition() == Prelude.SUC && conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
-      arg1 = conCall1.getDefCallArguments().get(0);
-      conCall1 = arg1.checkedCast(ConCallExpression.class);
-      arg2 = conCall2.getDefCallArguments().get(0);
-      conCall2 = arg2.checkedCast(ConCallExpression.class);
+    // (e1 + k1) - (e2 + k2) = (e1 + (k1 - m)) - (e2 + (k2 - m)), where m = min(k1, k2)
+    Pair<Expression, IntegerExpression> pair2 = splitOffset(arg2);
+    if (pair2.proj2.isZero()) {
+      return makeMinus(mode == Mode.WHNF ? arg1 : arg1.accept(this, mode), mode == Mode.WHNF ? arg2 : arg2.accept(this, mode), expr.getSortArgument());
     }
-
-    List<Expression> newDefCallArgs = new ArrayList<>(2);
-    newDefCallArgs.add(mode == Mode.WHNF ? arg1 : arg1.accept(this, mode));
-    newDefCallArgs.add(mode == Mode.WHNF ? arg2 : arg2.accept(this, mode));
-    return new FunCallExpression(Prelude.MINUS, expr.getSortArgument(), newDefCallArgs);
+    TypecheckingCounters.increment(TypecheckingCounters.Counter.ARITHMETIC_STEPS);
+    IntegerExpression min = pair1.proj2.compare(pair2.proj2) <= 0 ? pair1.proj2 : pair2.proj2;
+    return normalizeMinus(makeMinus(makeOffset(pair1.proj1, pair1.proj2.subtract(min), expr.getSortArgument()), makeOffset(pair2.proj1, pair2.proj2.subtract(min), expr.getSortArgument()), expr.getSortArgument()), mode);
   }
 
   private Expression visitDefCall(DefCallExpression expr, LevelSubstitution levelSubstitution, Mode mode) {
@@ -297,6 +367,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
 
         Expression arg1 = defCallArgs.get(0).accept(this, Mode.WHNF);
         if (arg1.isInstance(IntegerExpression.class)) {
+          TypecheckingCounters.increment(TypecheckingCounters.Counter.ARITHMETIC_STEPS);
           if (definition == Prelude.MUL) {
             return arg1.cast(IntegerExpression.class).mul(intExpr2);
           }
@@ -325,9 +396,10 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
     }
 
     if (definition == Prelude.SUC) {
-      Expression arg = defCallArgs.get(0).accept(this, mode);
+      // A constructor is already in WHNF, so its argument is not evaluated; this also keeps offset forms of arguments (see makeOffset)
+      Expression arg = mode == Mode.WHNF ? defCallArgs.get(0) : defCallArgs.get(0).accept(this, mode);
       IntegerExpression intArg = arg.checkedCast(IntegerExpression.class);
-      return intArg != null ? intArg.suc() : Suc(arg);
+      return intArg != null ? intArg.suc() : mode == Mode.WHNF ? expr : Suc(arg);
     }
 
     ElimTree elimTree;
@@ -364,11 +436,11 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
       elimTree = mode == Mode.RNF && body instanceof LeafElimTree ? null : (ElimTree) body;
     }
 
-    if (elimTree == null) {
+    if (elimTree == null || !TypecheckingCounters.step(TypecheckingCounters.Counter.DELTA_STEPS)) {
       return applyDefCall(expr, mode);
     }
 
-    Expression result = eval(elimTree, defCallArgs, getDataTypeArgumentsSubstitution(expr), levelSubstitution);
+    Expression result = evaluate(elimTree, defCallArgs, getDataTypeArgumentsSubstitution(expr), levelSubstitution, mode);
 
     if (TypecheckingOrderingListener.CANCELLATION_INDICATOR.isCanceled()) {
       throw new ComputationInterruptedException();
@@ -377,8 +449,14 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
     return result == null ? applyDefCall(expr, mode) : result.accept(this, mode);
   }
 
-  private Stack<Expression> makeStack(List<? extends Expression> arguments) {
-    Stack<Expression> stack = new Stack<>();
+  private Expression evaluate(ElimTree elimTree, List<? extends Expression> arguments, ExprSubstitution substitution, LevelSubstitution levelSubstitution, Mode mode) {
+    return ourBackend == Backend.ENVIRONMENT
+      ? new EnvironmentEvaluator(this, mode).eval(elimTree, arguments, substitution, levelSubstitution)
+      : eval(elimTree, arguments, substitution, levelSubstitution);
+  }
+
+  static Deque<Expression> makeStack(List<? extends Expression> arguments) {
+    Deque<Expression> stack = new ArrayDeque<>(arguments.size());
     for (int i = arguments.size() - 1; i >= 0; i--) {
       stack.push(arguments.get(i));
     }
@@ -386,7 +464,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
   }
 
   public Expression eval(ElimTree elimTree, List<? extends Expression> arguments, ExprSubstitution substitution, LevelSubstitution levelSubstitution) {
-    Stack<Expression> stack = makeStack(arguments);
+    Deque<Expression> stack = makeStack(arguments);
 
     while (true) {
       for (DependentLink link = elimTree.getParameters(); link.hasNext(); link = link.getNext()) {
@@ -404,7 +482,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
   }
 
   public boolean doesEvaluate(ElimTree elimTree, List<? extends Expression> arguments, boolean might) {
-    Stack<Expression> stack = makeStack(arguments);
+    Deque<Expression> stack = makeStack(arguments);
 
     while (true) {
       for (DependentLink link = elimTree.getParameters(); link.hasNext(); link = link.getNext()) {
@@ -428,7 +506,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
     }
   }
 
-  private ElimTree updateStack(Stack<Expression> stack, ElimTree elimTree) {
+  ElimTree updateStack(Deque<Expression> stack, ElimTree elimTree) {
     Expression argument = stack.peek().accept(this, Mode.WHNF);
     ConCallExpression conCall = argument.checkedCast(ConCallExpression.class);
     Constructor constructor = conCall == null ? null : conCall.getDefinition();
@@ -449,11 +527,13 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
 
       List<? extends Expression> args;
       if (constructor != null) {
-        args = conCall != null
-          ? conCall.getDefCallArguments()
-          : constructor == Prelude.ZERO
-            ? Collections.emptyList()
-            : Collections.singletonList(argument.cast(IntegerExpression.class).pred());
+        if (conCall == null) {
+          if (constructor == Prelude.SUC) {
+            stack.push(argument.cast(IntegerExpression.class).pred());
+          }
+          return elimTree;
+        }
+        args = conCall.getDefCallArguments();
       } else if (argument.isInstance(TupleExpression.class)) {
         args = argument.cast(TupleExpression.class).getFields();
       } else {
@@ -506,12 +586,33 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
     }
 
     if (expr.getDefinition() instanceof Function) {
-      return visitDefCall(expr, expr.getSortArgument().toLevelSubstitution(), mode);
+      NormalizationCache cache = NormalizationCache.getCurrent();
+      List<Object> key = cache != null && isCacheable(expr.getDefinition()) ? NormalizationCache.makeKey(expr, mode) : null;
+      if (key == null) {
+        return visitDefCall(expr, expr.getSortArgument().toLevelSubstitution(), mode);
+      }
+
+      Expression result = cache.get(key);
+      if (result == null) {
+        result = visitDefCall(expr, expr.getSortArgument().toLevelSubstitution(), mode);
+        if (!TypecheckingCounters.isExhausted() && NormalizationCache.isFinal(result)) {
+          cache.put(key, result);
+        }
+      }
+      return result;
     }
 
     return applyDefCall(expr, mode);
   }
 
+  private static boolean isCacheable(Definition definition) {
+    return definition instanceof FunctionDefinition && ((FunctionDefinition) definition).getBody() instanceof ElimTree && !hasSpecialNormalization(definition);
+  }
+
+  static boolean hasSpecialNormalization(Definition definition) {
+    return definition == Prelude.PLUS || definition == Prelude.MINUS || definition == Prelude.MUL || definition == Prelude.DIV_MOD || definition == Prelude.DIV || definition == Prelude.MOD || definition == Prelude.COERCE;
+  }
+
   @Override
   public ClassCallExpression visitClassCall(ClassCallExpression expr, Mode mode) {
     if (mode == Mode.WHNF) return expr;
@@ -650,7 +751,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizeVisitor.Mod
 
   @Override
   public Expression visitCase(CaseExpression expr, Mode mode) {
-    Expression result = eval(expr.getElimTree(), expr.getArguments(), new ExprSubstitution(), LevelSubstitution.EMPTY);
+    Expression result = TypecheckingCounters.step(TypecheckingCounters.Counter.IOTA_STEPS) ? evaluate(expr.getElimTree(), expr.getArguments(), new ExprSubstitution(), LevelSubstitution.EMPTY, mode) : null;
     if (result != null) {
       return result.accept(this, mode);
     }
@@ -14,6 +14,7 @@ import java.util.Map;
 
 public class NormalizingFindBindingVisitor extends BaseExpressionVisitor<Void, Boolean> {
   private final FindBindingVisitor myVisitor;
+  private final FreeVariablesFilterVisitor myFilterVisitor = FreeVariablesFilterVisitor.memoizing();
 
   private NormalizingFindBindingVisitor(Variable binding) {
     myVisitor = new FindBindingVisitor(Collections.singleton(binding));
@@ -24,7 +25,7 @@ public class NormalizingFindBindingVisitor extends BaseExpressionVisitor<Void, B
   }
 
   private boolean findBinding(Expression expression, boolean normalize) {
-    if (expression.accept(myVisitor, null) == null) {
+    if (!myFilterVisitor.mayContainAnyMemoized(expression, myVisitor.getBindings()) || expression.accept(myVisitor, null) == null) {
       return false;
     }
     return (normalize ? expression.normalize(NormalizeVisitor.Mode.WHNF) : expression).accept(this, null);
@@ -21,7 +21,7 @@ public class ReplaceBindingVisitor extends SubstVisitor {
   private boolean myOK = true;
 
   private ReplaceBindingVisitor(Binding binding, ClassCallExpression bindingType, Map<ClassField, Expression> implementations) {
-    super(new ExprSubstitution(), LevelSubstitution.EMPTY);
+    super(new ExprSubstitution(), LevelSubstitution.EMPTY, true);
     myBinding = binding;
     myBindingType = bindingType;
     myImplementations = implementations;
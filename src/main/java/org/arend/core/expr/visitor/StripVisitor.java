@@ -2,6 +2,7 @@ package org.arend.core.expr.visitor;
 
 import org.arend.core.context.binding.EvaluatingBinding;
 import org.arend.core.context.param.DependentLink;
+import org.arend.core.context.param.SingleDependentLink;
 import org.arend.core.definition.ClassField;
 import org.arend.core.definition.Constructor;
 import org.arend.core.elimtree.BranchElimTree;
@@ -9,13 +10,23 @@ import org.arend.core.elimtree.ElimTree;
 import org.arend.core.elimtree.LeafElimTree;
 import org.arend.core.expr.*;
 import org.arend.core.expr.let.LetClause;
+import org.arend.core.expr.type.Type;
+import org.arend.core.expr.type.TypeExpression;
+import org.arend.core.sort.LevelSubstitution;
+import org.arend.core.subst.ExprSubstitution;
+import org.arend.core.subst.SubstVisitor;
 import org.arend.typechecking.error.LocalErrorReporter;
 import org.arend.typechecking.error.local.LocalError;
 
 import java.util.*;
 
+/**
+ * Strips an expression, that is, replaces inference variables with their solutions and evaluating bindings with their values.
+ * Subexpressions, including binders, may be shared with other expressions (see {@link SubstVisitor}),
+ * so the result is a new expression and the original one is never modified.
+ */
 public class StripVisitor implements ExpressionVisitor<Void, Expression> {
-  private final Set<EvaluatingBinding> myBoundEvaluatingBindings = new HashSet<>();
+  private final ExprSubstitution mySubstitution = new ExprSubstitution(); // maps bound variables to their copies
   private final LocalErrorReporter myErrorReporter;
 
   public StripVisitor(LocalErrorReporter errorReporter) {
@@ -71,15 +82,20 @@ public class StripVisitor implements ExpressionVisitor<Void, Expression> {
 
   @Override
   public ClassCallExpression visitClassCall(ClassCallExpression expr, Void params) {
+    Map<ClassField, Expression> implementations = new HashMap<>();
     for (Map.Entry<ClassField, Expression> entry : expr.getImplementedHere().entrySet()) {
-      entry.setValue(entry.getValue().accept(this, null));
+      implementations.put(entry.getKey(), entry.getValue().accept(this, null));
     }
-    return expr;
+    return new ClassCallExpression(expr.getDefinition(), expr.getSortArgument(), implementations, expr.getSort(), expr.hasUniverses());
   }
 
   @Override
   public Expression visitReference(ReferenceExpression expr, Void params) {
-    if (expr.getBinding() instanceof EvaluatingBinding && !myBoundEvaluatingBindings.contains(expr.getBinding())) {
+    Expression result = mySubstitution.get(expr.getBinding());
+    if (result != null) {
+      return result;
+    }
+    if (expr.getBinding() instanceof EvaluatingBinding) {
       return ((EvaluatingBinding) expr.getBinding()).getExpression().accept(this, null);
     }
     return expr;
@@ -98,29 +114,56 @@ public class StripVisitor implements ExpressionVisitor<Void, Expression> {
     }
   }
 
-  private void visitParameters(DependentLink link) {
-    for (; link.hasNext(); link = link.getNext()) {
-      DependentLink link1 = link.getNextTyped(null);
-      link1.setType(link1.getType().strip(myErrorReporter));
+  private Type stripType(Type type) {
+    Expression expr = type.getExpr().accept(this, null);
+    return expr instanceof Type ? (Type) expr : new TypeExpression(expr, type.getSortOfType());
+  }
+
+  /**
+   * Copies parameters and strips their types.
+   * References to the original parameters are replaced with references to the copies until {@link #freeParameters} is invoked.
+   */
+  private DependentLink visitParameters(DependentLink parameters) {
+    return stripTypes(DependentLink.Helper.subst(parameters, new SubstVisitor(mySubstitution, LevelSubstitution.EMPTY)));
+  }
+
+  private SingleDependentLink visitParameters(SingleDependentLink parameters) {
+    return stripTypes(DependentLink.Helper.subst(parameters, new SubstVisitor(mySubstitution, LevelSubstitution.EMPTY)));
+  }
+
+  private <T extends DependentLink> T stripTypes(T parameters) {
+    for (DependentLink link = parameters; link.hasNext(); link = link.getNext()) {
+      link = link.getNextTyped(null);
+      link.setType(stripType(link.getType()));
     }
+    return parameters;
+  }
+
+  private void freeParameters(DependentLink parameters) {
+    DependentLink.Helper.freeSubsts(parameters, mySubstitution);
   }
 
   @Override
   public LamExpression visitLam(LamExpression expr, Void params) {
-    visitParameters(expr.getParameters());
-    return new LamExpression(expr.getResultSort(), expr.getParameters(), expr.getBody().accept(this, null));
+    SingleDependentLink parameters = visitParameters(expr.getParameters());
+    LamExpression result = new LamExpression(expr.getResultSort(), parameters, expr.getBody().accept(this, null));
+    freeParameters(expr.getParameters());
+    return result;
   }
 
   @Override
   public PiExpression visitPi(PiExpression expr, Void params) {
-    visitParameters(expr.getParameters());
-    return new PiExpression(expr.getResultSort(), expr.getParameters(), expr.getCodomain().accept(this, null));
+    SingleDependentLink parameters = visitParameters(expr.getParameters());
+    PiExpression result = new PiExpression(expr.getResultSort(), parameters, expr.getCodomain().accept(this, null));
+    freeParameters(expr.getParameters());
+    return result;
   }
 
   @Override
   public SigmaExpression visitSigma(SigmaExpression expr, Void params) {
-    visitParameters(expr.getParameters());
-    return expr;
+    SigmaExpression result = new SigmaExpression(expr.getSort(), visitParameters(expr.getParameters()));
+    freeParameters(expr.getParameters());
+    return result;
   }
 
   @Override
@@ -154,37 +197,46 @@ public class StripVisitor implements ExpressionVisitor<Void, Expression> {
 
   @Override
   public LetExpression visitLet(LetExpression expr, Void params) {
+    // Clauses of this let expression are not replaced with their values
+    List<LetClause> clauses = new ArrayList<>(expr.getClauses().size());
     for (LetClause clause : expr.getClauses()) {
-      clause.setExpression(clause.getExpression().accept(this, null));
-      myBoundEvaluatingBindings.add(clause);
+      LetClause newClause = new LetClause(clause.getName(), clause.getPattern(), clause.getExpression().accept(this, null));
+      clauses.add(newClause);
+      mySubstitution.add(clause, new ReferenceExpression(newClause));
     }
 
-    LetExpression result = new LetExpression(expr.isStrict(), expr.getClauses(), expr.getExpression().accept(this, null));
-    myBoundEvaluatingBindings.removeAll(expr.getClauses());
+    LetExpression result = new LetExpression(expr.isStrict(), clauses, expr.getExpression().accept(this, null));
+    expr.getClauses().forEach(mySubstitution::remove);
     return result;
   }
 
   @Override
   public Expression visitCase(CaseExpression expr, Void params) {
-    ElimTree elimTree = stripElimTree(expr.getElimTree());
-    for (int i = 0; i < expr.getArguments().size(); i++) {
-      expr.getArguments().set(i, expr.getArguments().get(i).accept(this, null));
+    List<Expression> arguments = new ArrayList<>(expr.getArguments().size());
+    for (Expression argument : expr.getArguments()) {
+      arguments.add(argument.accept(this, null));
     }
-    visitParameters(expr.getParameters());
-    return new CaseExpression(expr.getParameters(), expr.getResultType().accept(this, null), expr.getResultTypeLevel() == null ? null : expr.getResultTypeLevel().accept(this, null), elimTree, expr.getArguments());
+    DependentLink parameters = visitParameters(expr.getParameters());
+    Expression resultType = expr.getResultType().accept(this, null);
+    Expression resultTypeLevel = expr.getResultTypeLevel() == null ? null : expr.getResultTypeLevel().accept(this, null);
+    freeParameters(expr.getParameters());
+    return new CaseExpression(parameters, resultType, resultTypeLevel, stripElimTree(expr.getElimTree()), arguments);
   }
 
   private ElimTree stripElimTree(ElimTree elimTree) {
-    visitParameters(elimTree.getParameters());
+    DependentLink parameters = visitParameters(elimTree.getParameters());
+    ElimTree result;
     if (elimTree instanceof LeafElimTree) {
-      return new LeafElimTree(elimTree.getParameters(), ((LeafElimTree) elimTree).getExpression().accept(this, null));
+      result = new LeafElimTree(parameters, ((LeafElimTree) elimTree).getExpression().accept(this, null));
     } else {
       Map<Constructor, ElimTree> children = new HashMap<>();
       for (Map.Entry<Constructor, ElimTree> entry : ((BranchElimTree) elimTree).getChildren()) {
         children.put(entry.getKey(), stripElimTree(entry.getValue()));
       }
-      return new BranchElimTree(elimTree.getParameters(), children);
+      result = new BranchElimTree(parameters, children);
     }
+    freeParameters(elimTree.getParameters());
+    return result;
   }
 
   @Override
@@ -0,0 +1,250 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.context.binding.Binding;
+import org.arend.core.context.binding.inference.InferenceLevelVariable;
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.definition.ClassField;
+import org.arend.core.expr.*;
+import org.arend.core.sort.Level;
+import org.arend.core.sort.Sort;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes hashes of expressions which do not depend on names of bound variables.
+ * Bound variables are hashed by their de Bruijn indices and free variables by their identity.
+ * The hash of a subexpression is cached in it if the subexpression does not refer to variables bound outside of it.
+ * Expressions with unsolved inference variables, inference level variables, new, let, case, and error expressions are not hashed.
+ * Expressions which can never be hashed (that is, those which contain new, let, case, or error expressions) are marked with {@link #UNHASHABLE},
+ * so that they are rejected without traversal the next time.
+ * Expressions with inference variables are not marked since the variables may be solved later.
+ */
+public class StructuralHashVisitor extends BaseExpressionVisitor<Void, Integer> {
+  private static final int UNHASHABLE = 1; // the cached hash of expressions which cannot be hashed; makeHash never returns it
+
+  private final Map<Binding, Integer> myLevels = new HashMap<>();
+  private int myDepth;
+  private int myMinLevel = Integer.MAX_VALUE; // the minimal level of bound variables which occur in the current expression
+  private boolean myHasFreeVariables;
+  private boolean myFailed;
+  private boolean myFailedPermanently;
+
+  private StructuralHashVisitor() {
+  }
+
+  /**
+   * @return the hash of {@code expr} or 0 if it cannot be hashed.
+   */
+  public static int hash(Expression expr) {
+    int hash = expr.getCachedStructuralHash();
+    if (hash == UNHASHABLE) {
+      return 0;
+    }
+    if (hash != 0) {
+      return hash;
+    }
+
+    StructuralHashVisitor visitor = new StructuralHashVisitor();
+    hash = visitor.visit(expr);
+    return visitor.myFailed ? 0 : hash;
+  }
+
+  // The lowest bit of a hash is 1 if the expression does not have free variables
+  private static int makeHash(int hash, boolean hasFreeVariables) {
+    hash = (hash << 1) | (hasFreeVariables ? 0 : 1);
+    return hash == 0 ? 2 : hash == UNHASHABLE ? 3 : hash;
+  }
+
+  private int visit(Expression expr) {
+    if (myFailed) {
+      return 0;
+    }
+
+    int hash = expr.getCachedStructuralHash();
+    if (hash == UNHASHABLE) {
+      return failPermanently();
+    }
+    if (hash != 0 && ((hash & 1) != 0 || myLevels.isEmpty())) {
+      if ((hash & 1) == 0) {
+        myHasFreeVariables = true;
+      }
+      return hash;
+    }
+
+    int minLevel = myMinLevel;
+    boolean hasFreeVariables = myHasFreeVariables;
+    myMinLevel = Integer.MAX_VALUE;
+    myHasFreeVariables = false;
+
+    hash = makeHash(expr.accept(this, null), myHasFreeVariables);
+    if (myFailedPermanently) {
+      // The expression contains a subexpression which cannot be hashed in any context
+      expr.setCachedStructuralHash(UNHASHABLE);
+    } else if (!myFailed && myMinLevel >= myDepth) {
+      expr.setCachedStructuralHash(hash);
+    }
+
+    myMinLevel = Math.min(minLevel, myMinLevel);
+    myHasFreeVariables |= hasFreeVariables;
+    return hash;
+  }
+
+  private int failPermanently() {
+    myFailedPermanently = true;
+    return fail();
+  }
+
+  private int fail() {
+    myFailed = true;
+    return 0;
+  }
+
+  private int hashLevel(Level level) {
+    if (level.getVar() instanceof InferenceLevelVariable) {
+      return fail();
+    }
+    return (31 * (level.getVar() == null ? 0 : System.identityHashCode(level.getVar())) + level.getConstant()) * 31 + level.getMaxConstant();
+  }
+
+  private int hashSort(Sort sort) {
+    return 31 * hashLevel(sort.getPLevel()) + hashLevel(sort.getHLevel());
+  }
+
+  private int hashParameters(DependentLink link, int hash) {
+    for (; link.hasNext(); link = link.getNext()) {
+      hash = (31 * hash + (link.isExplicit() ? 1 : 2)) * 31 + visit(link.getTypeExpr());
+      myLevels.put(link, myDepth++);
+    }
+    return hash;
+  }
+
+  private void freeParameters(DependentLink link) {
+    for (; link.hasNext(); link = link.getNext()) {
+      myLevels.remove(link);
+      myDepth--;
+    }
+  }
+
+  @Override
+  public Integer visitApp(AppExpression expr, Void params) {
+    return (31 + visit(expr.getFunction())) * 31 + visit(expr.getArgument());
+  }
+
+  @Override
+  public Integer visitDefCall(DefCallExpression expr, Void params) {
+    int hash = 31 * (expr instanceof FieldCallExpression ? 3 : 2) + System.identityHashCode(expr.getDefinition());
+    hash = 31 * hash + hashSort(expr.getSortArgument());
+    for (Expression arg : expr.getDefCallArguments()) {
+      hash = 31 * hash + visit(arg);
+    }
+    return hash;
+  }
+
+  @Override
+  public Integer visitConCall(ConCallExpression expr, Void params) {
+    int hash = visitDefCall(expr, params);
+    for (Expression arg : expr.getDataTypeArguments()) {
+      hash = 31 * hash + visit(arg);
+    }
+    return hash;
+  }
+
+  @Override
+  public Integer visitClassCall(ClassCallExpression expr, Void params) {
+    int hash = visitDefCall(expr, params);
+    int implementations = 0;
+    for (Map.Entry<ClassField, Expression> entry : expr.getImplementedHere().entrySet()) {
+      implementations += System.identityHashCode(entry.getKey()) ^ visit(entry.getValue());
+    }
+    return 31 * hash + implementations;
+  }
+
+  @Override
+  public Integer visitReference(ReferenceExpression expr, Void params) {
+    Integer level = myLevels.get(expr.getBinding());
+    if (level == null) {
+      myHasFreeVariables = true;
+      return 31 * 4 + System.identityHashCode(expr.getBinding());
+    }
+    myMinLevel = Math.min(myMinLevel, level);
+    return 31 * 5 + myDepth - level;
+  }
+
+  @Override
+  public Integer visitInferenceReference(InferenceReferenceExpression expr, Void params) {
+    return expr.getSubstExpression() == null ? fail() : visit(expr.getSubstExpression());
+  }
+
+  @Override
+  public Integer visitLam(LamExpression expr, Void params) {
+    int hash = hashParameters(expr.getParameters(), 6);
+    hash = 31 * hash + visit(expr.getBody());
+    freeParameters(expr.getParameters());
+    return hash;
+  }
+
+  @Override
+  public Integer visitPi(PiExpression expr, Void params) {
+    int hash = hashParameters(expr.getParameters(), 7);
+    hash = 31 * hash + visit(expr.getCodomain());
+    freeParameters(expr.getParameters());
+    return hash;
+  }
+
+  @Override
+  public Integer visitSigma(SigmaExpression expr, Void params) {
+    int hash = hashParameters(expr.getParameters(), 8);
+    freeParameters(expr.getParameters());
+    return hash;
+  }
+
+  @Override
+  public Integer visitUniverse(UniverseExpression expr, Void params) {
+    return 31 * 9 + hashSort(expr.getSort());
+  }
+
+  @Override
+  public Integer visitError(ErrorExpression expr, Void params) {
+    return failPermanently();
+  }
+
+  @Override
+  public Integer visitTuple(TupleExpression expr, Void params) {
+    int hash = 10;
+    for (Expression field : expr.getFields()) {
+      hash = 31 * hash + visit(field);
+    }
+    return hash;
+  }
+
+  @Override
+  public Integer visitProj(ProjExpression expr, Void params) {
+    return (31 * 11 + expr.getField()) * 31 + visit(expr.getExpression());
+  }
+
+  @Override
+  public Integer visitNew(NewExpression expr, Void params) {
+    return failPermanently();
+  }
+
+  @Override
+  public Integer visitLet(LetExpression expr, Void params) {
+    return failPermanently();
+  }
+
+  @Override
+  public Integer visitCase(CaseExpression expr, Void params) {
+    return failPermanently();
+  }
+
+  @Override
+  public Integer visitOfType(OfTypeExpression expr, Void params) {
+    return failPermanently();
+  }
+
+  @Override
+  public Integer visitInteger(IntegerExpression expr, Void params) {
+    return 31 * 12 + (expr.compare(Integer.MAX_VALUE) <= 0 ? expr.getSmallInteger() : expr.getBigInteger().hashCode());
+  }
+}
@@ -137,6 +137,9 @@ public class Level {
   }
 
   public static boolean compare(Level level1, Level level2, Equations.CMP cmp, Equations equations, Concrete.SourceNode sourceNode) {
+    if (level1 == level2) {
+      return true;
+    }
     if (cmp == Equations.CMP.GE) {
       return compare(level2, level1, Equations.CMP.LE, equations, sourceNode);
     }
@@ -94,6 +94,9 @@ public class Sort {
   }
 
   public static boolean compare(Sort sort1, Sort sort2, Equations.CMP cmp, Equations equations, Concrete.SourceNode sourceNode) {
+    if (sort1 == sort2) {
+      return true;
+    }
     if (sort1.isProp()) {
       if (cmp == Equations.CMP.LE || sort2.isProp()) {
         return true;
@@ -8,6 +8,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * A mapping from variables to expressions.
+ * Substitutions with a single variable do not allocate a hash map until they are extended.
+ */
 public class ExprSubstitution {
   private Map<Variable, Expression> mySubstExprs;
 
@@ -16,12 +20,18 @@ public class ExprSubstitution {
   }
 
   public ExprSubstitution(ExprSubstitution substitution) {
-    mySubstExprs = substitution.mySubstExprs.isEmpty() ? Collections.emptyMap() : new HashMap<>(substitution.mySubstExprs);
+    mySubstExprs = substitution.mySubstExprs instanceof HashMap ? new HashMap<>(substitution.mySubstExprs) : substitution.mySubstExprs;
   }
 
   public ExprSubstitution(Variable from, Expression to) {
-    mySubstExprs = new HashMap<>();
-    add(from, to);
+    mySubstExprs = Collections.singletonMap(from, to);
+  }
+
+  private Map<Variable, Expression> getMutableMap() {
+    if (!(mySubstExprs instanceof HashMap)) {
+      mySubstExprs = new HashMap<>(mySubstExprs);
+    }
+    return mySubstExprs;
   }
 
   public Set<Variable> getKeys() {
@@ -41,51 +51,41 @@ public class ExprSubstitution {
   }
 
   public void clear() {
-    if (!mySubstExprs.isEmpty()) {
-      mySubstExprs.clear();
-    }
+    mySubstExprs = Collections.emptyMap();
   }
 
   public void remove(Variable variable) {
-    if (!mySubstExprs.isEmpty()) {
-      mySubstExprs.remove(variable);
+    if (mySubstExprs.containsKey(variable)) {
+      getMutableMap().remove(variable);
     }
   }
 
   public void add(Variable binding, Expression expression) {
-    if (mySubstExprs.isEmpty()) {
-      mySubstExprs = new HashMap<>();
-    }
-    mySubstExprs.put(binding, expression);
+    getMutableMap().put(binding, expression);
   }
 
   public void addSubst(Variable binding, Expression expression) {
-    if (mySubstExprs.isEmpty()) {
-      mySubstExprs = new HashMap<>();
-    } else {
-      for (Map.Entry<Variable, Expression> entry : mySubstExprs.entrySet()) {
-        entry.setValue(entry.getValue().subst(binding, expression));
-      }
+    for (Map.Entry<Variable, Expression> entry : getMutableMap().entrySet()) {
+      entry.setValue(entry.getValue().subst(binding, expression));
     }
     mySubstExprs.put(binding, expression);
   }
 
   public void addAll(ExprSubstitution substitution) {
     if (!substitution.mySubstExprs.isEmpty()) {
-      if (mySubstExprs.isEmpty()) {
-        mySubstExprs = new HashMap<>();
-      }
-      mySubstExprs.putAll(substitution.mySubstExprs);
+      getMutableMap().putAll(substitution.mySubstExprs);
     }
   }
 
   public void subst(ExprSubstitution subst) {
-    for (Map.Entry<Variable, Expression> entry : mySubstExprs.entrySet()) {
-      entry.setValue(entry.getValue().subst(subst));
+    if (!mySubstExprs.isEmpty()) {
+      for (Map.Entry<Variable, Expression> entry : getMutableMap().entrySet()) {
+        entry.setValue(entry.getValue().subst(subst));
+      }
     }
   }
 
   public String toString() {
     return mySubstExprs.toString();
   }
-}
\ No newline at end of file
+}
@@ -10,19 +10,31 @@ import org.arend.core.elimtree.LeafElimTree;
 import org.arend.core.expr.*;
 import org.arend.core.expr.let.LetClause;
 import org.arend.core.expr.visitor.BaseExpressionVisitor;
+import org.arend.core.expr.visitor.FreeVariablesFilterVisitor;
+import org.arend.core.sort.Sort;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
+/**
+ * Applies a substitution to an expression.
+ * Subexpressions which are not changed by the substitution are shared with the original expression,
+ * and subexpressions with binders which do not refer to substituted variables are not traversed.
+ * If the visitor is created with {@code copy = true}, it copies the whole expression instead.
+ */
 public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
   private final ExprSubstitution myExprSubstitution;
   private final LevelSubstitution myLevelSubstitution;
+  private final boolean myCopy;
+  private FreeVariablesFilterVisitor myFilterVisitor;
 
-  public SubstVisitor(ExprSubstitution exprSubstitution, LevelSubstitution levelSubstitution) {
+  public SubstVisitor(ExprSubstitution exprSubstitution, LevelSubstitution levelSubstitution, boolean copy) {
     myExprSubstitution = exprSubstitution;
     myLevelSubstitution = levelSubstitution;
+    myCopy = copy;
+  }
+
+  public SubstVisitor(ExprSubstitution exprSubstitution, LevelSubstitution levelSubstitution) {
+    this(exprSubstitution, levelSubstitution, false);
   }
 
   public ExprSubstitution getExprSubstitution() {
@@ -37,18 +49,53 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
     return myExprSubstitution.isEmpty() && myLevelSubstitution.isEmpty();
   }
 
+  /**
+   * @return true if {@code expr} is not changed by this substitution, so it can be returned as is.
+   */
+  private boolean isUnchanged(Expression expr) {
+    if (myCopy || !myLevelSubstitution.isEmpty()) {
+      return false;
+    }
+    if (myFilterVisitor == null) {
+      myFilterVisitor = FreeVariablesFilterVisitor.memoizing();
+    }
+    return !myFilterVisitor.mayContainAnyMemoized(expr, myExprSubstitution.getKeys());
+  }
+
+  private List<Expression> substArguments(List<? extends Expression> args) {
+    List<Expression> result = null;
+    for (int i = 0; i < args.size(); i++) {
+      Expression arg = args.get(i);
+      Expression newArg = arg.accept(this, null);
+      if (result == null && (newArg != arg || myCopy)) {
+        result = new ArrayList<>(args.size());
+        result.addAll(args.subList(0, i));
+      }
+      if (result != null) {
+        result.add(newArg);
+      }
+    }
+    return result;
+  }
+
   @Override
   public Expression visitApp(AppExpression expr, Void params) {
-    return AppExpression.make(expr.getFunction().accept(this, null), expr.getArgument().accept(this, null));
+    Expression function = expr.getFunction().accept(this, null);
+    Expression argument = expr.getArgument().accept(this, null);
+    return !myCopy && function == expr.getFunction() && argument == expr.getArgument() ? expr : AppExpression.make(function, argument);
   }
 
   @Override
   public Expression visitDefCall(DefCallExpression expr, Void params) {
-    List<Expression> args = new ArrayList<>(expr.getDefCallArguments().size());
-    for (Expression arg : expr.getDefCallArguments()) {
-      args.add(arg.accept(this, null));
+    Sort sortArgument = expr.getSortArgument().subst(myLevelSubstitution);
+    if (expr.getDefCallArguments().isEmpty()) {
+      return !myCopy && sortArgument == expr.getSortArgument() ? expr : ExpressionFactory.DefCall(expr.getDefinition(), sortArgument, Collections.emptyList());
+    }
+    List<Expression> args = substArguments(expr.getDefCallArguments());
+    if (args == null && sortArgument == expr.getSortArgument()) {
+      return expr;
     }
-    return expr.getDefinition().getDefCall(expr.getSortArgument().subst(myLevelSubstitution), args);
+    return expr.getDefinition().getDefCall(sortArgument, args == null ? new ArrayList<>(expr.getDefCallArguments()) : args);
   }
 
   @Override
@@ -58,35 +105,45 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitConCall(ConCallExpression expr, Void params) {
-    List<Expression> dataTypeArgs = new ArrayList<>(expr.getDataTypeArguments().size());
-    for (Expression parameter : expr.getDataTypeArguments()) {
-      dataTypeArgs.add(parameter.accept(this, null));
+    Sort sortArgument = expr.getSortArgument().subst(myLevelSubstitution);
+    if (expr.getDataTypeArguments().isEmpty() && expr.getDefCallArguments().isEmpty()) {
+      return !myCopy && sortArgument == expr.getSortArgument() ? expr : ExpressionFactory.DefCall(expr.getDefinition(), sortArgument, Collections.emptyList());
     }
-
-    List<Expression> args = new ArrayList<>(expr.getDefCallArguments().size());
-    for (Expression arg : expr.getDefCallArguments()) {
-      args.add(arg.accept(this, null));
+    List<Expression> dataTypeArgs = substArguments(expr.getDataTypeArguments());
+    List<Expression> args = substArguments(expr.getDefCallArguments());
+    if (dataTypeArgs == null && args == null && sortArgument == expr.getSortArgument()) {
+      return expr;
     }
 
-    return ConCallExpression.make(expr.getDefinition(), expr.getSortArgument().subst(myLevelSubstitution), dataTypeArgs, args);
+    return ConCallExpression.make(expr.getDefinition(), sortArgument, dataTypeArgs == null ? new ArrayList<>(expr.getDataTypeArguments()) : dataTypeArgs, args == null ? new ArrayList<>(expr.getDefCallArguments()) : args);
   }
 
   @Override
   public ClassCallExpression visitClassCall(ClassCallExpression expr, Void params) {
     Map<ClassField, Expression> fieldSet = new HashMap<>();
+    boolean changed = myCopy;
     for (Map.Entry<ClassField, Expression> entry : expr.getImplementedHere().entrySet()) {
-      fieldSet.put(entry.getKey(), entry.getValue().accept(this, null));
+      Expression impl = entry.getValue().accept(this, null);
+      fieldSet.put(entry.getKey(), impl);
+      changed |= impl != entry.getValue();
+    }
+    Sort sortArgument = expr.getSortArgument().subst(myLevelSubstitution);
+    Sort sort = expr.getSort().subst(myLevelSubstitution);
+    if (!changed && sortArgument == expr.getSortArgument() && sort == expr.getSort()) {
+      return expr;
     }
-    return new ClassCallExpression(expr.getDefinition(), expr.getSortArgument().subst(myLevelSubstitution), fieldSet, expr.getSort().subst(myLevelSubstitution), expr.hasUniverses());
+    return new ClassCallExpression(expr.getDefinition(), sortArgument, fieldSet, sort, expr.hasUniverses());
   }
 
   @Override
   public Expression visitFieldCall(FieldCallExpression expr, Void params) {
     Expression result = myExprSubstitution.get(expr.getDefinition());
+    Expression argument = expr.getArgument().accept(this, null);
     if (result != null) {
-      return AppExpression.make(result, expr.getArgument().accept(this, null));
+      return AppExpression.make(result, argument);
     } else {
-      return FieldCallExpression.make(expr.getDefinition(), expr.getSortArgument().subst(myLevelSubstitution), expr.getArgument().accept(this, null));
+      Sort sortArgument = expr.getSortArgument().subst(myLevelSubstitution);
+      return !myCopy && argument == expr.getArgument() && sortArgument == expr.getSortArgument() ? expr : FieldCallExpression.make(expr.getDefinition(), sortArgument, argument);
     }
   }
 
@@ -115,6 +172,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public LamExpression visitLam(LamExpression expr, Void params) {
+    if (isUnchanged(expr)) {
+      return expr;
+    }
     SingleDependentLink parameters = DependentLink.Helper.subst(expr.getParameters(), this);
     LamExpression result = new LamExpression(expr.getResultSort().subst(myLevelSubstitution), parameters, expr.getBody().accept(this, null));
     DependentLink.Helper.freeSubsts(expr.getParameters(), myExprSubstitution);
@@ -123,6 +183,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public PiExpression visitPi(PiExpression expr, Void params) {
+    if (isUnchanged(expr)) {
+      return expr;
+    }
     SingleDependentLink parameters = DependentLink.Helper.subst(expr.getParameters(), this);
     PiExpression result = new PiExpression(expr.getResultSort().subst(myLevelSubstitution), parameters, expr.getCodomain().accept(this, null));
     DependentLink.Helper.freeSubsts(expr.getParameters(), myExprSubstitution);
@@ -131,6 +194,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public SigmaExpression visitSigma(SigmaExpression expr, Void params) {
+    if (isUnchanged(expr)) {
+      return expr;
+    }
     SigmaExpression result = new SigmaExpression(expr.getSort().subst(myLevelSubstitution), DependentLink.Helper.subst(expr.getParameters(), this));
     DependentLink.Helper.freeSubsts(expr.getParameters(), myExprSubstitution);
     return result;
@@ -138,35 +204,42 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public UniverseExpression visitUniverse(UniverseExpression expr, Void params) {
-    return myLevelSubstitution.isEmpty() ? expr : new UniverseExpression(expr.getSort().subst(myLevelSubstitution));
+    return myLevelSubstitution.isEmpty() ? expr : ExpressionFactory.internUniverse(expr.getSort().subst(myLevelSubstitution));
   }
 
   @Override
   public Expression visitError(ErrorExpression expr, Void params) {
-    return expr.getExpression() == null ? expr : new ErrorExpression(expr.getExpression().accept(this, null), expr.getError());
+    if (expr.getExpression() == null) {
+      return expr;
+    }
+    Expression expression = expr.getExpression().accept(this, null);
+    return !myCopy && expression == expr.getExpression() ? expr : new ErrorExpression(expression, expr.getError());
   }
 
   @Override
   public TupleExpression visitTuple(TupleExpression expr, Void params) {
-    List<Expression> fields = new ArrayList<>(expr.getFields().size());
-    for (Expression field : expr.getFields()) {
-      fields.add(field.accept(this, null));
-    }
-    return new TupleExpression(fields, visitSigma(expr.getSigmaType(), null));
+    List<Expression> fields = substArguments(expr.getFields());
+    SigmaExpression type = visitSigma(expr.getSigmaType(), null);
+    return fields == null && type == expr.getSigmaType() ? expr : new TupleExpression(fields == null ? new ArrayList<>(expr.getFields()) : fields, type);
   }
 
   @Override
   public Expression visitProj(ProjExpression expr, Void params) {
-    return ProjExpression.make(expr.getExpression().accept(this, null), expr.getField());
+    Expression expression = expr.getExpression().accept(this, null);
+    return !myCopy && expression == expr.getExpression() ? expr : ProjExpression.make(expression, expr.getField());
   }
 
   @Override
   public Expression visitNew(NewExpression expr, Void params) {
-    return new NewExpression(visitClassCall(expr.getExpression(), null));
+    ClassCallExpression classCall = visitClassCall(expr.getExpression(), null);
+    return !myCopy && classCall == expr.getExpression() ? expr : new NewExpression(classCall);
   }
 
   @Override
   public LetExpression visitLet(LetExpression letExpression, Void params) {
+    if (isUnchanged(letExpression)) {
+      return letExpression;
+    }
     List<LetClause> clauses = new ArrayList<>(letExpression.getClauses().size());
     for (LetClause clause : letExpression.getClauses()) {
       LetClause newClause = new LetClause(clause.getName(), clause.getPattern(), clause.getExpression().accept(this, null));
@@ -180,6 +253,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitCase(CaseExpression expr, Void params) {
+    if (isUnchanged(expr)) {
+      return expr;
+    }
     List<Expression> arguments = new ArrayList<>(expr.getArguments().size());
     for (Expression arg : expr.getArguments()) {
       arguments.add(arg.accept(this, null));
@@ -209,7 +285,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitOfType(OfTypeExpression expr, Void params) {
-    return new OfTypeExpression(expr.getExpression().accept(this, null), expr.getTypeOf().accept(this, null));
+    Expression expression = expr.getExpression().accept(this, null);
+    Expression type = expr.getTypeOf().accept(this, null);
+    return !myCopy && expression == expr.getExpression() && type == expr.getTypeOf() ? expr : new OfTypeExpression(expression, type);
   }
 
   @Override
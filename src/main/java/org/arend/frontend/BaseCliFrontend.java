@@ -13,24 +13,35 @@ import org.arend.naming.reference.GlobalReferable;
 import org.arend.naming.reference.LocatedReferable;
 import org.arend.naming.reference.TCReferable;
 import org.arend.prelude.PreludeResourceLibrary;
-import org.arend.typechecking.SimpleTypecheckerState;
+import org.arend.typechecking.ConcurrentTypecheckerState;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
-import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.order.dependency.DummyDependencyListener;
+import org.arend.typechecking.order.listener.ProfilingOrderingListener;
+import org.arend.typechecking.order.listener.TypecheckingProfiler;
 import org.arend.util.FileUtils;
 
 import java.io.IOException;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public abstract class BaseCliFrontend {
+  private static final long WATCH_DELAY = 100;
+  private static final int PROFILE_SUMMARY_SIZE = 10;
+
   // Typechecking
-  private final TypecheckerState myTypecheckerState = new SimpleTypecheckerState();
+  private final TypecheckerState myTypecheckerState = new ConcurrentTypecheckerState();
   private final ListErrorReporter myErrorReporter = new ListErrorReporter();
   private final Map<ModulePath, Error.Level> myModuleResults = new LinkedHashMap<>();
+  private TypecheckingProfiler myProfiler;
+  private Path myProfileFile;
+  private long myNormalizationLimit;
 
   // Libraries
   private final FileLibraryResolver myLibraryResolver = new FileLibraryResolver(new ArrayList<>(), myTypecheckerState, System.err::println);
@@ -63,18 +74,25 @@ public abstract class BaseCliFrontend {
   }
 
 
-  private class MyTypechecking extends TypecheckingOrderingListener {
-    MyTypechecking() {
-      super(myLibraryManager.getInstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, myErrorReporter, PositionComparator.INSTANCE);
+  private class MyTypechecking extends ProfilingOrderingListener {
+    MyTypechecking(DependencyListener dependencyListener) {
+      super(myLibraryManager.getInstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, error -> {
+        synchronized (myErrorReporter) {
+          myErrorReporter.report(error);
+        }
+      }, dependencyListener, PositionComparator.INSTANCE, myProfiler);
+      setNormalizationLimit(myNormalizationLimit);
     }
 
     @Override
     public void typecheckingBodyFinished(TCReferable referable, Definition definition) {
+      super.typecheckingBodyFinished(referable, definition);
       flushErrors();
     }
 
     @Override
     public void typecheckingUnitFinished(TCReferable referable, Definition definition) {
+      super.typecheckingUnitFinished(referable, definition);
       flushErrors();
     }
   }
@@ -88,6 +106,10 @@ public abstract class BaseCliFrontend {
       cmdOptions.addOption(Option.builder("s").longOpt("source").hasArg().argName("srcdir").desc("project source directory").build());
       cmdOptions.addOption(Option.builder("o").longOpt("output").hasArg().argName("outdir").desc("project output directory").build());
       cmdOptions.addOption(Option.builder().longOpt("recompile").desc("recompile files").build());
+      cmdOptions.addOption(Option.builder("t").longOpt("threads").hasArg().argName("N").desc("number of threads used for loading and typechecking").build());
+      cmdOptions.addOption(Option.builder("w").longOpt("watch").desc("keep running and typecheck modified modules").build());
+      cmdOptions.addOption(Option.builder().longOpt("fuel").hasArg().argName("N").desc("maximum number of normalization steps in a definition").build());
+      cmdOptions.addOption(Option.builder().longOpt("profile").hasArg().argName("file").desc("write typechecking time of definitions and modules to a JSON file").build());
       addCommandOptions(cmdOptions);
       CommandLine cmdLine = new DefaultParser().parse(cmdOptions, args);
 
@@ -200,72 +222,243 @@ public abstract class BaseCliFrontend {
       return cmdLine;
     }
 
+    int threads = 1;
+    String threadsStr = cmdLine.getOptionValue("t");
+    if (threadsStr != null) {
+      try {
+        threads = Integer.parseInt(threadsStr);
+      } catch (NumberFormatException e) {
+        threads = 0;
+      }
+      if (threads <= 0) {
+        System.err.println("[ERROR] The number of threads must be a positive integer: " + threadsStr);
+        threads = 1;
+      }
+      myLibraryManager.setLoadingThreads(threads);
+    }
+
+    String fuelStr = cmdLine.getOptionValue("fuel");
+    if (fuelStr != null) {
+      try {
+        myNormalizationLimit = Long.parseLong(fuelStr);
+      } catch (NumberFormatException e) {
+        myNormalizationLimit = 0;
+      }
+      if (myNormalizationLimit <= 0) {
+        System.err.println("[ERROR] The maximum number of normalization steps must be a positive integer: " + fuelStr);
+        myNormalizationLimit = 0;
+      }
+    }
+
+    String profileStr = cmdLine.getOptionValue("profile");
+    if (profileStr != null) {
+      myProfiler = new TypecheckingProfiler();
+      myProfileFile = Paths.get(profileStr);
+    }
+
     boolean recompile = cmdLine.hasOption("recompile");
     for (UnmodifiableSourceLibrary library : requestedLibraries) {
       myModuleResults.clear();
       if (recompile) {
         library.addFlag(SourceLibrary.Flag.RECOMPILE);
       }
-      if (!myLibraryManager.loadLibrary(library)) {
-        continue;
+      if (myLibraryManager.loadLibrary(library)) {
+        typecheckLibrary(library, threads);
       }
+    }
 
-      if (!library.needsTypechecking()) {
-        continue;
+    if (myProfiler != null) {
+      myProfiler.printSummary(System.out, PROFILE_SUMMARY_SIZE);
+      writeProfile();
+    }
+
+    if (cmdLine.hasOption("w")) {
+      watch(requestedLibraries, threads);
+    }
+
+    return cmdLine;
+  }
+
+  private void typecheckLibrary(UnmodifiableSourceLibrary library, int threads) {
+    typecheckLibrary(library, threads, null);
+  }
+
+  /**
+   * Typechecks a library.
+   *
+   * @param dependencyCollector  a collector in the incremental mode which updated some definitions of the library or null.
+   */
+  private void typecheckLibrary(UnmodifiableSourceLibrary library, int threads, DependencyCollector dependencyCollector) {
+    if (!library.needsTypechecking()) {
+      return;
+    }
+
+    System.out.println("--- Typechecking " + library.getName() + " ---");
+    Collection<? extends ModulePath> modules = new ArrayList<>(library.getUpdatedModules());
+    new MyTypechecking(dependencyCollector == null ? DummyDependencyListener.INSTANCE : dependencyCollector).typecheckLibrary(library, threads);
+    if (dependencyCollector != null) {
+      // Dependents of updated definitions are typechecked again only if the definitions have changed
+      while (!dependencyCollector.propagateUpdates().isEmpty()) {
+        new MyTypechecking(dependencyCollector).typecheckLibrary(library, threads);
       }
+    }
+    flushErrors();
+
+    // Output nice per-module typechecking results
+    int numWithErrors = 0;
+    int numWithGoals = 0;
+    for (ModulePath module : modules) {
+      Error.Level result = myModuleResults.get(module);
+      if (result == null && library.getModuleGroup(module) == null) {
+        result = Error.Level.ERROR;
+      }
+      reportTypeCheckResult(module, result);
+      if (result == Error.Level.ERROR) numWithErrors++;
+      if (result == Error.Level.GOAL) numWithGoals++;
+    }
 
-      System.out.println("--- Typechecking " + library.getName() + " ---");
-      Collection<? extends ModulePath> modules = library.getUpdatedModules();
-      new MyTypechecking().typecheckLibrary(library);
-      flushErrors();
+    if (numWithErrors > 0) {
+      System.out.println("Number of modules with errors: " + numWithErrors);
+    }
+    if (numWithGoals > 0) {
+      System.out.println("Number of modules with goals: " + numWithGoals);
+    }
+    System.out.println("--- Done ---");
 
-      // Output nice per-module typechecking results
-      int numWithErrors = 0;
-      int numWithGoals = 0;
-      for (ModulePath module : modules) {
-        Error.Level result = myModuleResults.get(module);
-        if (result == null && library.getModuleGroup(module) == null) {
-          result = Error.Level.ERROR;
-        }
-        reportTypeCheckResult(module, result);
-        if (result == Error.Level.ERROR) numWithErrors++;
-        if (result == Error.Level.GOAL) numWithGoals++;
+    // Persist updated modules
+    if (library.supportsPersisting()) {
+      library.persistUpdateModules(System.err::println);
+      library.clearUpdateModules();
+    }
+  }
+
+  /**
+   * Watches source directories of loaded libraries and typechecks modified modules until the process is terminated.
+   * The prelude, libraries and typechecked definitions are kept in memory,
+   * so only modified modules and modules that import them are reloaded.
+   * Definitions of reloaded modules are kept if the structure of their modules has not changed;
+   * definitions of modified modules are typechecked again, and their dependents are typechecked again only if they have changed.
+   */
+  private void watch(List<UnmodifiableSourceLibrary> libraries, int threads) {
+    Map<Path, FileSourceLibrary> sourceDirs = new LinkedHashMap<>();
+    for (UnmodifiableSourceLibrary library : libraries) {
+      if (library instanceof FileSourceLibrary && library.isLoaded() && ((FileSourceLibrary) library).getSourceBasePath() != null) {
+        sourceDirs.put(((FileSourceLibrary) library).getSourceBasePath().toAbsolutePath().normalize(), (FileSourceLibrary) library);
       }
+    }
+    if (sourceDirs.isEmpty()) {
+      System.out.println("Nothing to watch");
+      return;
+    }
 
-      if (numWithErrors > 0) {
-        System.out.println("Number of modules with errors: " + numWithErrors);
+    try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+      Map<WatchKey, Path> watchedDirs = new HashMap<>();
+      for (Path sourceDir : sourceDirs.keySet()) {
+        registerDirectories(watchService, sourceDir, watchedDirs);
       }
-      if (numWithGoals > 0) {
-        System.out.println("Number of modules with goals: " + numWithGoals);
+      System.out.println("[INFO] Watching for changes");
+
+      while (true) {
+        Map<FileSourceLibrary, Set<ModulePath>> modifiedModules = new LinkedHashMap<>();
+        WatchKey key = watchService.take();
+        while (key != null) {
+          Path dir = watchedDirs.get(key);
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+              continue;
+            }
+            Path file = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+              registerDirectories(watchService, file, watchedDirs);
+            } else {
+              addModifiedModule(sourceDirs, file, modifiedModules);
+            }
+          }
+          if (!key.reset()) {
+            watchedDirs.remove(key);
+          }
+          // Editors usually produce several events for a single save
+          key = watchService.poll(WATCH_DELAY, TimeUnit.MILLISECONDS);
+        }
+
+        for (Map.Entry<FileSourceLibrary, Set<ModulePath>> entry : modifiedModules.entrySet()) {
+          FileSourceLibrary library = entry.getKey();
+          myModuleResults.clear();
+          DependencyCollector dependencyCollector = new DependencyCollector(myTypecheckerState);
+          dependencyCollector.setIncremental(true);
+          Set<ModulePath> reloadedModules = library.reloadModules(myLibraryManager, entry.getValue(), dependencyCollector);
+          System.out.println("[INFO] Reloaded " + reloadedModules.size() + " module" + (reloadedModules.size() == 1 ? "" : "s") + " of library " + library.getName());
+          flushErrors();
+          typecheckLibrary(library, threads, dependencyCollector);
+          if (myProfiler != null) {
+            writeProfile();
+          }
+        }
       }
-      System.out.println("--- Done ---");
+    } catch (IOException e) {
+      e.printStackTrace();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
 
-      // Persist updated modules
-      if (library.supportsPersisting()) {
-        library.persistUpdateModules(System.err::println);
-        library.clearUpdateModules();
+  private void writeProfile() {
+    try {
+      Path parent = myProfileFile.toAbsolutePath().getParent();
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+      try (Writer writer = Files.newBufferedWriter(myProfileFile, StandardCharsets.UTF_8)) {
+        myProfiler.writeJson(writer);
       }
+      System.out.println("[INFO] Written profile to " + myProfileFile);
+    } catch (IOException e) {
+      System.err.println("[ERROR] Cannot write profile to " + myProfileFile + ": " + e.getMessage());
     }
+  }
 
-    return cmdLine;
+  private static void registerDirectories(WatchService watchService, Path root, Map<WatchKey, Path> watchedDirs) throws IOException {
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+        watchedDirs.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static void addModifiedModule(Map<Path, FileSourceLibrary> sourceDirs, Path file, Map<FileSourceLibrary, Set<ModulePath>> modifiedModules) {
+    for (Map.Entry<Path, FileSourceLibrary> entry : sourceDirs.entrySet()) {
+      if (!file.startsWith(entry.getKey())) {
+        continue;
+      }
+      ModulePath modulePath = FileUtils.modulePath(entry.getKey().relativize(file), FileUtils.EXTENSION);
+      FileSourceLibrary library = entry.getValue();
+      if (modulePath != null && (library.containsModule(modulePath) || library.getModuleGroup(modulePath) != null)) {
+        modifiedModules.computeIfAbsent(library, k -> new LinkedHashSet<>()).add(modulePath);
+      }
+      return;
+    }
   }
 
   private void flushErrors() {
-    for (GeneralError error : myErrorReporter.getErrorList()) {
-      for (GlobalReferable referable : error.getAffectedDefinitions()) {
-        if (referable instanceof LocatedReferable) {
-          updateSourceResult(((LocatedReferable) referable).getLocation(), error.level);
+    synchronized (myErrorReporter) {
+      for (GeneralError error : myErrorReporter.getErrorList()) {
+        for (GlobalReferable referable : error.getAffectedDefinitions()) {
+          if (referable instanceof LocatedReferable) {
+            updateSourceResult(((LocatedReferable) referable).getLocation(), error.level);
+          }
         }
-      }
 
-      if (error instanceof ExceptionError || error.getAffectedDefinitions().isEmpty()) {
-        System.err.println(error);
-        System.err.flush();
-      } else {
-        System.out.println(error);
+        if (error instanceof ExceptionError || error.getAffectedDefinitions().isEmpty()) {
+          System.err.println(error);
+          System.err.flush();
+        } else {
+          System.out.println(error);
+        }
       }
+      myErrorReporter.getErrorList().clear();
     }
-    myErrorReporter.getErrorList().clear();
   }
 
   private void updateSourceResult(ModulePath module, Error.Level result) {
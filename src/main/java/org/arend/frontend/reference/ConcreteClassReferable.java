@@ -8,29 +8,28 @@ import org.arend.naming.reference.TCClassReferable;
 import org.arend.naming.reference.TCReferable;
 import org.arend.naming.resolving.visitor.ExpressionResolveNameVisitor;
 import org.arend.naming.scope.CachingScope;
+import org.arend.naming.scope.ClassFieldImplScope;
 import org.arend.naming.scope.Scope;
 import org.arend.term.Precedence;
 import org.arend.term.concrete.Concrete;
 import org.arend.term.group.ChildGroup;
 
 import javax.annotation.Nonnull;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import javax.annotation.Nullable;
+import java.util.*;
 
 public class ConcreteClassReferable extends ConcreteLocatedReferable implements TCClassReferable {
   private final ChildGroup myGroup;
   private final Collection<? extends ConcreteClassFieldReferable> myFields;
   private final List<? extends Reference> myUnresolvedSuperClasses;
-  private final List<TCClassReferable> mySuperClasses;
-  private boolean myResolved = false;
+  private volatile List<TCClassReferable> mySuperClasses;
+  private volatile Map<String, Referable> myFieldsByName;
+  private volatile Map<String, Referable> myFieldsAndSuperClassesByName;
 
   public ConcreteClassReferable(Position position, @Nonnull String name, Precedence precedence, Collection<? extends ConcreteClassFieldReferable> fields, List<? extends Reference> superClasses, ChildGroup group, TCReferable parent) {
     super(position, name, precedence, parent, Kind.TYPECHECKABLE);
     myFields = fields;
     myUnresolvedSuperClasses = superClasses;
-    mySuperClasses = new ArrayList<>(superClasses.size());
     myGroup = group;
   }
 
@@ -38,7 +37,6 @@ public class ConcreteClassReferable extends ConcreteLocatedReferable implements
     super(position, name, precedence, parent);
     myFields = fields;
     myUnresolvedSuperClasses = superClasses;
-    mySuperClasses = new ArrayList<>(superClasses.size());
     myGroup = group;
   }
 
@@ -59,20 +57,26 @@ public class ConcreteClassReferable extends ConcreteLocatedReferable implements
   }
 
   protected void resolve() {
-    if (!myResolved) {
+    if (mySuperClasses == null) {
       resolve(CachingScope.make(myGroup.getGroupScope()));
-      myResolved = true;
     }
   }
 
+  /**
+   * Resolves references to super classes.
+   * The result is published at once, so the class can be resolved concurrently from several modules.
+   */
   protected void resolve(Scope scope) {
-    mySuperClasses.clear();
+    List<TCClassReferable> superClasses = new ArrayList<>(myUnresolvedSuperClasses.size());
     for (Reference superClass : myUnresolvedSuperClasses) {
       Referable ref = ExpressionResolveNameVisitor.resolve(superClass.getReferent(), scope, true);
       if (ref instanceof TCClassReferable) {
-        mySuperClasses.add((TCClassReferable) ref);
+        superClasses.add((TCClassReferable) ref);
       }
     }
+    mySuperClasses = superClasses;
+    myFieldsByName = null;
+    myFieldsAndSuperClassesByName = null;
   }
 
   @Nonnull
@@ -97,4 +101,45 @@ public class ConcreteClassReferable extends ConcreteLocatedReferable implements
     }
     return result;
   }
+
+  /**
+   * Fields are cached only if all ancestors are concrete classes since their super classes do not change after they are resolved.
+   * The cache is cleared when super classes of this class are resolved again.
+   */
+  @Nullable
+  @Override
+  public Map<String, Referable> getCachedFieldsByName(boolean withSuperClasses) {
+    Map<String, Referable> fields = withSuperClasses ? myFieldsAndSuperClassesByName : myFieldsByName;
+    if (fields == null) {
+      if (!hasConcreteHierarchy()) {
+        return null;
+      }
+      fields = Collections.unmodifiableMap(ClassFieldImplScope.collectReferables(this, withSuperClasses));
+      if (withSuperClasses) {
+        myFieldsAndSuperClassesByName = fields;
+      } else {
+        myFieldsByName = fields;
+      }
+    }
+    return fields;
+  }
+
+  private boolean hasConcreteHierarchy() {
+    Set<ConcreteClassReferable> visited = new HashSet<>();
+    Deque<ConcreteClassReferable> toVisit = new ArrayDeque<>();
+    toVisit.add(this);
+    while (!toVisit.isEmpty()) {
+      ConcreteClassReferable classRef = toVisit.pop();
+      if (!visited.add(classRef)) {
+        continue;
+      }
+      for (TCClassReferable superClass : classRef.getSuperClassReferences()) {
+        if (!(superClass instanceof ConcreteClassReferable)) {
+          return false;
+        }
+        toVisit.add((ConcreteClassReferable) superClass);
+      }
+    }
+    return true;
+  }
 }
@@ -36,6 +36,7 @@ public class FileLoadableHeaderLibrary extends FileSourceLibrary {
     if (myConfig.getBinariesDir() != null) {
       myBinaryBasePath = myHeaderFile.getParent().resolve(myConfig.getBinariesDir());
     }
+    setBinaryBundleOptions(myConfig.isBinariesBundle(), myConfig.isCompressBinaries());
 
     myModules = new LinkedHashSet<>();
     if (myConfig.getModules() != null) {
@@ -1,12 +1,17 @@
 package org.arend.library;
 
 import org.arend.error.ErrorReporter;
+import org.arend.library.error.LibraryIOError;
 import org.arend.module.ModulePath;
+import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.source.*;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.util.FileUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Set;
@@ -17,6 +22,12 @@ public class FileSourceLibrary extends UnmodifiableSourceLibrary {
   protected Set<ModulePath> myModules;
   protected List<LibraryDependency> myDependencies;
   protected boolean myComplete;
+  private boolean myUseBinaryBundle;
+  private boolean myCompressBinaries;
+  private BinaryBundle myBinaryBundle;
+  private boolean myBinaryBundleResolved;
+  private boolean myPersistingUpdateModules;
+  private ErrorReporter myLibraryErrorReporter;
 
   /**
    * Creates a new {@code UnmodifiableFileSourceLibrary}
@@ -52,10 +63,95 @@ public class FileSourceLibrary extends UnmodifiableSourceLibrary {
     return mySourceBasePath == null ? null : new FileRawSource(mySourceBasePath, modulePath);
   }
 
+  /**
+   * Configures how binary modules are stored.
+   *
+   * @param useBundle  true if all modules should be stored in a single {@link BinaryBundle}, false otherwise.
+   *                   The bundle is also used if its file already exists.
+   * @param compress   true if modules in the bundle should be compressed, false otherwise.
+   */
+  public void setBinaryBundleOptions(boolean useBundle, boolean compress) {
+    myUseBinaryBundle = useBundle;
+    myCompressBinaries = compress;
+    myBinaryBundle = null;
+    myBinaryBundleResolved = false;
+  }
+
+  /**
+   * Gets the bundle in which binary modules are stored.
+   *
+   * @return the bundle or null if modules are stored in separate files.
+   */
+  @Nullable
+  public BinaryBundle getBinaryBundle() {
+    if (!myBinaryBundleResolved && myBinaryBasePath != null) {
+      Path file = myBinaryBasePath.resolve(FileUtils.BINARY_BUNDLE_FILE);
+      if (myUseBinaryBundle || Files.exists(file)) {
+        myBinaryBundle = new BinaryBundle(file, myCompressBinaries, myLibraryErrorReporter);
+      }
+      myBinaryBundleResolved = true;
+    }
+    return myBinaryBundle;
+  }
+
+  @Override
+  public boolean load(LibraryManager libraryManager) {
+    myLibraryErrorReporter = libraryManager.getLibraryErrorReporter();
+    return super.load(libraryManager);
+  }
+
   @Nullable
   @Override
   public BinarySource getBinarySource(ModulePath modulePath) {
-    return myBinaryBasePath == null ? null : new GZIPStreamBinarySource(new FileBinarySource(myBinaryBasePath, modulePath));
+    if (myBinaryBasePath == null) {
+      return null;
+    }
+    BinaryBundle bundle = getBinaryBundle();
+    return bundle != null ? new BundleBinarySource(bundle, modulePath) : new MappedFileBinarySource(myBinaryBasePath, modulePath);
+  }
+
+  @Override
+  public boolean persistModule(ModulePath modulePath, ReferableConverter referableConverter, ErrorReporter errorReporter) {
+    boolean ok = super.persistModule(modulePath, referableConverter, errorReporter);
+    return (myPersistingUpdateModules || flushBinaryBundle(errorReporter)) && ok;
+  }
+
+  /**
+   * Persists updated modules.
+   * If modules are stored in a bundle, it is written once after all modules are persisted.
+   */
+  @Override
+  public boolean persistUpdateModules(ErrorReporter errorReporter) {
+    boolean ok;
+    myPersistingUpdateModules = true;
+    try {
+      ok = super.persistUpdateModules(errorReporter);
+    } finally {
+      myPersistingUpdateModules = false;
+    }
+    return flushBinaryBundle(errorReporter) && ok;
+  }
+
+  @Override
+  public boolean deleteModule(ModulePath modulePath) {
+    return super.deleteModule(modulePath) && (myPersistingUpdateModules || flushBinaryBundle(null));
+  }
+
+  private boolean flushBinaryBundle(@Nullable ErrorReporter errorReporter) {
+    BinaryBundle bundle = myBinaryBundle;
+    if (bundle == null) {
+      return true;
+    }
+
+    try {
+      bundle.flush();
+      return true;
+    } catch (IOException e) {
+      if (errorReporter != null) {
+        errorReporter.report(new LibraryIOError(bundle.getFile().toString(), "Failed to write binary bundle", e.getLocalizedMessage()));
+      }
+      return false;
+    }
   }
 
   @Nullable
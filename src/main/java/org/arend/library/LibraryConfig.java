@@ -13,6 +13,8 @@ public class LibraryConfig {
   private String myName;
   private String mySourcesDirectory;
   private String myBinariesDirectory;
+  private boolean myBinariesBundle;
+  private boolean myCompressBinaries;
   private List<String> myModules;
   private List<String> myDependencies;
 
@@ -40,6 +42,22 @@ public class LibraryConfig {
     myBinariesDirectory = binariesDirectory;
   }
 
+  public boolean isBinariesBundle() {
+    return myBinariesBundle;
+  }
+
+  public void setBinariesBundle(boolean binariesBundle) {
+    myBinariesBundle = binariesBundle;
+  }
+
+  public boolean isCompressBinaries() {
+    return myCompressBinaries;
+  }
+
+  public void setCompressBinaries(boolean compressBinaries) {
+    myCompressBinaries = compressBinaries;
+  }
+
   public List<String> getModules() {
     return myModules;
   }
@@ -68,6 +86,12 @@ public class LibraryConfig {
     if (myBinariesDirectory != null) {
       docs.add(text("binariesDir: " + myBinariesDirectory));
     }
+    if (myBinariesBundle) {
+      docs.add(text("binariesBundle: true"));
+    }
+    if (myCompressBinaries) {
+      docs.add(text("compressBinaries: true"));
+    }
     if (myModules != null) {
       docs.add(hList(text("modules: ["), hSep(text(", "), myModules.stream().map(DocFactory::text).collect(Collectors.toList())), text("]")));
     }
@@ -12,6 +12,7 @@ import org.arend.typechecking.instance.provider.InstanceProviderSet;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Contains all necessary information for the library loading.
@@ -22,8 +23,12 @@ public class LibraryManager {
   private final ErrorReporter myTypecheckingErrorReporter;
   private final ErrorReporter myLibraryErrorReporter;
   private final Map<Library, Set<Library>> myReverseDependencies = new LinkedHashMap<>();
+  private final Map<String, Library> myLibraries = new ConcurrentHashMap<>(); // registered libraries by names
+  private final Map<Library, CachingModuleScopeProvider> myModuleScopeProviders = new ConcurrentHashMap<>();
   private final Set<Library> myLoadingLibraries = new HashSet<>();
   private final Set<Library> myFailedLibraries = new HashSet<>();
+  private int myLoadingThreads = 1;
+  private int myModuleScopeCacheSize = 1024;
 
   /**
    * Constructs new {@code LibraryManager}.
@@ -50,11 +55,11 @@ public class LibraryManager {
    */
   public @Nonnull ModuleScopeProvider getAvailableModuleScopeProvider(Library library) {
     Collection<? extends LibraryDependency> dependencies = library.getDependencies();
-    ModuleScopeProvider libraryModuleScopeProvider = library.getModuleScopeProvider();
-    return new CachingModuleScopeProvider(modulePath -> {
+    ModuleScopeProvider libraryModuleScopeProvider = getCachingModuleScopeProvider(library);
+    return modulePath -> {
       if (modulePath.equals(Prelude.MODULE_PATH)) {
         Library lib = getRegisteredLibrary(Prelude.LIBRARY_NAME);
-        return lib == null ? null : lib.getModuleScopeProvider().forModule(modulePath);
+        return lib == null ? null : getCachingModuleScopeProvider(lib).forModule(modulePath);
       }
       Scope scope = libraryModuleScopeProvider.forModule(modulePath);
       if (scope != null) {
@@ -63,14 +68,27 @@ public class LibraryManager {
       for (LibraryDependency dependency : dependencies) {
         Library lib = getRegisteredLibrary(dependency.name);
         if (lib != null) {
-          scope = lib.getModuleScopeProvider().forModule(modulePath);
+          scope = getCachingModuleScopeProvider(lib).forModule(modulePath);
           if (scope != null) {
             return scope;
           }
         }
       }
       return null;
-    });
+    };
+  }
+
+  /**
+   * Gets a module scope provider which caches scopes of modules in a library.
+   * The cache is shared by all libraries depending on this one.
+   * A cached scope is discarded when the library loads another group for its module and when the library is unloaded.
+   *
+   * @param library the library.
+   *
+   * @return a caching scope provider for modules in the specified library.
+   */
+  public @Nonnull CachingModuleScopeProvider getCachingModuleScopeProvider(Library library) {
+    return myModuleScopeProviders.computeIfAbsent(library, lib -> new CachingModuleScopeProvider(lib.getModuleScopeProvider(), lib::getModuleGroup, myModuleScopeCacheSize));
   }
 
   public InstanceProviderSet getInstanceProviderSet() {
@@ -85,6 +103,38 @@ public class LibraryManager {
     return myLibraryErrorReporter;
   }
 
+  /**
+   * Gets the number of threads used to load binary modules of a library.
+   */
+  public int getLoadingThreads() {
+    return myLoadingThreads;
+  }
+
+  /**
+   * Sets the number of threads used to load binary modules of a library.
+   * If {@code threads} is 1, which is the default, modules are loaded sequentially.
+   * Libraries must support concurrent loading of their modules if it is greater than 1.
+   */
+  public void setLoadingThreads(int threads) {
+    myLoadingThreads = threads;
+  }
+
+  /**
+   * Gets the maximal number of module scopes cached for each library.
+   */
+  public int getModuleScopeCacheSize() {
+    return myModuleScopeCacheSize;
+  }
+
+  /**
+   * Sets the maximal number of module scopes cached for each library.
+   * The cache of a library is created when its modules are resolved for the first time,
+   * so the new size applies only to libraries whose modules have not been resolved before this call.
+   */
+  public void setModuleScopeCacheSize(int size) {
+    myModuleScopeCacheSize = size;
+  }
+
   /**
    * Checks if a library is registered in this library manager.
    *
@@ -112,12 +162,18 @@ public class LibraryManager {
    * @return the library with the given name.
    */
   public Library getRegisteredLibrary(String libraryName) {
-    for (Library library : getRegisteredLibraries()) {
-      if (library.getName().equals(libraryName)) {
-        return library;
-      }
-    }
-    return null;
+    return myLibraries.get(libraryName);
+  }
+
+  private void registerLibrary(Library library) {
+    myReverseDependencies.put(library, new HashSet<>());
+    myLibraries.putIfAbsent(library.getName(), library);
+  }
+
+  private Set<Library> unregisterLibrary(Library library) {
+    myLibraries.remove(library.getName(), library);
+    myModuleScopeProviders.remove(library);
+    return myReverseDependencies.remove(library);
   }
 
   /**
@@ -163,10 +219,10 @@ public class LibraryManager {
     boolean result = false;
 
     try {
-      myReverseDependencies.put(library, new HashSet<>());
+      registerLibrary(library);
       result = library.load(this);
       if (!result) {
-        myReverseDependencies.remove(library);
+        unregisterLibrary(library);
         myFailedLibraries.add(library);
       }
       return result;
@@ -229,11 +285,11 @@ public class LibraryManager {
     myFailedLibraries.remove(library);
     if (!myLoadingLibraries.isEmpty()) {
       myLibraryErrorReporter.report(LibraryError.unloadDuringLoading(myLoadingLibraries.stream().map(Library::getName)));
-      myReverseDependencies.remove(library);
+      unregisterLibrary(library);
       return;
     }
 
-    Set<Library> dependencies = myReverseDependencies.remove(library);
+    Set<Library> dependencies = unregisterLibrary(library);
     library.unload();
 
     if (dependencies == null) {
@@ -258,6 +314,8 @@ public class LibraryManager {
       library.unload();
     }
     myReverseDependencies.clear();
+    myLibraries.clear();
+    myModuleScopeProviders.clear();
   }
 
   /**
@@ -282,6 +340,8 @@ public class LibraryManager {
       if (!library.getName().equals(Prelude.LIBRARY_NAME)) {
         library.unload();
         it.remove();
+        myLibraries.remove(library.getName(), library);
+        myModuleScopeProviders.remove(library);
       }
     }
   }
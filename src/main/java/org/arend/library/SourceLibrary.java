@@ -1,21 +1,28 @@
 package org.arend.library;
 
+import org.arend.core.definition.*;
 import org.arend.error.ErrorReporter;
 import org.arend.module.ModulePath;
+import org.arend.module.serialization.DefinitionFingerprint;
+import org.arend.naming.reference.LocatedReferable;
+import org.arend.naming.reference.TCReferable;
 import org.arend.naming.reference.converter.IdReferableConverter;
 import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.source.BinarySource;
 import org.arend.source.Source;
 import org.arend.source.SourceLoader;
 import org.arend.source.error.PersistingError;
+import org.arend.term.NamespaceCommand;
 import org.arend.term.group.ChildGroup;
+import org.arend.term.group.Group;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.order.dependency.DependencyCollector;
 import org.arend.typechecking.order.dependency.DependencyListener;
 import org.arend.typechecking.order.dependency.DummyDependencyListener;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.EnumSet;
+import java.util.*;
 
 /**
  * Represents a library which can load modules in the binary format (see {@link #getBinarySource})
@@ -150,21 +157,216 @@ public abstract class SourceLibrary extends BaseLibrary {
 
     SourceLoader sourceLoader = new SourceLoader(this, libraryManager);
     if (hasRawSources()) {
-      for (ModulePath module : header.modules) {
-        sourceLoader.preloadRaw(module);
-      }
+      sourceLoader.preloadRawSources(header.modules);
       sourceLoader.loadRawSources();
     }
 
     if (!myFlags.contains(Flag.RECOMPILE)) {
-      for (ModulePath module : header.modules) {
-        sourceLoader.loadBinary(module);
-      }
+      sourceLoader.loadBinaries(header.modules);
     }
 
     return super.load(libraryManager);
   }
 
+  /**
+   * Reloads raw sources of modules after they were modified.
+   * Loaded modules which import reloaded modules are also reloaded since their references are resolved to the old definitions.
+   * Modules whose sources were deleted are unloaded.
+   *
+   * @param libraryManager  the library manager which loaded this library.
+   * @param modulePaths     modified modules.
+   *
+   * @return the set of reloaded and unloaded modules.
+   */
+  public Set<ModulePath> reloadModules(LibraryManager libraryManager, Collection<? extends ModulePath> modulePaths) {
+    return reloadModules(libraryManager, modulePaths, null);
+  }
+
+  /**
+   * Reloads raw sources of modules after they were modified.
+   * If a dependency collector is given, typechecked definitions of a reloaded module are kept if the module has the same structure as before:
+   * they are moved to the new referables and their dependencies are recorded in the collector.
+   * Then definitions of modified modules are updated by the collector.
+   * If the collector is in the incremental mode, definitions that depend on them are retypechecked only if their fingerprints change.
+   *
+   * @param libraryManager      the library manager which loaded this library.
+   * @param modulePaths         modified modules.
+   * @param dependencyCollector a collector which records dependencies of the kept definitions or null if definitions should not be kept.
+   *
+   * @return the set of reloaded and unloaded modules.
+   */
+  public Set<ModulePath> reloadModules(LibraryManager libraryManager, Collection<? extends ModulePath> modulePaths, @Nullable DependencyCollector dependencyCollector) {
+    Map<ModulePath, List<ModulePath>> importingModules = new HashMap<>();
+    for (ModulePath modulePath : getLoadedModules()) {
+      Group group = getModuleGroup(modulePath);
+      if (group != null) {
+        for (NamespaceCommand command : group.getNamespaceCommands()) {
+          if (command.getKind() == NamespaceCommand.Kind.IMPORT) {
+            importingModules.computeIfAbsent(new ModulePath(command.getPath()), k -> new ArrayList<>()).add(modulePath);
+          }
+        }
+      }
+    }
+
+    Set<ModulePath> reloadedModules = new LinkedHashSet<>();
+    Deque<ModulePath> toReload = new ArrayDeque<>(modulePaths);
+    while (!toReload.isEmpty()) {
+      ModulePath modulePath = toReload.pop();
+      if (reloadedModules.add(modulePath)) {
+        toReload.addAll(importingModules.getOrDefault(modulePath, Collections.emptyList()));
+      }
+    }
+
+    TypecheckerState state = getTypecheckerState();
+    Map<ModulePath, Map<String, LocatedReferable>> oldReferables = new HashMap<>();
+    Map<ModulePath, Map<String, Definition>> oldDefinitions = new HashMap<>();
+    List<ModulePath> availableModules = new ArrayList<>(reloadedModules.size());
+    for (ModulePath modulePath : reloadedModules) {
+      Group group = getModuleGroup(modulePath);
+      if (group != null) {
+        if (dependencyCollector != null) {
+          Map<String, LocatedReferable> referables = new HashMap<>();
+          if (collectReferables(group, "", referables)) {
+            Map<String, Definition> definitions = new HashMap<>();
+            for (Map.Entry<String, LocatedReferable> entry : referables.entrySet()) {
+              Definition definition = entry.getValue() instanceof TCReferable ? state.getTypechecked((TCReferable) entry.getValue()) : null;
+              if (definition != null) {
+                definitions.put(entry.getKey(), definition);
+              }
+            }
+            oldReferables.put(modulePath, referables);
+            oldDefinitions.put(modulePath, definitions);
+          }
+        }
+        unloadGroup(group);
+      }
+
+      Source source = getRawSource(modulePath);
+      if (source != null && source.isAvailable()) {
+        availableModules.add(modulePath);
+      } else {
+        onGroupLoaded(modulePath, null, true);
+        deleteModule(modulePath);
+      }
+    }
+
+    new SourceLoader(this, libraryManager).reloadRawSources(availableModules);
+
+    if (dependencyCollector != null) {
+      List<Definition> keptDefinitions = new ArrayList<>();
+      Set<Definition> modifiedDefinitions = new HashSet<>();
+      for (Map.Entry<ModulePath, Map<String, Definition>> entry : oldDefinitions.entrySet()) {
+        Map<String, LocatedReferable> newReferables = new HashMap<>();
+        Group group = getModuleGroup(entry.getKey());
+        if (group == null || !collectReferables(group, "", newReferables) || !isSameStructure(oldReferables.get(entry.getKey()), newReferables, entry.getValue())) {
+          continue;
+        }
+
+        for (Map.Entry<String, Definition> defEntry : entry.getValue().entrySet()) {
+          TCReferable newReferable = (TCReferable) newReferables.get(defEntry.getKey());
+          Definition definition = defEntry.getValue();
+          definition.setReferable(newReferable);
+          state.record(newReferable, definition);
+          if (!(definition instanceof ClassField || definition instanceof Constructor)) {
+            keptDefinitions.add(definition);
+            if (modulePaths.contains(entry.getKey())) {
+              modifiedDefinitions.add(definition);
+            }
+          }
+        }
+      }
+
+      List<TCReferable> toUpdate = new ArrayList<>();
+      for (Definition definition : keptDefinitions) {
+        boolean isValid = definition.status() == Definition.TypeCheckingStatus.NO_ERRORS && !modifiedDefinitions.contains(definition);
+        DefinitionFingerprint fingerprint = DefinitionFingerprint.of(definition);
+        if (fingerprint == null) {
+          isValid = false;
+        } else {
+          for (Definition target : fingerprint.getCallTargets()) {
+            Definition owner = target instanceof ClassField ? ((ClassField) target).getParentClass() : target instanceof Constructor ? ((Constructor) target).getDataType() : target;
+            if (owner != definition) {
+              dependencyCollector.dependsOn(definition.getReferable(), false, owner.getReferable());
+              if (state.getTypechecked(owner.getReferable()) != owner) {
+                isValid = false;
+              }
+            }
+          }
+        }
+        if (!isValid) {
+          toUpdate.add(definition.getReferable());
+        }
+      }
+
+      for (TCReferable referable : toUpdate) {
+        dependencyCollector.update(referable);
+      }
+    }
+
+    return reloadedModules;
+  }
+
+  /**
+   * Collects referables of a group by their paths.
+   *
+   * @return false if some paths coincide, true otherwise.
+   */
+  private static boolean collectReferables(Group group, String parentPath, Map<String, LocatedReferable> referables) {
+    String path = parentPath + " " + group.getReferable().textRepresentation();
+    if (referables.putIfAbsent(path, group.getReferable()) != null) {
+      return false;
+    }
+    for (Group.InternalReferable internalReferable : group.getInternalReferables()) {
+      if (referables.putIfAbsent(path + "." + internalReferable.getReferable().textRepresentation(), internalReferable.getReferable()) != null) {
+        return false;
+      }
+    }
+    for (Group subgroup : group.getSubgroups()) {
+      if (!collectReferables(subgroup, path, referables)) {
+        return false;
+      }
+    }
+    for (Group subgroup : group.getDynamicSubgroups()) {
+      if (!collectReferables(subgroup, path, referables)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks that old definitions of a module can be moved to the new referables.
+   */
+  private static boolean isSameStructure(Map<String, LocatedReferable> oldReferables, Map<String, LocatedReferable> newReferables, Map<String, Definition> oldDefinitions) {
+    if (!oldReferables.keySet().equals(newReferables.keySet())) {
+      return false;
+    }
+    for (Map.Entry<String, LocatedReferable> entry : oldReferables.entrySet()) {
+      if (entry.getValue().getClass() != newReferables.get(entry.getKey()).getClass()) {
+        return false;
+      }
+    }
+
+    // Fields and constructors must be moved together with their classes and data types
+    Set<LocatedReferable> referables = new HashSet<>(oldReferables.values());
+    for (Definition definition : oldDefinitions.values()) {
+      if (definition instanceof ClassDefinition) {
+        for (ClassField field : ((ClassDefinition) definition).getPersonalFields()) {
+          if (!referables.contains(field.getReferable())) {
+            return false;
+          }
+        }
+      } else if (definition instanceof DataDefinition) {
+        for (Constructor constructor : ((DataDefinition) definition).getConstructors()) {
+          if (!referables.contains(constructor.getReferable())) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
   @Override
   public boolean containsModule(ModulePath modulePath) {
     Source source = getRawSource(modulePath);
@@ -1,22 +1,47 @@
 package org.arend.module.scopeprovider;
 
+import com.google.common.cache.CacheBuilder;
 import org.arend.module.ModulePath;
 import org.arend.naming.scope.CachingScope;
 import org.arend.naming.scope.Scope;
+import org.arend.term.group.Group;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 public class CachingModuleScopeProvider implements ModuleScopeProvider {
   private final ModuleScopeProvider myModuleScopeProvider;
-  private final Map<ModulePath, Scope> myScopes = new HashMap<>();
+  private final Function<ModulePath, ? extends Group> myGroupProvider;
+  private final ConcurrentMap<ModulePath, Entry> myScopes;
 
-  private final static Scope NULL_SCOPE = new Scope() {};
+  private static class Entry {
+    final Group group;
+    final Scope scope;
+
+    Entry(Group group, Scope scope) {
+      this.group = group;
+      this.scope = scope;
+    }
+  }
 
   public CachingModuleScopeProvider(ModuleScopeProvider moduleScopeProvider) {
     myModuleScopeProvider = moduleScopeProvider;
+    myGroupProvider = null;
+    myScopes = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Creates a provider which keeps at most {@code maxSize} recently used scopes.
+   * The cache is concurrent, so modules can be resolved in parallel; eviction is approximately LRU.
+   * Only scopes of modules with groups are cached; a scope is discarded when {@code groupProvider} returns another group for its module.
+   */
+  public CachingModuleScopeProvider(ModuleScopeProvider moduleScopeProvider, Function<ModulePath, ? extends Group> groupProvider, int maxSize) {
+    myModuleScopeProvider = moduleScopeProvider;
+    myGroupProvider = groupProvider;
+    myScopes = CacheBuilder.newBuilder().maximumSize(maxSize).concurrencyLevel(Runtime.getRuntime().availableProcessors()).<ModulePath, Entry>build().asMap();
   }
 
   public void reset(ModulePath modulePath) {
@@ -30,19 +55,31 @@ public class CachingModuleScopeProvider implements ModuleScopeProvider {
   @Nullable
   @Override
   public Scope forModule(@Nonnull ModulePath module) {
-    Scope scope = myScopes.get(module);
-    if (scope == NULL_SCOPE) {
-      return null;
+    Group group = null;
+    if (myGroupProvider != null) {
+      group = myGroupProvider.apply(module);
+      if (group == null) {
+        myScopes.remove(module);
+        return myModuleScopeProvider.forModule(module);
+      }
     }
-    if (scope != null) {
-      return scope;
+
+    Entry entry = myScopes.get(module);
+    if (entry != null && entry.group == group) {
+      return entry.scope;
     }
 
-    scope = myModuleScopeProvider.forModule(module);
+    Scope scope = myModuleScopeProvider.forModule(module);
     if (scope != null) {
       scope = CachingScope.make(scope);
     }
-    myScopes.put(module, scope == null ? NULL_SCOPE : scope);
-    return scope;
+    entry = new Entry(group, scope);
+    if (myGroupProvider != null) {
+      myScopes.put(module, entry);
+      return scope;
+    }
+
+    Entry prev = myScopes.putIfAbsent(module, entry);
+    return prev == null ? scope : prev.scope;
   }
 }
@@ -1,5 +1,7 @@
 package org.arend.module.serialization;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import org.arend.core.context.LinkList;
 import org.arend.core.context.param.DependentLink;
 import org.arend.core.definition.*;
@@ -10,24 +12,42 @@ import org.arend.core.elimtree.IntervalElim;
 import org.arend.core.expr.*;
 import org.arend.core.pattern.*;
 import org.arend.core.sort.Sort;
+import org.arend.error.DummyErrorReporter;
+import org.arend.error.ErrorReporter;
+import org.arend.module.ModulePath;
+import org.arend.module.error.DeserializationError;
 import org.arend.naming.reference.ClassReferableImpl;
 import org.arend.naming.reference.DataLocatedReferableImpl;
 import org.arend.naming.reference.TCClassReferable;
 import org.arend.naming.reference.TCReferable;
 import org.arend.prelude.Prelude;
 import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.order.dependency.DummyDependencyListener;
 import org.arend.util.Pair;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.util.*;
 
 public class DefinitionDeserialization {
   private final CallTargetProvider myCallTargetProvider;
   private final DependencyListener myDependencyListener;
+  private final ModulePath myModulePath;
+  private final ErrorReporter myErrorReporter;
 
   public DefinitionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener) {
+    this(callTargetProvider, dependencyListener, null, DummyErrorReporter.INSTANCE);
+  }
+
+  /**
+   * @param modulePath     the module which is deserialized.
+   * @param errorReporter  a reporter for errors in bodies which are deserialized lazily, that is, after the module is loaded.
+   */
+  public DefinitionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener, ModulePath modulePath, ErrorReporter errorReporter) {
     myCallTargetProvider = callTargetProvider;
     myDependencyListener = dependencyListener;
+    myModulePath = modulePath;
+    myErrorReporter = errorReporter;
   }
 
   public void fillInDefinition(DefinitionProtos.Definition defProto, Definition def, boolean typecheckDefinitionsWithErrors) throws DeserializationException {
@@ -383,10 +403,39 @@ public class DefinitionDeserialization {
     functionDef.setVisibleParameter(functionProto.getVisibleParameter());
     if (functionProto.hasBody()) {
       functionDef.setBody(readBody(defDeserializer, functionProto.getBody()));
+    } else if (!functionProto.getLazyBody().isEmpty()) {
+      ByteString bodyBytes = functionProto.getLazyBody();
+      // Dependencies of a body are reported when it is read, so it is read eagerly if they are tracked
+      if (myDependencyListener != DummyDependencyListener.INSTANCE) {
+        functionDef.setBody(readLazyBody(defDeserializer, bodyBytes));
+      } else {
+        functionDef.setLazyBody(() -> {
+          try {
+            return readLazyBody(defDeserializer, bodyBytes);
+          } catch (DeserializationException | RuntimeException e) {
+            // The body may be requested by any typechecking thread, so the function is treated as a function without a body instead
+            myErrorReporter.report(new DeserializationError(myModulePath, e));
+            functionDef.setStatus(functionDef.status().max(Definition.TypeCheckingStatus.BODY_HAS_ERRORS));
+            return null;
+          }
+        });
+      }
     }
     // setTypeClassReference(functionDef.getReferable(), functionDef.getParameters(), functionDef.getResultType());
   }
 
+  private Body readLazyBody(ExpressionDeserialization defDeserializer, ByteString bodyBytes) throws DeserializationException {
+    DefinitionProtos.Body bodyProto;
+    try {
+      CodedInputStream codedInputStream = bodyBytes.newCodedInput();
+      codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
+      bodyProto = DefinitionProtos.Body.parseFrom(codedInputStream);
+    } catch (IOException e) {
+      throw new DeserializationException("Cannot parse a function body: " + e.getMessage());
+    }
+    return readBody(defDeserializer, bodyProto);
+  }
+
   // To implement this function properly, we need to serialize references to class synonyms
   private void setTypeClassReference(TCReferable referable, DependentLink parameters, Expression type) {
     if (!(referable instanceof DataLocatedReferableImpl)) {
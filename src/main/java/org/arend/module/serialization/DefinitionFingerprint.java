@@ -0,0 +1,99 @@
+package org.arend.module.serialization;
+
+import org.arend.core.definition.ClassField;
+import org.arend.core.definition.Constructor;
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+
+import javax.annotation.Nullable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fingerprint of the part of a typechecked definition that is visible to other definitions.
+ * It consists of the header of the definition and the body of a function unless the function is a lemma.
+ * Two fingerprints are equal if the serialized forms of definitions coincide and they refer to the same definitions.
+ * Referred definitions are compared by their referables, so a definition and its retypechecked version can have equal fingerprints.
+ * Definitions referred only from the body of a lemma do not affect the fingerprint.
+ */
+public class DefinitionFingerprint {
+  private final byte[] myDigest;
+  private final List<Definition> myCallTargets;
+  private final int myVisibleCallTargets; // the number of call targets that are referred outside the body of a lemma
+
+  private DefinitionFingerprint(byte[] digest, List<Definition> callTargets, int visibleCallTargets) {
+    myDigest = digest;
+    myCallTargets = callTargets;
+    myVisibleCallTargets = visibleCallTargets;
+  }
+
+  /**
+   * Computes the fingerprint of a definition.
+   * The fingerprint of a field or a constructor is the fingerprint of its class or data type.
+   *
+   * @return the fingerprint or null if the definition was not typechecked.
+   */
+  @Nullable
+  public static DefinitionFingerprint of(Definition definition) {
+    if (definition instanceof ClassField) {
+      definition = ((ClassField) definition).getParentClass();
+    } else if (definition instanceof Constructor) {
+      definition = ((Constructor) definition).getDataType();
+    }
+    if (!definition.status().isTypeChecked()) {
+      return null;
+    }
+
+    SimpleCallTargetIndexProvider callTargetIndexProvider = new SimpleCallTargetIndexProvider();
+    callTargetIndexProvider.getDefIndex(definition);
+    DefinitionProtos.Definition visiblePart = new DefinitionSerialization(callTargetIndexProvider, false).writeDefinition(definition);
+    int visibleCallTargets = callTargetIndexProvider.getCallTargets().size();
+    if (definition instanceof FunctionDefinition && ((FunctionDefinition) definition).isLemma()) {
+      // Collects call targets of the body
+      new DefinitionSerialization(callTargetIndexProvider).writeDefinition(definition);
+    }
+
+    List<Definition> callTargets = new ArrayList<>();
+    for (Map.Entry<Definition, Integer> entry : callTargetIndexProvider.getCallTargets()) {
+      callTargets.add(entry.getKey());
+    }
+
+    try {
+      return new DefinitionFingerprint(MessageDigest.getInstance("SHA-256").digest(visiblePart.toByteArray()), callTargets, visibleCallTargets);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return the definitions that the fingerprinted definition refers to, including the definition itself and definitions referred from the body of a lemma.
+   */
+  public List<Definition> getCallTargets() {
+    return myCallTargets;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    DefinitionFingerprint that = (DefinitionFingerprint) o;
+    if (!Arrays.equals(myDigest, that.myDigest) || myVisibleCallTargets != that.myVisibleCallTargets) {
+      return false;
+    }
+    for (int i = 0; i < myVisibleCallTargets; i++) {
+      if (myCallTargets.get(i).getReferable() != that.myCallTargets.get(i).getReferable()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(myDigest);
+  }
+}
@@ -24,9 +24,18 @@ import java.util.Map;
 
 public class DefinitionSerialization {
   private final CallTargetIndexProvider myCallTargetIndexProvider;
+  private final boolean myWriteLemmaBodies;
 
   public DefinitionSerialization(CallTargetIndexProvider callTargetIndexProvider) {
+    this(callTargetIndexProvider, true);
+  }
+
+  /**
+   * @param writeLemmaBodies  false if bodies of lemmas should be omitted.
+   */
+  DefinitionSerialization(CallTargetIndexProvider callTargetIndexProvider, boolean writeLemmaBodies) {
     myCallTargetIndexProvider = callTargetIndexProvider;
+    myWriteLemmaBodies = writeLemmaBodies;
   }
 
   DefinitionProtos.Definition writeDefinition(Definition definition) {
@@ -286,8 +295,8 @@ public class DefinitionSerialization {
     }
     builder.setIsLemma(definition.isLemma());
     builder.setVisibleParameter(definition.getVisibleParameter());
-    if (definition.status().bodyIsOK() && definition.getActualBody() != null) {
-      builder.setBody(writeBody(defSerializer, definition.getActualBody()));
+    if ((myWriteLemmaBodies || !definition.isLemma()) && definition.status().bodyIsOK() && definition.getActualBody() != null) {
+      builder.setLazyBody(writeBody(defSerializer, definition.getActualBody()).toByteString());
     }
 
     return builder.build();
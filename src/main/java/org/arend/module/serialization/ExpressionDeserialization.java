@@ -110,7 +110,7 @@ class ExpressionDeserialization {
   }
 
   Sort readSort(LevelProtos.Sort proto) throws DeserializationException {
-    return new Sort(readLevel(proto.getPLevel()), readLevel(proto.getHLevel()));
+    return ExpressionFactory.internSort(new Sort(readLevel(proto.getPLevel()), readLevel(proto.getHLevel())));
   }
 
 
@@ -290,7 +290,7 @@ class ExpressionDeserialization {
   }
 
   private UniverseExpression readUniverse(ExpressionProtos.Expression.Universe proto) throws DeserializationException {
-    return new UniverseExpression(readSort(proto.getSort()));
+    return ExpressionFactory.internUniverse(readSort(proto.getSort()));
   }
 
   private ErrorExpression readError(ExpressionProtos.Expression.Error proto) throws DeserializationException {
@@ -1,6 +1,8 @@
 package org.arend.module.serialization;
 
 import org.arend.core.definition.*;
+import org.arend.error.DummyErrorReporter;
+import org.arend.error.ErrorReporter;
 import org.arend.module.ModulePath;
 import org.arend.module.scopeprovider.ModuleScopeProvider;
 import org.arend.naming.reference.*;
@@ -33,6 +35,14 @@ public class ModuleDeserialization {
   }
 
   public void readModule(ModuleScopeProvider moduleScopeProvider, DependencyListener dependencyListener, boolean typecheckDefinitionsWithErrors) throws DeserializationException {
+    readCallTargets(moduleScopeProvider);
+    fillInDefinitions(dependencyListener, typecheckDefinitionsWithErrors);
+  }
+
+  /**
+   * Resolves references to definitions from other modules.
+   */
+  public void readCallTargets(ModuleScopeProvider moduleScopeProvider) throws DeserializationException {
     for (ModuleProtos.ModuleCallTargets moduleCallTargets : myModuleProto.getModuleCallTargetsList()) {
       ModulePath module = new ModulePath(moduleCallTargets.getNameList());
       Scope scope = moduleScopeProvider.forModule(module);
@@ -44,12 +54,48 @@ public class ModuleDeserialization {
         fillInCallTargetTree(callTargetTree, scope, module);
       }
     }
+  }
 
-    DefinitionDeserialization defDeserialization = new DefinitionDeserialization(myCallTargetProvider, dependencyListener);
+  /**
+   * Fills in definitions of the module.
+   * This method does not access scopes, so it can be invoked concurrently for modules that do not depend on each other.
+   */
+  public void fillInDefinitions(DependencyListener dependencyListener, boolean typecheckDefinitionsWithErrors) throws DeserializationException {
+    fillInDefinitions(dependencyListener, typecheckDefinitionsWithErrors, null, DummyErrorReporter.INSTANCE);
+  }
+
+  /**
+   * Fills in definitions of the module.
+   * Errors in bodies which are deserialized after the module is loaded are reported to {@code errorReporter}.
+   */
+  public void fillInDefinitions(DependencyListener dependencyListener, boolean typecheckDefinitionsWithErrors, ModulePath modulePath, ErrorReporter errorReporter) throws DeserializationException {
+    DefinitionDeserialization defDeserialization = new DefinitionDeserialization(myCallTargetProvider, dependencyListener, modulePath, errorReporter);
+    Set<ClassDefinition> classes = new LinkedHashSet<>();
     for (Pair<DefinitionProtos.Definition, Definition> pair : myDefinitions) {
       defDeserialization.fillInDefinition(pair.proj1, pair.proj2, typecheckDefinitionsWithErrors);
+      if (pair.proj2 instanceof ClassDefinition) {
+        classes.add((ClassDefinition) pair.proj2);
+      }
     }
     myDefinitions.clear();
+
+    // Super classes can be filled in after their subclasses, so ancestors are computed when all classes are filled in
+    Set<ClassDefinition> updated = new HashSet<>();
+    for (ClassDefinition classDef : classes) {
+      updateAncestors(classDef, classes, updated);
+    }
+  }
+
+  private static void updateAncestors(ClassDefinition classDef, Set<ClassDefinition> classes, Set<ClassDefinition> updated) {
+    if (!updated.add(classDef)) {
+      return;
+    }
+    for (ClassDefinition superClass : classDef.getSuperClasses()) {
+      if (classes.contains(superClass)) {
+        updateAncestors(superClass, classes, updated);
+      }
+    }
+    classDef.updateAncestors();
   }
 
   private void fillInCallTargetTree(ModuleProtos.CallTargetTree callTargetTree, Scope scope, ModulePath module) throws DeserializationException {
@@ -1,6 +1,7 @@
 package org.arend.naming.reference;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.*;
 
 public interface ClassReferable extends LocatedReferable {
@@ -9,6 +10,17 @@ public interface ClassReferable extends LocatedReferable {
   @Nonnull Collection<? extends FieldReferable> getFieldReferables();
   @Nonnull Collection<? extends Referable> getImplementedFields();
 
+  /**
+   * Gets fields of this class and its super classes by their names (see {@link org.arend.naming.scope.ClassFieldImplScope#collectReferables}).
+   *
+   * @param withSuperClasses  true if super classes should be included.
+   *
+   * @return the cached map or null if it is not cached, for example, because super classes are not resolved yet.
+   */
+  default @Nullable Map<String, Referable> getCachedFieldsByName(boolean withSuperClasses) {
+    return null;
+  }
+
   default boolean isSubClassOf(ClassReferable classRef) {
     if (this == classRef) {
       return true;
@@ -6,14 +6,14 @@ import org.arend.naming.reference.Referable;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CachingScope implements Scope {
   private final Map<String, Referable> myElements = new LinkedHashMap<>();
-  private final Map<String, Scope> myNamespaces = new HashMap<>();
-  private final Map<String, Scope> myOnlyInternalNamespaces = new HashMap<>();
+  private final Map<String, Scope> myNamespaces = new ConcurrentHashMap<>();
+  private final Map<String, Scope> myOnlyInternalNamespaces = new ConcurrentHashMap<>();
   private final Scope myScope;
   private final static Scope EMPTY_SCOPE = new Scope() {};
   private final boolean myWithModules;
@@ -57,7 +57,10 @@ public class CachingScope implements Scope {
     if (namespace == null) {
       namespace = myScope.resolveNamespace(name, onlyInternal);
       namespace = namespace == null ? EMPTY_SCOPE : namespace instanceof CachingScope || namespace instanceof ImportedScope ? namespace : new CachingScope(namespace, myWithModules);
-      namespaces.put(name, namespace);
+      Scope prev = namespaces.putIfAbsent(name, namespace);
+      if (prev != null) {
+        namespace = prev;
+      }
     }
 
     return namespace == EMPTY_SCOPE ? null : namespace;
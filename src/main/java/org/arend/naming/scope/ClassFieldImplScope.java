@@ -30,6 +30,16 @@ public class ClassFieldImplScope implements Scope {
   @Nullable
   @Override
   public Referable find(Predicate<Referable> pred) {
+    // Most classes do not have super classes; their fields are checked without allocating the traversal state
+    if (myReferable.getSuperClassReferences().isEmpty()) {
+      for (LocatedReferable referable : myReferable.getFieldReferables()) {
+        if (pred.test(referable)) {
+          return referable;
+        }
+      }
+      return null;
+    }
+
     Set<ClassReferable> visitedClasses = new HashSet<>();
     Deque<ClassReferable> toVisit = new ArrayDeque<>();
     toVisit.add(myReferable);
@@ -63,6 +73,26 @@ public class ClassFieldImplScope implements Scope {
     return null;
   }
 
+  @Nullable
+  @Override
+  public Referable resolveName(String name) {
+    Map<String, Referable> referables = myReferable.getCachedFieldsByName(myWithSuperClasses);
+    return referables != null ? referables.get(name) : find(ref -> Objects.equals(name, ref.textRepresentation()));
+  }
+
+  /**
+   * Collects referables of a class by their names.
+   * If several referables have the same name, the one that is found first by {@link #find} is kept.
+   */
+  public static Map<String, Referable> collectReferables(ClassReferable classRef, boolean withSuperClasses) {
+    Map<String, Referable> result = new HashMap<>();
+    new ClassFieldImplScope(classRef, withSuperClasses).find(ref -> {
+      result.putIfAbsent(ref.textRepresentation(), ref);
+      return false;
+    });
+    return result;
+  }
+
   @Nullable
   @Override
   public Scope resolveNamespace(String name, boolean onlyInternal) {
@@ -9,16 +9,21 @@ import org.arend.term.group.Group;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * The scope of a group.
+ * Names defined in the group are indexed on the first request, so a new scope should be created if the group is modified.
+ */
 @SuppressWarnings("Duplicates")
 public class LexicalScope implements Scope {
   private final Scope myParent;
   private final Group myGroup;
   private final ModulePath myModule;
   private final Kind myKind;
+  private volatile Index myIndex;
+  private volatile Scope myOpenedScope;
 
   private enum Kind { INSIDE, OPENED, OPENED_INTERNAL }
 
@@ -45,14 +50,14 @@ public class LexicalScope implements Scope {
     return opened(group, false);
   }
 
-  private void addReferable(Referable referable, List<Referable> elements) {
+  private static void addReferable(Referable referable, List<Referable> elements) {
     String name = referable.textRepresentation();
     if (!name.isEmpty() && !"_".equals(name)) {
       elements.add(referable);
     }
   }
 
-  private void addSubgroups(Collection<? extends Group> subgroups, List<Referable> elements) {
+  private static void addSubgroups(Collection<? extends Group> subgroups, List<Referable> elements) {
     for (Group subgroup : subgroups) {
       addReferable(subgroup.getReferable(), elements);
       for (Group.InternalReferable internalRef : subgroup.getInternalReferables()) {
@@ -63,91 +68,119 @@ public class LexicalScope implements Scope {
     }
   }
 
-  @Nonnull
-  @Override
-  public List<Referable> getElements() {
-    List<Referable> elements = new ArrayList<>();
-    for (Group.InternalReferable constructor : myGroup.getConstructors()) {
-      addReferable(constructor.getReferable(), elements);
-    }
-    GlobalReferable groupRef = myGroup.getReferable();
-    if (myKind != Kind.OPENED_INTERNAL && groupRef instanceof ClassReferable) {
-      elements.addAll(new ClassFieldImplScope((ClassReferable) groupRef, false).getElements());
-    } else {
-      for (Group.InternalReferable field : myGroup.getFields()) {
-        addReferable(field.getReferable(), elements);
+  /**
+   * Names defined in a group, that is, everything except opened names and names from the parent scope.
+   * Maps contain the first referable with a given name in the order in which {@link #resolve} looks names up.
+   */
+  private static class Index {
+    final List<Referable> elements = new ArrayList<>();
+    final Map<String, GlobalReferable> internalReferables = new HashMap<>(); // fields are omitted if the scope delegates them to ClassFieldImplScope
+    final Map<String, Referable> subgroupReferables = new HashMap<>(); // subgroups and their visible internal referables
+    final Map<String, Group> subgroups = new HashMap<>();
+    final Map<Group, Scope> openedSubgroups = new ConcurrentHashMap<>();
+    final Map<Group, Scope> openedInternalSubgroups = new ConcurrentHashMap<>();
+    final Map<NamespaceCommand, Scope> openedNamespaces = new ConcurrentHashMap<>();
+    final ClassReferable classReferable; // not null if fields are resolved in ClassFieldImplScope
+
+    Index(Group group, Kind kind) {
+      boolean onlyInternal = kind == Kind.OPENED_INTERNAL;
+      for (Group.InternalReferable constructor : group.getConstructors()) {
+        addReferable(constructor.getReferable(), elements);
+        addInternalReferable(constructor, onlyInternal);
       }
-    }
 
-    addSubgroups(myGroup.getSubgroups(), elements);
-    addSubgroups(myGroup.getDynamicSubgroups(), elements);
+      GlobalReferable groupRef = group.getReferable();
+      classReferable = !onlyInternal && groupRef instanceof ClassReferable ? (ClassReferable) groupRef : null;
+      if (classReferable == null) {
+        for (Group.InternalReferable field : group.getFields()) {
+          addReferable(field.getReferable(), elements);
+          addInternalReferable(field, onlyInternal);
+        }
+      }
 
-    Scope cachingScope = null;
-    for (NamespaceCommand cmd : myGroup.getNamespaceCommands()) {
-      if (ignoreOpens() && cmd.getKind() == NamespaceCommand.Kind.OPEN) {
-        continue;
+      addSubgroups(group.getSubgroups(), elements);
+      addSubgroups(group.getDynamicSubgroups(), elements);
+      indexSubgroups(group.getSubgroups());
+      indexSubgroups(group.getDynamicSubgroups());
+    }
+
+    private void addInternalReferable(Group.InternalReferable internalRef, boolean onlyInternal) {
+      if (!onlyInternal || internalRef.isVisible()) {
+        GlobalReferable ref = internalRef.getReferable();
+        internalReferables.putIfAbsent(ref.textRepresentation(), ref);
       }
+    }
 
-      Scope scope;
-      if (cmd.getKind() == NamespaceCommand.Kind.IMPORT) {
-        if (myModule != null && cmd.getPath().equals(myModule.toList())) {
-          continue;
+    private void indexSubgroups(Collection<? extends Group> subgroups) {
+      for (Group subgroup : subgroups) {
+        GlobalReferable ref = subgroup.getReferable();
+        subgroupReferables.putIfAbsent(ref.textRepresentation(), ref);
+        this.subgroups.putIfAbsent(ref.textRepresentation(), subgroup);
+        for (Group.InternalReferable internalRef : subgroup.getConstructors()) {
+          if (internalRef.isVisible()) {
+            subgroupReferables.putIfAbsent(internalRef.getReferable().textRepresentation(), internalRef.getReferable());
+          }
         }
-        scope = getImportedSubscope();
-      } else {
-        if (cachingScope == null) {
-          cachingScope = CachingScope.make(new LexicalScope(myParent, myGroup, null, Kind.OPENED));
+        for (Group.InternalReferable internalRef : subgroup.getFields()) {
+          if (internalRef.isVisible()) {
+            subgroupReferables.putIfAbsent(internalRef.getReferable().textRepresentation(), internalRef.getReferable());
+          }
         }
-        scope = cachingScope;
       }
-      elements.addAll(NamespaceCommandNamespace.resolveNamespace(scope, cmd).getElements());
     }
+  }
 
-    elements.addAll(myParent.getElements());
-    return elements;
+  private Index getIndex() {
+    Index index = myIndex;
+    if (index == null) {
+      index = new Index(myGroup, myKind);
+      myIndex = index;
+    }
+    return index;
   }
 
-  private static GlobalReferable resolveInternal(Group group, String name, boolean onlyInternal) {
-    for (Group.InternalReferable internalReferable : group.getConstructors()) {
-      if (!onlyInternal || internalReferable.isVisible()) {
-        GlobalReferable constructor = internalReferable.getReferable();
-        if (constructor.textRepresentation().equals(name)) {
-          return constructor;
-        }
-      }
+  private Scope getOpenedScope() {
+    Scope scope = myOpenedScope;
+    if (scope == null) {
+      scope = CachingScope.make(new LexicalScope(myParent, myGroup, null, Kind.OPENED));
+      myOpenedScope = scope;
     }
+    return scope;
+  }
 
-    if (onlyInternal || !(group.getReferable() instanceof ClassReferable)) {
-      for (Group.InternalReferable internalReferable : group.getFields()) {
-        if (!onlyInternal || internalReferable.isVisible()) {
-          GlobalReferable field = internalReferable.getReferable();
-          if (field.textRepresentation().equals(name)) {
-            return field;
-          }
-        }
-      }
-    } else {
-      Referable referable = new ClassFieldImplScope((ClassReferable) group.getReferable(), false).resolveName(name);
-      return referable instanceof GlobalReferable ? (GlobalReferable) referable : null;
+  /**
+   * @return the scope of names imported or opened by {@code cmd} or null if {@code cmd} should be ignored.
+   */
+  private Scope getNamespaceCommandScope(Index index, NamespaceCommand cmd) {
+    if (cmd.getKind() == NamespaceCommand.Kind.IMPORT) {
+      return myModule != null && cmd.getPath().equals(myModule.toList()) ? null : NamespaceCommandNamespace.resolveNamespace(getImportedSubscope(), cmd);
+    }
+    if (ignoreOpens()) {
+      return null;
     }
 
-    return null;
+    // The scope in which open commands are resolved is computed once, so their namespaces can be cached as well
+    return index.openedNamespaces.computeIfAbsent(cmd, c -> NamespaceCommandNamespace.resolveNamespace(getOpenedScope(), c));
   }
 
-  private static Object resolveSubgroup(Group group, String name, ResolveType resolveType) {
-    Referable ref = group.getReferable();
-    if (ref.textRepresentation().equals(name)) {
-      return resolveType == ResolveType.REF ? ref : LexicalScope.opened(group, resolveType == ResolveType.INTERNAL_SCOPE);
+  @Nonnull
+  @Override
+  public List<Referable> getElements() {
+    Index index = getIndex();
+    List<Referable> elements = new ArrayList<>(index.elements);
+    if (index.classReferable != null) {
+      elements.addAll(new ClassFieldImplScope(index.classReferable, false).getElements());
     }
 
-    if (resolveType == ResolveType.REF) {
-      GlobalReferable result = resolveInternal(group, name, true);
-      if (result != null) {
-        return result;
+    for (NamespaceCommand cmd : myGroup.getNamespaceCommands()) {
+      Scope scope = getNamespaceCommandScope(index, cmd);
+      if (scope != null) {
+        elements.addAll(scope.getElements());
       }
     }
 
-    return null;
+    elements.addAll(myParent.getElements());
+    return elements;
   }
 
   private enum ResolveType { REF, SCOPE, INTERNAL_SCOPE }
@@ -157,46 +190,36 @@ public class LexicalScope implements Scope {
       return null;
     }
 
+    Index index = getIndex();
     if (resolveType == ResolveType.REF) {
-      Object result = resolveInternal(myGroup, name, myKind == Kind.OPENED_INTERNAL);
+      Object result = index.internalReferables.get(name);
       if (result != null) {
         return result;
       }
-    }
+      if (index.classReferable != null) {
+        Referable referable = new ClassFieldImplScope(index.classReferable, false).resolveName(name);
+        if (referable instanceof GlobalReferable) {
+          return referable;
+        }
+      }
 
-    for (Group subgroup : myGroup.getSubgroups()) {
-      Object result = resolveSubgroup(subgroup, name, resolveType);
+      result = index.subgroupReferables.get(name);
       if (result != null) {
         return result;
       }
-    }
-    for (Group subgroup : myGroup.getDynamicSubgroups()) {
-      Object result = resolveSubgroup(subgroup, name, resolveType);
-      if (result != null) {
-        return result;
+    } else {
+      Group subgroup = index.subgroups.get(name);
+      if (subgroup != null) {
+        return (resolveType == ResolveType.INTERNAL_SCOPE ? index.openedInternalSubgroups : index.openedSubgroups).computeIfAbsent(subgroup, group -> LexicalScope.opened(group, resolveType == ResolveType.INTERNAL_SCOPE));
       }
     }
 
-    Scope cachingScope = null;
     for (NamespaceCommand cmd : myGroup.getNamespaceCommands()) {
-      if (ignoreOpens() && cmd.getKind() == NamespaceCommand.Kind.OPEN) {
+      Scope scope = getNamespaceCommandScope(index, cmd);
+      if (scope == null) {
         continue;
       }
 
-      Scope scope;
-      if (cmd.getKind() == NamespaceCommand.Kind.IMPORT) {
-        if (myModule != null && cmd.getPath().equals(myModule.toList())) {
-          continue;
-        }
-        scope = getImportedSubscope();
-      } else {
-        if (cachingScope == null) {
-          cachingScope = CachingScope.make(new LexicalScope(myParent, myGroup, null, Kind.OPENED));
-        }
-        scope = cachingScope;
-      }
-
-      scope = NamespaceCommandNamespace.resolveNamespace(scope, cmd);
       Object result = resolveType == ResolveType.REF ? scope.resolveName(name) : scope.resolveNamespace(name, resolveType == ResolveType.INTERNAL_SCOPE);
       if (result != null) {
         return result;
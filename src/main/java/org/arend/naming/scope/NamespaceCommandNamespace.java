@@ -14,6 +14,25 @@ import java.util.*;
 public class NamespaceCommandNamespace implements Scope {
   private final Scope myModuleNamespace;
   private final NamespaceCommand myNamespaceCommand;
+  private volatile Renamings myRenamings;
+
+  private static class Renamings {
+    final Set<String> hidden = new HashSet<>();
+    final Map<String, NameRenaming> opened = new HashMap<>(); // the first renaming for each new name
+    final Set<String> oldNames = new HashSet<>();
+
+    Renamings(NamespaceCommand namespaceCommand) {
+      for (Referable hiddenRef : namespaceCommand.getHiddenReferences()) {
+        hidden.add(hiddenRef.textRepresentation());
+      }
+      for (NameRenaming renaming : namespaceCommand.getOpenedReferences()) {
+        String oldName = renaming.getOldReference().textRepresentation();
+        String newName = renaming.getName();
+        opened.putIfAbsent(newName != null ? newName : oldName, renaming);
+        oldNames.add(oldName);
+      }
+    }
+  }
 
   private NamespaceCommandNamespace(Scope moduleNamespace, NamespaceCommand namespaceCommand) {
     myNamespaceCommand = namespaceCommand;
@@ -36,6 +55,15 @@ public class NamespaceCommandNamespace implements Scope {
     return parentScope == null ? EmptyScope.INSTANCE : new NamespaceCommandNamespace(parentScope, cmd);
   }
 
+  private Renamings getRenamings() {
+    Renamings renamings = myRenamings;
+    if (renamings == null) {
+      renamings = new Renamings(myNamespaceCommand);
+      myRenamings = renamings;
+    }
+    return renamings;
+  }
+
   @Nonnull
   @Override
   public Collection<? extends Referable> getElements() {
@@ -81,63 +109,34 @@ public class NamespaceCommandNamespace implements Scope {
   @Nullable
   @Override
   public Referable resolveName(String name) {
-    for (Referable hiddenRef : myNamespaceCommand.getHiddenReferences()) {
-      if (hiddenRef.textRepresentation().equals(name)) {
-        return null;
-      }
-    }
-
-    Collection<? extends NameRenaming> opened = myNamespaceCommand.getOpenedReferences();
-    for (NameRenaming renaming : opened) {
-      String newName = renaming.getName();
-      Referable oldRef = renaming.getOldReference();
-      if ((newName != null ? newName : oldRef.textRepresentation()).equals(name)) {
-        oldRef = ExpressionResolveNameVisitor.resolve(oldRef, myModuleNamespace);
-        return oldRef == null || oldRef instanceof ErrorReference ? null : newName != null ? new RedirectingReferableImpl(oldRef, renaming.getPrecedence(), newName) : oldRef;
-      }
-    }
-
-    if (!myNamespaceCommand.isUsing()) {
+    Renamings renamings = getRenamings();
+    if (renamings.hidden.contains(name)) {
       return null;
     }
 
-    for (NameRenaming renaming : opened) {
-      if (renaming.getOldReference().textRepresentation().equals(name)) {
-        return null;
-      }
+    NameRenaming renaming = renamings.opened.get(name);
+    if (renaming != null) {
+      String newName = renaming.getName();
+      Referable oldRef = ExpressionResolveNameVisitor.resolve(renaming.getOldReference(), myModuleNamespace);
+      return oldRef == null || oldRef instanceof ErrorReference ? null : newName != null ? new RedirectingReferableImpl(oldRef, renaming.getPrecedence(), newName) : oldRef;
     }
 
-    return myModuleNamespace.resolveName(name);
+    return !myNamespaceCommand.isUsing() || renamings.oldNames.contains(name) ? null : myModuleNamespace.resolveName(name);
   }
 
   @Nullable
   @Override
   public Scope resolveNamespace(String name, boolean onlyInternal) {
-    for (Referable hiddenRef : myNamespaceCommand.getHiddenReferences()) {
-      if (hiddenRef.textRepresentation().equals(name)) {
-        return null;
-      }
-    }
-
-    Collection<? extends NameRenaming> opened = myNamespaceCommand.getOpenedReferences();
-    for (NameRenaming renaming : opened) {
-      String newName = renaming.getName();
-      Referable oldRef = renaming.getOldReference();
-      if ((newName != null ? newName : oldRef.textRepresentation()).equals(name)) {
-        return myModuleNamespace.resolveNamespace(oldRef.textRepresentation(), onlyInternal);
-      }
-    }
-
-    if (!myNamespaceCommand.isUsing()) {
+    Renamings renamings = getRenamings();
+    if (renamings.hidden.contains(name)) {
       return null;
     }
 
-    for (NameRenaming renaming : opened) {
-      if (renaming.getOldReference().textRepresentation().equals(name)) {
-        return null;
-      }
+    NameRenaming renaming = renamings.opened.get(name);
+    if (renaming != null) {
+      return myModuleNamespace.resolveNamespace(renaming.getOldReference().textRepresentation(), onlyInternal);
     }
 
-    return myModuleNamespace.resolveNamespace(name, onlyInternal);
+    return !myNamespaceCommand.isUsing() || renamings.oldNames.contains(name) ? null : myModuleNamespace.resolveNamespace(name, onlyInternal);
   }
 }
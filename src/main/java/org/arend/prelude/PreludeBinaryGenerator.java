@@ -6,7 +6,7 @@ import org.arend.library.SourceLibrary;
 import org.arend.naming.reference.converter.IdReferableConverter;
 import org.arend.source.BinarySource;
 import org.arend.source.Source;
-import org.arend.typechecking.SimpleTypecheckerState;
+import org.arend.typechecking.ConcurrentTypecheckerState;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
 
@@ -14,7 +14,7 @@ import java.nio.file.Paths;
 
 public class PreludeBinaryGenerator {
   public static void main(String[] args) {
-    TypecheckerState typecheckerState = new SimpleTypecheckerState();
+    TypecheckerState typecheckerState = new ConcurrentTypecheckerState();
     PreludeFileLibrary library = new PreludeFileLibrary(Paths.get(args[0]), typecheckerState);
     BinarySource binarySource = library.getBinarySource(Prelude.MODULE_PATH);
     assert binarySource != null;
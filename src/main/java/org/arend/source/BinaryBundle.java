@@ -0,0 +1,321 @@
+package org.arend.source;
+
+import org.arend.error.ErrorReporter;
+import org.arend.library.error.LibraryIOError;
+import org.arend.module.ModulePath;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stores binary modules of a library in a single file.
+ * The file consists of an index, which maps every module to the offset and the length of its data and the time it was persisted,
+ * followed by the data of all modules.
+ * The data of a module may be compressed.
+ * The file is memory-mapped, so only the index is read when the bundle is opened.
+ * Offsets are 64-bit; if the data does not fit into a single mapping, the data of every module is mapped separately.
+ * Persisted modules are kept in memory until {@link #flush} is invoked, which rewrites the whole file.
+ */
+public class BinaryBundle {
+  private static final int MAGIC = 0x41524342; // ARCB
+  private static final int VERSION = 2;
+
+  private final Path myFile;
+  private final boolean myCompressed;
+  private final ErrorReporter myErrorReporter;
+  private Map<ModulePath, Entry> myEntries;
+  private long myDataStart;
+  private MappedByteBuffer myData; // null if the data is mapped per module
+  private final Map<ModulePath, Pending> myPendingModules = new LinkedHashMap<>();
+  private final Set<ModulePath> myDeletedModules = new HashSet<>();
+
+  private static class Entry {
+    final long offset;
+    final int length;
+    final int rawLength; // -1 if the data is not compressed
+    final long timeStamp;
+
+    Entry(long offset, int length, int rawLength, long timeStamp) {
+      this.offset = offset;
+      this.length = length;
+      this.rawLength = rawLength;
+      this.timeStamp = timeStamp;
+    }
+  }
+
+  private static class Pending {
+    final byte[] data;
+    final long timeStamp;
+
+    Pending(byte[] data, long timeStamp) {
+      this.data = data;
+      this.timeStamp = timeStamp;
+    }
+  }
+
+  /**
+   * Creates a new {@code BinaryBundle}.
+   *
+   * @param file        the file of the bundle; it may not exist.
+   * @param compressed  true if modules should be compressed when the bundle is written, false otherwise.
+   */
+  public BinaryBundle(Path file, boolean compressed) {
+    this(file, compressed, null);
+  }
+
+  /**
+   * Creates a new {@code BinaryBundle}.
+   *
+   * @param file          the file of the bundle; it may not exist.
+   * @param compressed    true if modules should be compressed when the bundle is written, false otherwise.
+   * @param errorReporter an error reporter for errors which occur while the index is read by methods that cannot throw them.
+   */
+  public BinaryBundle(Path file, boolean compressed, @Nullable ErrorReporter errorReporter) {
+    myFile = file;
+    myCompressed = compressed;
+    myErrorReporter = errorReporter;
+  }
+
+  public Path getFile() {
+    return myFile;
+  }
+
+  private synchronized Map<ModulePath, Entry> getEntries() throws IOException {
+    if (myEntries != null) {
+      return myEntries;
+    }
+    if (!Files.exists(myFile)) {
+      myEntries = Collections.emptyMap();
+      return myEntries;
+    }
+
+    Map<ModulePath, Entry> entries = new HashMap<>();
+    int indexSize;
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(myFile)))) {
+      if (input.readInt() != MAGIC) {
+        throw new IOException("Not a binary bundle: " + myFile);
+      }
+      if (input.readInt() != VERSION) {
+        // A bundle written by another version is treated as empty, so it is rewritten by the next flush
+        myEntries = Collections.emptyMap();
+        return myEntries;
+      }
+      indexSize = input.readInt();
+
+      int modules = input.readInt();
+      for (int i = 0; i < modules; i++) {
+        int nameSize = input.readInt();
+        List<String> names = new ArrayList<>(nameSize);
+        for (int j = 0; j < nameSize; j++) {
+          names.add(input.readUTF());
+        }
+        entries.put(new ModulePath(names), new Entry(input.readLong(), input.readInt(), input.readInt(), input.readLong()));
+      }
+    }
+
+    myDataStart = 3 * Integer.BYTES + (long) indexSize;
+    try (FileChannel channel = FileChannel.open(myFile, StandardOpenOption.READ)) {
+      long dataSize = channel.size() - myDataStart;
+      myData = dataSize <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, myDataStart, dataSize) : null;
+    }
+    myEntries = entries;
+    return entries;
+  }
+
+  /**
+   * Reads the index for methods which cannot throw {@link IOException}.
+   * An error is reported once and the bundle is treated as empty until it is flushed.
+   */
+  private Map<ModulePath, Entry> getEntriesOrReport() {
+    try {
+      return getEntries();
+    } catch (IOException e) {
+      if (myErrorReporter != null) {
+        myErrorReporter.report(new LibraryIOError(myFile.toString(), "Failed to read binary bundle", e.getLocalizedMessage()));
+      }
+      myEntries = Collections.emptyMap();
+      myData = null;
+      return myEntries;
+    }
+  }
+
+  public synchronized boolean contains(ModulePath modulePath) {
+    if (myPendingModules.containsKey(modulePath)) {
+      return true;
+    }
+    if (myDeletedModules.contains(modulePath)) {
+      return false;
+    }
+    return getEntriesOrReport().containsKey(modulePath);
+  }
+
+  public synchronized long getTimeStamp(ModulePath modulePath) {
+    Pending pending = myPendingModules.get(modulePath);
+    if (pending != null) {
+      return pending.timeStamp;
+    }
+    if (myDeletedModules.contains(modulePath)) {
+      return 0;
+    }
+    Entry entry = getEntriesOrReport().get(modulePath);
+    return entry == null ? 0 : entry.timeStamp;
+  }
+
+  /**
+   * Gets the data of a module.
+   *
+   * @return an input stream with the data of the module or null if the bundle does not contain it.
+   */
+  public synchronized InputStream read(ModulePath modulePath) throws IOException {
+    Pending pending = myPendingModules.get(modulePath);
+    if (pending != null) {
+      return new ByteArrayInputStream(pending.data);
+    }
+    if (myDeletedModules.contains(modulePath)) {
+      return null;
+    }
+
+    Entry entry = getEntries().get(modulePath);
+    if (entry == null) {
+      return null;
+    }
+    InputStream stream = new ByteArrayInputStream(readBytes(entry));
+    return entry.rawLength == -1 ? stream : new InflaterInputStream(stream);
+  }
+
+  private byte[] readBytes(Entry entry) throws IOException {
+    ByteBuffer buffer;
+    if (myData != null) {
+      buffer = myData.duplicate();
+      buffer.position((int) entry.offset);
+    } else {
+      try (FileChannel channel = FileChannel.open(myFile, StandardOpenOption.READ)) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, myDataStart + entry.offset, entry.length);
+      }
+    }
+    byte[] bytes = new byte[entry.length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Gets an output stream to which the data of a module can be written.
+   * The data will be stored in the bundle when the stream is closed.
+   */
+  public OutputStream write(ModulePath modulePath) {
+    return new ByteArrayOutputStream() {
+      @Override
+      public void close() {
+        synchronized (BinaryBundle.this) {
+          myPendingModules.put(modulePath, new Pending(toByteArray(), System.currentTimeMillis()));
+          myDeletedModules.remove(modulePath);
+        }
+      }
+    };
+  }
+
+  public synchronized void delete(ModulePath modulePath) {
+    myPendingModules.remove(modulePath);
+    myDeletedModules.add(modulePath);
+  }
+
+  public synchronized boolean hasChanges() {
+    return !myPendingModules.isEmpty() || !myDeletedModules.isEmpty();
+  }
+
+  /**
+   * Writes the bundle to the file if some modules were persisted or deleted.
+   * The file is replaced atomically since the previous version might still be mapped.
+   */
+  public synchronized void flush() throws IOException {
+    if (!hasChanges()) {
+      return;
+    }
+
+    Map<ModulePath, byte[]> modules = new LinkedHashMap<>();
+    Map<ModulePath, Entry> entries = getEntries();
+    for (Map.Entry<ModulePath, Entry> entry : entries.entrySet()) {
+      if (!myDeletedModules.contains(entry.getKey()) && !myPendingModules.containsKey(entry.getKey())) {
+        modules.put(entry.getKey(), readBytes(entry.getValue()));
+      }
+    }
+
+    Map<ModulePath, Entry> newEntries = new LinkedHashMap<>();
+    List<byte[]> data = new ArrayList<>(modules.size() + myPendingModules.size());
+    long offset = 0;
+    for (Map.Entry<ModulePath, byte[]> entry : modules.entrySet()) {
+      Entry oldEntry = entries.get(entry.getKey());
+      newEntries.put(entry.getKey(), new Entry(offset, entry.getValue().length, oldEntry.rawLength, oldEntry.timeStamp));
+      data.add(entry.getValue());
+      offset += entry.getValue().length;
+    }
+    for (Map.Entry<ModulePath, Pending> entry : myPendingModules.entrySet()) {
+      byte[] rawBytes = entry.getValue().data;
+      byte[] bytes = myCompressed ? compress(rawBytes) : rawBytes;
+      newEntries.put(entry.getKey(), new Entry(offset, bytes.length, myCompressed ? rawBytes.length : -1, entry.getValue().timeStamp));
+      data.add(bytes);
+      offset += bytes.length;
+    }
+
+    ByteArrayOutputStream index = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(index)) {
+      output.writeInt(newEntries.size());
+      for (Map.Entry<ModulePath, Entry> entry : newEntries.entrySet()) {
+        List<String> names = entry.getKey().toList();
+        output.writeInt(names.size());
+        for (String name : names) {
+          output.writeUTF(name);
+        }
+        output.writeLong(entry.getValue().offset);
+        output.writeInt(entry.getValue().length);
+        output.writeInt(entry.getValue().rawLength);
+        output.writeLong(entry.getValue().timeStamp);
+      }
+    }
+
+    Files.createDirectories(myFile.getParent());
+    Path tempFile = Files.createTempFile(myFile.getParent(), myFile.getFileName().toString(), ".tmp");
+    try {
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(index.size());
+        index.writeTo(output);
+        for (byte[] bytes : data) {
+          output.write(bytes);
+        }
+      }
+      try {
+        Files.move(tempFile, myFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile, myFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tempFile);
+    }
+
+    myPendingModules.clear();
+    myDeletedModules.clear();
+    myEntries = null;
+    myData = null;
+  }
+
+  private static byte[] compress(byte[] bytes) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length / 2);
+    try (DeflaterOutputStream output = new DeflaterOutputStream(result)) {
+      output.write(bytes);
+    }
+    return result.toByteArray();
+  }
+}
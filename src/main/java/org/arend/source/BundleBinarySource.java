@@ -0,0 +1,64 @@
+package org.arend.source;
+
+import org.arend.library.SourceLibrary;
+import org.arend.module.ModulePath;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Represents a binary module stored in a {@link BinaryBundle}.
+ * Persisted modules are written to the file of the bundle only when the bundle is flushed.
+ */
+public class BundleBinarySource extends StreamBinarySource {
+  private final BinaryBundle myBundle;
+  private final ModulePath myModulePath;
+
+  /**
+   * Creates a new {@code BundleBinarySource} from a bundle and a path to the source.
+   *
+   * @param bundle      the bundle which contains the module.
+   * @param modulePath  a path to the source.
+   */
+  public BundleBinarySource(BinaryBundle bundle, ModulePath modulePath) {
+    myBundle = bundle;
+    myModulePath = modulePath;
+  }
+
+  @Nonnull
+  @Override
+  public ModulePath getModulePath() {
+    return myModulePath;
+  }
+
+  @Nullable
+  @Override
+  protected InputStream getInputStream() throws IOException {
+    return myBundle.read(myModulePath);
+  }
+
+  @Nullable
+  @Override
+  protected OutputStream getOutputStream() {
+    return myBundle.write(myModulePath);
+  }
+
+  @Override
+  public long getTimeStamp() {
+    return myBundle.getTimeStamp(myModulePath);
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return myBundle.contains(myModulePath);
+  }
+
+  @Override
+  public boolean delete(SourceLibrary library) {
+    myBundle.delete(myModulePath);
+    return true;
+  }
+}
@@ -28,6 +28,10 @@ public class FileBinarySource extends StreamBinarySource {
     myModulePath = modulePath;
   }
 
+  protected Path getFile() {
+    return myFile;
+  }
+
   @Nonnull
   @Override
   public ModulePath getModulePath() {
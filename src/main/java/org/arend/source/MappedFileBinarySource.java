@@ -0,0 +1,101 @@
+package org.arend.source;
+
+import com.google.protobuf.CodedInputStream;
+import org.arend.module.ModulePath;
+import org.arend.module.serialization.ModuleProtos;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Represents a binary module stored uncompressed in a file.
+ * The file is memory-mapped and read without decompression.
+ * Bodies of functions are stored as separate byte strings which share the mapping and are parsed on first access.
+ * Files compressed with GZIP, which were written by {@link GZIPStreamBinarySource}, can also be read.
+ */
+public class MappedFileBinarySource extends FileBinarySource {
+  private static final int GZIP_MAGIC_1 = 0x1f;
+  private static final int GZIP_MAGIC_2 = 0x8b;
+
+  /**
+   * Creates a new {@code MappedFileBinarySource} from a path to the base directory and a path to the source.
+   *
+   * @param basePath    a path to the base directory.
+   * @param modulePath  a path to the source.
+   */
+  public MappedFileBinarySource(Path basePath, ModulePath modulePath) {
+    super(basePath, modulePath);
+  }
+
+  @Nullable
+  @Override
+  protected ModuleProtos.Module readModuleProto() throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(getFile(), StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (buffer.remaining() >= 2 && (buffer.get(0) & 0xff) == GZIP_MAGIC_1 && (buffer.get(1) & 0xff) == GZIP_MAGIC_2) {
+      return super.readModuleProto();
+    }
+
+    CodedInputStream codedInputStream = CodedInputStream.newInstance(buffer);
+    codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
+    codedInputStream.enableAliasing(true);
+    return ModuleProtos.Module.parseFrom(codedInputStream);
+  }
+
+  @Nullable
+  @Override
+  protected InputStream getInputStream() throws IOException {
+    InputStream stream = new BufferedInputStream(Files.newInputStream(getFile()));
+    stream.mark(2);
+    boolean isCompressed = stream.read() == GZIP_MAGIC_1 && stream.read() == GZIP_MAGIC_2;
+    stream.reset();
+    return isCompressed ? new GZIPInputStream(stream) : stream;
+  }
+
+  /**
+   * Gets an output stream to a temporary file which replaces the source file when the stream is closed.
+   * The source file is never modified in place since it might be mapped by previously loaded modules.
+   */
+  @Nullable
+  @Override
+  protected OutputStream getOutputStream() throws IOException {
+    Path file = getFile();
+    Files.createDirectories(file.getParent());
+    Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    return new FilterOutputStream(Files.newOutputStream(tempFile)) {
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+      }
+
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+          try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+          } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+          }
+        } finally {
+          Files.deleteIfExists(tempFile);
+        }
+      }
+    };
+  }
+}
@@ -28,6 +28,12 @@ public interface Source {
    */
   boolean preload(SourceLoader sourceLoader);
 
+  /**
+   * Reads the data of the source in advance, so that {@link #preload} does not have to.
+   * This method may be invoked concurrently for different sources.
+   */
+  default void prefetch() {}
+
   /**
    * This method is called after all dependencies of the source were preloaded.
    *
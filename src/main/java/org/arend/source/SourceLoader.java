@@ -9,12 +9,14 @@ import org.arend.module.scopeprovider.ModuleScopeProvider;
 import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Contains all necessary information for source loading.
+ * Binary sources of independent modules may be loaded concurrently (see {@link #loadBinaries});
+ * in this case, sources synchronize on the loader when they modify the library.
  */
 public final class SourceLoader {
   private final SourceLibrary myLibrary;
@@ -23,7 +25,15 @@ public final class SourceLoader {
   private final Map<ModulePath, SourceType> myLoadedModules = new HashMap<>();
   private final Map<ModulePath, BinarySource> myLoadingBinaryModules = new HashMap<>();
   private final Map<ModulePath, Source> myLoadingRawModules = new HashMap<>();
+  private final Map<ModulePath, Source> myPrefetchedRawModules = new HashMap<>();
+  private final Map<ModulePath, BinarySource> myPrefetchedBinaryModules = new HashMap<>();
+  private final Map<ModulePath, Set<ModulePath>> myBinaryDependencies = new HashMap<>();
+  private final List<ModulePath> myPreloadedBinaryModules = new ArrayList<>();
+  private final Deque<ModulePath> myPreloadingBinaryModules = new ArrayDeque<>();
+  private boolean myCollectBinaryDependencies;
   private ModuleScopeProvider myModuleScopeProvider;
+  private final ErrorReporter myTypecheckingErrorReporter;
+  private final ErrorReporter myLibraryErrorReporter;
 
   private enum SourceType { RAW, BINARY, BINARY_FAIL }
 
@@ -31,6 +41,16 @@ public final class SourceLoader {
     myLibrary = library;
     myLibraryManager = libraryManager;
     myReferableConverter = myLibrary.getReferableConverter();
+    myTypecheckingErrorReporter = synchronizedErrorReporter(libraryManager.getTypecheckingErrorReporter());
+    myLibraryErrorReporter = synchronizedErrorReporter(libraryManager.getLibraryErrorReporter());
+  }
+
+  private static ErrorReporter synchronizedErrorReporter(ErrorReporter errorReporter) {
+    return error -> {
+      synchronized (errorReporter) {
+        errorReporter.report(error);
+      }
+    };
   }
 
   public SourceLibrary getLibrary() {
@@ -41,7 +61,7 @@ public final class SourceLoader {
     return myReferableConverter;
   }
 
-  public ModuleScopeProvider getModuleScopeProvider() {
+  public synchronized ModuleScopeProvider getModuleScopeProvider() {
     if (myModuleScopeProvider == null) {
       myModuleScopeProvider = myLibraryManager.getAvailableModuleScopeProvider(myLibrary);
     }
@@ -53,11 +73,78 @@ public final class SourceLoader {
   }
 
   public ErrorReporter getTypecheckingErrorReporter() {
-    return myLibraryManager.getTypecheckingErrorReporter();
+    return myTypecheckingErrorReporter;
   }
 
   public ErrorReporter getLibraryErrorReporter() {
-    return myLibraryManager.getLibraryErrorReporter();
+    return myLibraryErrorReporter;
+  }
+
+  private int getThreads(int tasks) {
+    return Math.min(myLibraryManager.getLoadingThreads(), tasks);
+  }
+
+  /**
+   * Runs tasks using an executor and waits until all of them are finished.
+   *
+   * @return true if all of the tasks were finished, false if the computation was interrupted.
+   */
+  private static boolean runTasks(ExecutorService executor, Collection<? extends Runnable> tasks) {
+    List<Future<?>> futures = new ArrayList<>(tasks.size());
+    for (Runnable task : tasks) {
+      futures.add(executor.submit(task));
+    }
+
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      return true;
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    }
+  }
+
+  /**
+   * Loads the structure of sources and their dependencies.
+   * Sources are parsed concurrently.
+   *
+   * @param modulePaths  modules to load.
+   */
+  public void preloadRawSources(Collection<? extends ModulePath> modulePaths) {
+    int threads = getThreads(modulePaths.size());
+    if (threads > 1) {
+      List<Runnable> tasks = new ArrayList<>(modulePaths.size());
+      for (ModulePath modulePath : modulePaths) {
+        if (myLoadedModules.containsKey(modulePath) || myLoadingRawModules.containsKey(modulePath)) {
+          continue;
+        }
+        Source rawSource = myLibrary.getRawSource(modulePath);
+        if (rawSource != null && rawSource.isAvailable()) {
+          myPrefetchedRawModules.put(modulePath, rawSource);
+          tasks.add(rawSource::prefetch);
+        }
+      }
+
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        if (!runTasks(executor, tasks)) {
+          myPrefetchedRawModules.clear();
+          return;
+        }
+      } finally {
+        executor.shutdown();
+      }
+    }
+
+    for (ModulePath modulePath : modulePaths) {
+      preloadRaw(modulePath);
+    }
+    myPrefetchedRawModules.clear();
   }
 
   /**
@@ -74,12 +161,15 @@ public final class SourceLoader {
       return true;
     }
 
-    Source rawSource = myLibrary.getRawSource(modulePath);
-    boolean rawSourceIsAvailable = rawSource != null && rawSource.isAvailable();
+    Source rawSource = myPrefetchedRawModules.remove(modulePath);
+    if (rawSource == null) {
+      rawSource = myLibrary.getRawSource(modulePath);
+      boolean rawSourceIsAvailable = rawSource != null && rawSource.isAvailable();
 
-    if (!rawSourceIsAvailable) {
-      getLibraryErrorReporter().report(new ModuleNotFoundError(modulePath));
-      return false;
+      if (!rawSourceIsAvailable) {
+        getLibraryErrorReporter().report(new ModuleNotFoundError(modulePath));
+        return false;
+      }
     }
 
     myLoadedModules.put(modulePath, SourceType.RAW);
@@ -94,8 +184,34 @@ public final class SourceLoader {
 
   /**
    * Loads raw sources that were preloaded.
+   * Every pass of loading is performed concurrently for all sources.
    */
   public void loadRawSources() {
+    int threads = getThreads(myLoadingRawModules.size());
+    if (threads > 1) {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        while (!myLoadingRawModules.isEmpty()) {
+          Set<ModulePath> loaded = ConcurrentHashMap.newKeySet();
+          List<Runnable> tasks = new ArrayList<>(myLoadingRawModules.size());
+          for (Map.Entry<ModulePath, Source> entry : myLoadingRawModules.entrySet()) {
+            tasks.add(() -> {
+              if (entry.getValue().load(this) != Source.LoadResult.CONTINUE) {
+                loaded.add(entry.getKey());
+              }
+            });
+          }
+          if (!runTasks(executor, tasks)) {
+            return;
+          }
+          myLoadingRawModules.keySet().removeAll(loaded);
+        }
+      } finally {
+        executor.shutdown();
+      }
+      return;
+    }
+
     while (!myLoadingRawModules.isEmpty()) {
       for (Iterator<Source> it = myLoadingRawModules.values().iterator(); it.hasNext(); ) {
         Source source = it.next();
@@ -107,6 +223,23 @@ public final class SourceLoader {
     }
   }
 
+  /**
+   * Loads raw sources of modules again.
+   * Other loaded modules of the library are not reloaded even if the given modules import them.
+   *
+   * @param modulePaths  modules to reload; their groups should be unloaded beforehand.
+   */
+  public void reloadRawSources(Collection<? extends ModulePath> modulePaths) {
+    for (ModulePath modulePath : myLibrary.getLoadedModules()) {
+      if (!modulePaths.contains(modulePath)) {
+        myLoadedModules.putIfAbsent(modulePath, SourceType.RAW);
+      }
+    }
+
+    preloadRawSources(modulePaths);
+    loadRawSources();
+  }
+
   /**
    * Loads a binary source.
    *
@@ -117,18 +250,182 @@ public final class SourceLoader {
     return preloadBinary(modulePath) && fillInBinary(modulePath);
   }
 
+  /**
+   * Loads binary sources using several threads.
+   * Binary files are read concurrently, then the structure of modules is loaded sequentially,
+   * and, finally, definitions are filled in concurrently in the dependency order.
+   *
+   * @param modulePaths  modules to load.
+   */
+  public void loadBinaries(Collection<? extends ModulePath> modulePaths) {
+    int threads = getThreads(modulePaths.size());
+    if (threads <= 1) {
+      for (ModulePath modulePath : modulePaths) {
+        loadBinary(modulePath);
+      }
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      if (!prefetchBinaries(modulePaths, executor)) {
+        return;
+      }
+      myCollectBinaryDependencies = true;
+      for (ModulePath modulePath : modulePaths) {
+        preloadBinary(modulePath);
+      }
+      myCollectBinaryDependencies = false;
+      fillInBinaries(executor);
+    } finally {
+      myCollectBinaryDependencies = false;
+      myPreloadedBinaryModules.clear();
+      myBinaryDependencies.clear();
+      executor.shutdown();
+    }
+  }
+
+  private boolean prefetchBinaries(Collection<? extends ModulePath> modulePaths, ExecutorService executor) {
+    List<Runnable> tasks = new ArrayList<>();
+    for (ModulePath modulePath : modulePaths) {
+      SourceType sourceType = myLoadedModules.get(modulePath);
+      if (myLoadingBinaryModules.containsKey(modulePath) || (myLibrary.hasRawSources() ? sourceType != SourceType.RAW : sourceType != null)) {
+        continue;
+      }
+
+      BinarySource binarySource = getAvailableBinarySource(modulePath);
+      if (binarySource != null) {
+        myPrefetchedBinaryModules.put(modulePath, binarySource);
+        tasks.add(binarySource::prefetch);
+      }
+    }
+
+    return runTasks(executor, tasks);
+  }
+
+  private static class FillInTask {
+    final ModulePath modulePath;
+    final List<FillInTask> dependents = new ArrayList<>();
+    final AtomicInteger pending = new AtomicInteger();
+
+    FillInTask(ModulePath modulePath) {
+      this.modulePath = modulePath;
+    }
+  }
+
+  /**
+   * Fills in preloaded modules.
+   * A module is filled in after the modules it depends on.
+   * Modules that depend on each other are filled in the order in which they were preloaded.
+   */
+  private void fillInBinaries(ExecutorService executor) {
+    Map<ModulePath, Integer> order = new HashMap<>();
+    Map<ModulePath, FillInTask> tasks = new LinkedHashMap<>();
+    for (ModulePath modulePath : myPreloadedBinaryModules) {
+      if (myLoadingBinaryModules.containsKey(modulePath)) {
+        order.put(modulePath, order.size());
+        tasks.put(modulePath, new FillInTask(modulePath));
+      }
+    }
+    if (tasks.isEmpty()) {
+      return;
+    }
+
+    for (Map.Entry<ModulePath, Set<ModulePath>> entry : myBinaryDependencies.entrySet()) {
+      Integer index1 = order.get(entry.getKey());
+      if (index1 == null) {
+        continue;
+      }
+      for (ModulePath dependency : entry.getValue()) {
+        Integer index2 = order.get(dependency);
+        if (index2 == null || index2.equals(index1)) {
+          continue;
+        }
+        FillInTask first = tasks.get(index2 < index1 ? dependency : entry.getKey());
+        FillInTask second = tasks.get(index2 < index1 ? entry.getKey() : dependency);
+        if (!first.dependents.contains(second)) {
+          first.dependents.add(second);
+          second.pending.incrementAndGet();
+        }
+      }
+    }
+
+    CountDownLatch latch = new CountDownLatch(tasks.size());
+    List<Throwable> exceptions = Collections.synchronizedList(new ArrayList<>());
+
+    class Runner implements Runnable {
+      private final FillInTask myTask;
+
+      Runner(FillInTask task) {
+        myTask = task;
+      }
+
+      @Override
+      public void run() {
+        try {
+          if (exceptions.isEmpty()) {
+            fillInBinary(myTask.modulePath);
+          }
+        } catch (Throwable e) {
+          exceptions.add(e);
+        } finally {
+          for (FillInTask dependent : myTask.dependents) {
+            if (dependent.pending.decrementAndGet() == 0) {
+              executor.execute(new Runner(dependent));
+            }
+          }
+          latch.countDown();
+        }
+      }
+    }
+
+    try {
+      for (FillInTask task : tasks.values()) {
+        if (task.pending.get() == 0) {
+          executor.execute(new Runner(task));
+        }
+      }
+      latch.await();
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      return;
+    }
+
+    if (!exceptions.isEmpty()) {
+      throw rethrow(exceptions.get(0));
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable exception) {
+    if (exception instanceof RuntimeException) {
+      return (RuntimeException) exception;
+    }
+    if (exception instanceof Error) {
+      throw (Error) exception;
+    }
+    return new IllegalStateException(exception);
+  }
+
   boolean fillInBinary(ModulePath modulePath) {
-    BinarySource binarySource = myLoadingBinaryModules.remove(modulePath);
-    if (binarySource != null) {
-      Source.LoadResult result;
-      do {
-        result = binarySource.load(this);
-      } while (result == Source.LoadResult.CONTINUE);
-
-      if (result != Source.LoadResult.SUCCESS) {
+    BinarySource binarySource;
+    synchronized (this) {
+      binarySource = myLoadingBinaryModules.remove(modulePath);
+      if (binarySource == null) {
+        return myLoadedModules.get(modulePath) != SourceType.BINARY_FAIL;
+      }
+    }
+
+    Source.LoadResult result;
+    do {
+      result = binarySource.load(this);
+    } while (result == Source.LoadResult.CONTINUE);
+
+    if (result != Source.LoadResult.SUCCESS) {
+      synchronized (this) {
         myLoadedModules.put(modulePath, SourceType.BINARY_FAIL);
-        return false;
       }
+      return false;
     }
 
     return true;
@@ -141,6 +438,13 @@ public final class SourceLoader {
    * @return true if the source was successfully loaded, false otherwise.
    */
   boolean preloadBinary(ModulePath modulePath) {
+    if (myCollectBinaryDependencies) {
+      ModulePath dependent = myPreloadingBinaryModules.peek();
+      if (dependent != null) {
+        myBinaryDependencies.computeIfAbsent(dependent, k -> new LinkedHashSet<>()).add(modulePath);
+      }
+    }
+
     SourceType sourceType = myLoadedModules.get(modulePath);
     if (sourceType == SourceType.BINARY || sourceType == SourceType.BINARY_FAIL) {
       return sourceType == SourceType.BINARY;
@@ -152,26 +456,51 @@ public final class SourceLoader {
       return true;
     }
 
-    BinarySource binarySource = myLibrary.getBinarySource(modulePath);
-    if (binarySource == null || !binarySource.isAvailable()) {
-      return false;
-    }
-
-    if (myLibrary.hasRawSources()) {
-      Source rawSource = myLibrary.getRawSource(modulePath);
-      if (rawSource != null && rawSource.isAvailable() && binarySource.getTimeStamp() < rawSource.getTimeStamp()) {
+    BinarySource binarySource = myPrefetchedBinaryModules.remove(modulePath);
+    if (binarySource == null) {
+      binarySource = getAvailableBinarySource(modulePath);
+      if (binarySource == null) {
         return false;
       }
     }
 
     myLoadedModules.put(modulePath, SourceType.BINARY);
     myLoadingBinaryModules.put(modulePath, binarySource);
-    if (!binarySource.preload(this)) {
+    if (myCollectBinaryDependencies) {
+      myPreloadingBinaryModules.push(modulePath);
+    }
+    boolean ok = binarySource.preload(this);
+    if (myCollectBinaryDependencies) {
+      myPreloadingBinaryModules.pop();
+    }
+    if (!ok) {
       myLoadedModules.put(modulePath, SourceType.BINARY_FAIL);
       myLoadingBinaryModules.remove(modulePath);
       return false;
     }
 
+    if (myCollectBinaryDependencies) {
+      myPreloadedBinaryModules.add(modulePath);
+    }
     return true;
   }
+
+  /**
+   * Gets a binary source if it is available and not older than the corresponding raw source.
+   */
+  private BinarySource getAvailableBinarySource(ModulePath modulePath) {
+    BinarySource binarySource = myLibrary.getBinarySource(modulePath);
+    if (binarySource == null || !binarySource.isAvailable()) {
+      return null;
+    }
+
+    if (myLibrary.hasRawSources()) {
+      Source rawSource = myLibrary.getRawSource(modulePath);
+      if (rawSource != null && rawSource.isAvailable() && binarySource.getTimeStamp() < rawSource.getTimeStamp()) {
+        return null;
+      }
+    }
+
+    return binarySource;
+  }
 }
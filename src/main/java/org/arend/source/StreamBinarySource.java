@@ -29,6 +29,7 @@ import java.io.OutputStream;
  */
 public abstract class StreamBinarySource implements BinarySource {
   private ModuleDeserialization myModuleDeserialization;
+  private volatile ModuleProtos.Module myPrefetchedModule;
 
   @Nonnull
   @Override
@@ -50,19 +51,52 @@ public abstract class StreamBinarySource implements BinarySource {
   @Nullable
   protected abstract OutputStream getOutputStream() throws IOException;
 
+  /**
+   * Reads the module from the input stream.
+   *
+   * @return the module or null if some error occurred.
+   */
+  @Nullable
+  protected ModuleProtos.Module readModuleProto() throws IOException {
+    try (InputStream inputStream = getInputStream()) {
+      if (inputStream == null) {
+        return null;
+      }
+
+      CodedInputStream codedInputStream = CodedInputStream.newInstance(inputStream);
+      codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
+      return ModuleProtos.Module.parseFrom(codedInputStream);
+    }
+  }
+
+  /**
+   * Reads the module from the input stream.
+   * If some error occurs, it will be reported when the module is preloaded.
+   */
+  @Override
+  public void prefetch() {
+    try {
+      myPrefetchedModule = readModuleProto();
+    } catch (IOException e) {
+      myPrefetchedModule = null;
+    }
+  }
+
   @Override
   public boolean preload(SourceLoader sourceLoader) {
     SourceLibrary library = sourceLoader.getLibrary();
     ModulePath modulePath = getModulePath();
     ChildGroup group = null;
-    try (InputStream inputStream = getInputStream()) {
-      if (inputStream == null) {
+    try {
+      ModuleProtos.Module moduleProto = myPrefetchedModule;
+      myPrefetchedModule = null;
+      if (moduleProto == null) {
+        moduleProto = readModuleProto();
+      }
+      if (moduleProto == null) {
         return false;
       }
 
-      CodedInputStream codedInputStream = CodedInputStream.newInstance(inputStream);
-      codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
-      ModuleProtos.Module moduleProto = ModuleProtos.Module.parseFrom(codedInputStream);
       boolean isComplete = moduleProto.getComplete();
       if (!isComplete && !library.hasRawSources()) {
         sourceLoader.getLibraryErrorReporter().report(new PartialModuleError(modulePath));
@@ -107,20 +141,29 @@ public abstract class StreamBinarySource implements BinarySource {
       for (ModuleProtos.ModuleCallTargets moduleCallTargets : myModuleDeserialization.getModuleProto().getModuleCallTargetsList()) {
         ModulePath module = new ModulePath(moduleCallTargets.getNameList());
         if (library.containsModule(module) && !sourceLoader.fillInBinary(module)) {
-          ChildGroup group = library.getModuleGroup(modulePath);
-          if (group != null) {
-            library.unloadGroup(group);
+          synchronized (sourceLoader) {
+            ChildGroup group = library.getModuleGroup(modulePath);
+            if (group != null) {
+              library.unloadGroup(group);
+            }
           }
           return LoadResult.FAIL;
         }
       }
 
-      myModuleDeserialization.readModule(sourceLoader.getModuleScopeProvider(), library.getDependencyListener(), library.supportsTypechecking());
-      library.onBinaryLoaded(modulePath, myModuleDeserialization.getModuleProto().getComplete());
+      synchronized (sourceLoader) {
+        myModuleDeserialization.readCallTargets(sourceLoader.getModuleScopeProvider());
+      }
+      myModuleDeserialization.fillInDefinitions(library.getDependencyListener(), library.supportsTypechecking(), modulePath, sourceLoader.getLibraryErrorReporter());
+      synchronized (sourceLoader) {
+        library.onBinaryLoaded(modulePath, myModuleDeserialization.getModuleProto().getComplete());
+      }
       myModuleDeserialization = null;
       return LoadResult.SUCCESS;
     } catch (DeserializationException e) {
-      loadingFailed(sourceLoader, modulePath, library.getModuleGroup(modulePath), e);
+      synchronized (sourceLoader) {
+        loadingFailed(sourceLoader, modulePath, library.getModuleGroup(modulePath), e);
+      }
       return LoadResult.FAIL;
     }
   }
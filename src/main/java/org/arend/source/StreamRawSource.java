@@ -4,6 +4,7 @@ import org.antlr.v4.runtime.*;
 import org.arend.error.CompositeErrorReporter;
 import org.arend.error.CountingErrorReporter;
 import org.arend.error.ErrorReporter;
+import org.arend.error.ListErrorReporter;
 import org.arend.frontend.ConcreteReferableProvider;
 import org.arend.frontend.parser.*;
 import org.arend.library.SourceLibrary;
@@ -25,6 +26,9 @@ import java.io.InputStream;
 public abstract class StreamRawSource implements Source {
   private final ModulePath myModulePath;
   private FileGroup myGroup;
+  private FileGroup myPrefetchedGroup;
+  private IOException myPrefetchException;
+  private volatile ListErrorReporter myPrefetchedErrors;
   private byte myPass = 0;
 
   protected StreamRawSource(ModulePath modulePath) {
@@ -45,36 +49,75 @@ public abstract class StreamRawSource implements Source {
   @Nonnull
   protected abstract InputStream getInputStream() throws IOException;
 
+  /**
+   * Parses the source and builds its group.
+   * Errors are reported when the source is preloaded.
+   */
   @Override
-  public boolean preload(SourceLoader sourceLoader) {
-    SourceLibrary library = sourceLoader.getLibrary();
+  public void prefetch() {
+    ListErrorReporter errorReporter = new ListErrorReporter();
+    try {
+      myPrefetchedGroup = parse(errorReporter);
+    } catch (IOException e) {
+      myPrefetchException = e;
+    }
+    myPrefetchedErrors = errorReporter;
+  }
+
+  private FileGroup parse(ErrorReporter errorReporter) throws IOException {
     ModulePath modulePath = getModulePath();
-    ErrorReporter errorReporter = sourceLoader.getTypecheckingErrorReporter();
     CountingErrorReporter countingErrorReporter = new CountingErrorReporter();
     final CompositeErrorReporter compositeErrorReporter = new CompositeErrorReporter(errorReporter, countingErrorReporter);
 
-    try {
-      BaseErrorListener errorListener = new BaseErrorListener() {
-        @Override
-        public void syntaxError(Recognizer<?, ?> recognizer, Object o, int line, int pos, String msg, RecognitionException e) {
-          compositeErrorReporter.report(new ParserError(new Position(modulePath, line, pos), msg));
-        }
-      };
+    BaseErrorListener errorListener = new BaseErrorListener() {
+      @Override
+      public void syntaxError(Recognizer<?, ?> recognizer, Object o, int line, int pos, String msg, RecognitionException e) {
+        compositeErrorReporter.report(new ParserError(new Position(modulePath, line, pos), msg));
+      }
+    };
 
-      ArendLexer lexer = new ArendLexer(new ANTLRInputStream(getInputStream()));
-      lexer.removeErrorListeners();
-      lexer.addErrorListener(errorListener);
+    ArendLexer lexer = new ArendLexer(new ANTLRInputStream(getInputStream()));
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(errorListener);
 
-      ArendParser parser = new ArendParser(new CommonTokenStream(lexer));
-      parser.removeErrorListeners();
-      parser.addErrorListener(errorListener);
+    ArendParser parser = new ArendParser(new CommonTokenStream(lexer));
+    parser.removeErrorListeners();
+    parser.addErrorListener(errorListener);
 
-      ArendParser.StatementsContext tree = parser.statements();
-      if (tree == null || countingErrorReporter.getErrorsNumber() > 0) {
+    ArendParser.StatementsContext tree = parser.statements();
+    if (tree == null || countingErrorReporter.getErrorsNumber() > 0) {
+      return null;
+    }
+
+    return new BuildVisitor(modulePath, errorReporter).visitStatements(tree);
+  }
+
+  @Override
+  public boolean preload(SourceLoader sourceLoader) {
+    SourceLibrary library = sourceLoader.getLibrary();
+    ModulePath modulePath = getModulePath();
+    ErrorReporter errorReporter = sourceLoader.getTypecheckingErrorReporter();
+
+    try {
+      ListErrorReporter prefetchedErrors = myPrefetchedErrors;
+      if (prefetchedErrors != null) {
+        myPrefetchedErrors = null;
+        prefetchedErrors.reportTo(errorReporter);
+        if (myPrefetchException != null) {
+          IOException exception = myPrefetchException;
+          myPrefetchException = null;
+          throw exception;
+        }
+        myGroup = myPrefetchedGroup;
+        myPrefetchedGroup = null;
+      } else {
+        myGroup = parse(errorReporter);
+      }
+      if (myGroup == null) {
         return false;
       }
+      myPass = 0;
 
-      myGroup = new BuildVisitor(modulePath, errorReporter).visitStatements(tree);
       library.onGroupLoaded(modulePath, myGroup, true);
 
       for (NamespaceCommand command : myGroup.getNamespaceCommands()) {
@@ -113,7 +156,9 @@ public abstract class StreamRawSource implements Source {
       myPass = 2;
       return LoadResult.CONTINUE;
     }
-    sourceLoader.getInstanceProviderSet().collectInstances(myGroup, CachingScope.make(ScopeFactory.parentScopeForGroup(myGroup, sourceLoader.getModuleScopeProvider(), true)), ConcreteReferableProvider.INSTANCE, null);
+    synchronized (sourceLoader) {
+      sourceLoader.getInstanceProviderSet().collectInstances(myGroup, CachingScope.make(ScopeFactory.parentScopeForGroup(myGroup, sourceLoader.getModuleScopeProvider(), true)), ConcreteReferableProvider.INSTANCE, null);
+    }
     return LoadResult.SUCCESS;
   }
 }
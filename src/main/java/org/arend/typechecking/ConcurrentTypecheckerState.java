@@ -0,0 +1,59 @@
+package org.arend.typechecking;
+
+import org.arend.core.definition.Definition;
+import org.arend.core.expr.visitor.NormalizationCache;
+import org.arend.naming.reference.GlobalReferable;
+import org.arend.naming.reference.TCReferable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe implementation of {@link TypecheckerState}.
+ * Reads do not take locks, and updates lock only the bin of the updated definition,
+ * so the state can be shared between typechecking workers, binary loaders, and reader threads.
+ */
+public class ConcurrentTypecheckerState implements TypecheckerState {
+  private volatile ConcurrentMap<GlobalReferable, Definition> myTypechecked;
+  private final NormalizationCache myNormalizationCache = new NormalizationCache();
+
+  public ConcurrentTypecheckerState() {
+    myTypechecked = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public Definition record(TCReferable def, Definition res) {
+    return myTypechecked.putIfAbsent(def, res);
+  }
+
+  @Override
+  public void rewrite(TCReferable def, Definition res) {
+    myTypechecked.put(def, res);
+  }
+
+  @Override
+  public Definition getTypechecked(TCReferable def) {
+    assert def != null;
+    return myTypechecked.get(def);
+  }
+
+  @Override
+  public Definition reset(TCReferable def) {
+    return myTypechecked.remove(def);
+  }
+
+  /**
+   * Removes all definitions at once.
+   * Readers see either the old state or the empty one, but never a partially cleared state.
+   */
+  @Override
+  public void reset() {
+    myTypechecked = new ConcurrentHashMap<>();
+    myNormalizationCache.clear();
+  }
+
+  @Override
+  public NormalizationCache getNormalizationCache() {
+    return myNormalizationCache;
+  }
+}
@@ -1571,6 +1571,9 @@ public class DefinitionTypechecking implements ConcreteDefinitionVisitor<Boolean
         }
       }
     }
+    if (newDef) {
+      typedDef.updateAncestors();
+    }
 
     boolean hasClassifyingField = false;
     if (!def.isRecord()) {
@@ -1,6 +1,7 @@
 package org.arend.typechecking;
 
 import org.arend.core.definition.Definition;
+import org.arend.core.expr.visitor.NormalizationCache;
 import org.arend.naming.reference.GlobalReferable;
 import org.arend.naming.reference.TCReferable;
 
@@ -9,6 +10,7 @@ import java.util.Map;
 
 public class SimpleTypecheckerState implements TypecheckerState {
   private final Map<GlobalReferable, Definition> myTypechecked;
+  private final NormalizationCache myNormalizationCache = new NormalizationCache();
 
   public SimpleTypecheckerState() {
     myTypechecked = new HashMap<>();
@@ -38,5 +40,11 @@ public class SimpleTypecheckerState implements TypecheckerState {
   @Override
   public void reset() {
     myTypechecked.clear();
+    myNormalizationCache.clear();
+  }
+
+  @Override
+  public NormalizationCache getNormalizationCache() {
+    return myNormalizationCache;
   }
 }
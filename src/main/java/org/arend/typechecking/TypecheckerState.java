@@ -1,6 +1,7 @@
 package org.arend.typechecking;
 
 import org.arend.core.definition.Definition;
+import org.arend.core.expr.visitor.NormalizationCache;
 import org.arend.naming.reference.TCReferable;
 
 public interface TypecheckerState {
@@ -9,4 +10,11 @@ public interface TypecheckerState {
   Definition getTypechecked(TCReferable def);
   Definition reset(TCReferable def);
   void reset();
+
+  /**
+   * @return the cache of normal forms of calls to definitions from this state or null if normal forms are not cached.
+   */
+  default NormalizationCache getNormalizationCache() {
+    return null;
+  }
 }
@@ -1,9 +1,8 @@
 package org.arend.typechecking.implicitargs.equations;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import org.arend.typechecking.order.listener.TypecheckingCounters;
+
+import java.util.*;
 
 public class LevelEquations<Var> {
   private final List<Var> myVariables = new ArrayList<>();
@@ -30,6 +29,15 @@ public class LevelEquations<Var> {
     myEquations.add(equation);
   }
 
+  /**
+   * Removes finite equations which mention one of the given variables.
+   */
+  void removeEquations(Set<? extends Var> variables) {
+    if (!variables.isEmpty()) {
+      myEquations.removeIf(equation -> !equation.isInfinity() && (variables.contains(equation.getVariable1()) || variables.contains(equation.getVariable2())));
+    }
+  }
+
   public void clear() {
     myVariables.clear();
     myEquations.clear();
@@ -39,44 +47,74 @@ public class LevelEquations<Var> {
     return myVariables.isEmpty() && myEquations.isEmpty();
   }
 
+  /**
+   * Computes the least solution of the equations.
+   * Equations are indexed by their lower variable, so when the value of a variable decreases only the equations that mention it are reconsidered.
+   * The solution is not maintained incrementally between calls:
+   * {@link TwoStageEquations} solves each set of equations once and clears it afterwards, so there is no previous solution to start from.
+   *
+   * @return null if the equations are solvable, or a path of equations which violates them.
+   */
   public List<LevelEquation<Var>> solve(Map<Var, Integer> solution) {
     Map<Var, List<LevelEquation<Var>>> paths = new HashMap<>();
+    Map<Var, List<LevelEquation<Var>>> outgoing = new HashMap<>();
+    Deque<Var> queue = new LinkedList<>(); // may contain null
+    Set<Var> queued = new HashSet<>();
 
     solution.put(null, 0);
     paths.put(null, new ArrayList<>());
+    queue.add(null);
+    queued.add(null);
     for (Var var : myVariables) {
       solution.put(var, 0);
       paths.put(var, new ArrayList<>());
+      if (queued.add(var)) {
+        queue.add(var);
+      }
     }
 
-    for (int i = myVariables.size(); i >= 0; i--) {
-      boolean updated = false;
-      for (LevelEquation<Var> equation : myEquations) {
-        if (equation.isInfinity()) {
-          solution.put(equation.getVariable(), null);
-        } else {
-          Integer a = solution.get(equation.getVariable1());
-          Integer b = solution.get(equation.getVariable2());
-          Integer m = equation.getMaxConstant();
-          if (b != null && (a == null || (m == null || a + m < 0) && b > a + equation.getConstant())) {
-            if (a != null) {
-              List<LevelEquation<Var>> newPath = new ArrayList<>(paths.get(equation.getVariable1()));
-              newPath.add(equation);
-              paths.put(equation.getVariable2(), newPath);
-            }
-            if (i == 0 || equation.getVariable2() == null && a != null) {
+    for (LevelEquation<Var> equation : myEquations) {
+      if (equation.isInfinity()) {
+        solution.put(equation.getVariable(), null);
+      } else {
+        outgoing.computeIfAbsent(equation.getVariable1(), k -> new ArrayList<>()).add(equation);
+        if (queued.add(equation.getVariable1())) {
+          queue.add(equation.getVariable1());
+        }
+      }
+    }
+
+    while (!queue.isEmpty()) {
+      Var var = queue.poll();
+      queued.remove(var);
+      TypecheckingCounters.increment(TypecheckingCounters.Counter.EQUATION_SOLVER_ITERATIONS);
+      List<LevelEquation<Var>> equations = outgoing.get(var);
+      if (equations == null) {
+        continue;
+      }
+
+      for (LevelEquation<Var> equation : equations) {
+        Integer a = solution.get(equation.getVariable1());
+        Integer b = solution.get(equation.getVariable2());
+        Integer m = equation.getMaxConstant();
+        if (b != null && (a == null || (m == null || a + m < 0) && b > a + equation.getConstant())) {
+          if (a != null) {
+            List<LevelEquation<Var>> newPath = new ArrayList<>(paths.get(equation.getVariable1()));
+            newPath.add(equation);
+            paths.put(equation.getVariable2(), newPath);
+            // A path with more edges than there are variables passes through some variable twice, so it contains a cycle which decreases its value
+            if (equation.getVariable2() == null || newPath.size() > myVariables.size()) {
               solution.remove(null);
-              return paths.get(equation.getVariable2());
+              return newPath;
             }
+          }
 
-            solution.put(equation.getVariable2(), a == null ? null : a + equation.getConstant());
-            updated = true;
+          solution.put(equation.getVariable2(), a == null ? null : a + equation.getConstant());
+          if (queued.add(equation.getVariable2())) {
+            queue.add(equation.getVariable2());
           }
         }
       }
-      if (!updated) {
-        break;
-      }
     }
 
     solution.remove(null);
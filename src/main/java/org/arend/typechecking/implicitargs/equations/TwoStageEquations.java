@@ -19,6 +19,7 @@ import org.arend.core.subst.LevelSubstitution;
 import org.arend.core.subst.SimpleLevelSubstitution;
 import org.arend.term.concrete.Concrete;
 import org.arend.typechecking.error.local.*;
+import org.arend.typechecking.order.listener.TypecheckingCounters;
 import org.arend.typechecking.visitor.CheckTypeVisitor;
 import org.arend.typechecking.visitor.ProcessDefCallsVisitor;
 import org.arend.util.Pair;
@@ -26,7 +27,10 @@ import org.arend.util.Pair;
 import java.util.*;
 
 public class TwoStageEquations implements Equations {
-  private final List<Equation> myEquations;
+  // The order of equations is preserved, removal is constant time.
+  // Equations are not indexed here: every equation is a listener of the inference variables it mentions, so solving a variable wakes only those equations.
+  // The set itself is scanned only once per call of solve.
+  private final Set<Equation> myEquations;
   private final LevelEquations<InferenceLevelVariable> myPLevelEquations;      // equations of the forms      c <= ?y and ?x <= max(?y + c', d)
   private final LevelEquations<InferenceLevelVariable> myBasedPLevelEquations; // equations of the forms lp + c <= ?y and ?x <= max(?y + c', d)
   private final LevelEquations<InferenceLevelVariable> myHLevelEquations;
@@ -38,7 +42,7 @@ public class TwoStageEquations implements Equations {
   private final Map<InferenceLevelVariable, Level> myConstantUpperBounds;
 
   public TwoStageEquations(CheckTypeVisitor visitor) {
-    myEquations = new ArrayList<>();
+    myEquations = new LinkedHashSet<>();
     myPLevelEquations = new LevelEquations<>();
     myBasedPLevelEquations = new LevelEquations<>();
     myHLevelEquations = new LevelEquations<>();
@@ -488,16 +492,19 @@ public class TwoStageEquations implements Equations {
     }
 
     if (!unBased.isEmpty()) {
+      // Equations are removed in one pass for all variables, since a pass for every bound variable is quadratic
+      Set<InferenceLevelVariable> removed = new HashSet<>();
       for (Pair<InferenceLevelVariable, InferenceLevelVariable> vars : myBoundVariables) {
         if (unBased.contains(vars.proj2)) {
           Integer sol = solution.get(vars.proj2);
           if (sol != null && sol == 0) {
-            myPLevelEquations.getEquations().removeIf(equation -> !equation.isInfinity() && (equation.getVariable1() == vars.proj1 || equation.getVariable2() == vars.proj1));
-            myBasedPLevelEquations.getEquations().removeIf(equation -> !equation.isInfinity() && (equation.getVariable1() == vars.proj1 || equation.getVariable2() == vars.proj1));
+            removed.add(vars.proj1);
             myConstantUpperBounds.remove(vars.proj1);
           }
         }
       }
+      myPLevelEquations.removeEquations(removed);
+      myBasedPLevelEquations.removeEquations(removed);
     }
 
     cycle = myBasedPLevelEquations.solve(basedSolution);
@@ -527,9 +534,12 @@ public class TwoStageEquations implements Equations {
       }
     }
 
-    for (int i = 0; i < myEquations.size(); i++) {
-      Equation equation = myEquations.get(i);
-      myEquations.set(i, new Equation(equation.type.subst(result), equation.expr.subst(result), equation.cmp, equation.sourceNode));
+    if (!myEquations.isEmpty()) {
+      List<Equation> equations = new ArrayList<>(myEquations);
+      myEquations.clear();
+      for (Equation equation : equations) {
+        myEquations.add(new Equation(equation.type.subst(result), equation.expr.subst(result), equation.cmp, equation.sourceNode));
+      }
     }
 
     myPLevelEquations.clear();
@@ -769,6 +779,7 @@ public class TwoStageEquations implements Equations {
   private enum SolveResult { SOLVED, NOT_SOLVED, ERROR }
 
   private SolveResult solve(InferenceVariable var, Expression expr) {
+    TypecheckingCounters.increment(TypecheckingCounters.Counter.EQUATION_SOLVER_ITERATIONS);
     if (expr.getInferenceVariable() == var) {
       return SolveResult.NOT_SOLVED;
     }
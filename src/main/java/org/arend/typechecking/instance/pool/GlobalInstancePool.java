@@ -4,13 +4,10 @@ import org.arend.core.context.param.DependentLink;
 import org.arend.core.definition.ClassDefinition;
 import org.arend.core.definition.ClassField;
 import org.arend.core.definition.Definition;
-import org.arend.core.definition.FunctionDefinition;
 import org.arend.core.expr.*;
 import org.arend.core.expr.visitor.NormalizeVisitor;
 import org.arend.core.sort.Sort;
 import org.arend.core.subst.ExprSubstitution;
-import org.arend.naming.reference.ClassReferable;
-import org.arend.naming.reference.Referable;
 import org.arend.naming.reference.TCClassReferable;
 import org.arend.term.concrete.Concrete;
 import org.arend.typechecking.TypecheckerState;
@@ -18,18 +15,25 @@ import org.arend.typechecking.implicitargs.equations.Equations;
 import org.arend.typechecking.instance.provider.InstanceProvider;
 import org.arend.typechecking.visitor.CheckTypeVisitor;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 public class GlobalInstancePool implements InstancePool {
   private final TypecheckerState myTypecheckerState;
   private final InstanceProvider myInstanceProvider;
   private final CheckTypeVisitor myCheckTypeVisitor;
+  private final Map<TCClassReferable, Map<Object, InstanceIndex.Entry>> myResolvedInstances;
   private InstancePool myInstancePool;
 
-  public GlobalInstancePool(TypecheckerState typecheckerState, InstanceProvider instanceProvider, CheckTypeVisitor checkTypeVisitor) {
+  private GlobalInstancePool(TypecheckerState typecheckerState, InstanceProvider instanceProvider, CheckTypeVisitor checkTypeVisitor, Map<TCClassReferable, Map<Object, InstanceIndex.Entry>> resolvedInstances) {
     myTypecheckerState = typecheckerState;
     myInstanceProvider = instanceProvider;
     myCheckTypeVisitor = checkTypeVisitor;
+    myResolvedInstances = resolvedInstances;
+  }
+
+  public GlobalInstancePool(TypecheckerState typecheckerState, InstanceProvider instanceProvider, CheckTypeVisitor checkTypeVisitor) {
+    this(typecheckerState, instanceProvider, checkTypeVisitor, new HashMap<>());
   }
 
   public InstancePool getInstancePool() {
@@ -73,52 +77,47 @@ public class GlobalInstancePool implements InstancePool {
       }
     }
 
-    List<? extends Concrete.FunctionDefinition> instances = myInstanceProvider.getInstances();
-    for (Concrete.FunctionDefinition instance : instances) {
-      Referable instanceRef = instance.getReferenceInType();
-      if (!(instanceRef instanceof ClassReferable && ((ClassReferable) instanceRef).isSubClassOf(classRef))) {
-        continue;
+    Map<Object, InstanceIndex.Entry> resolved = myResolvedInstances.computeIfAbsent(classRef, k -> new HashMap<>());
+    Object key = getResolutionKey(classifyingExpression);
+    InstanceIndex.Entry entry = resolved.get(key);
+    if (entry == null || !entry.isUpToDate(myTypecheckerState)) {
+      entry = myInstanceProvider.getIndex().findInstance(myTypecheckerState, classRef, classifyingExpression);
+      if (entry == null) {
+        return null;
       }
+      resolved.put(key, entry);
+    }
 
-      FunctionDefinition instanceDef = (FunctionDefinition) myTypecheckerState.getTypechecked(instance.getData());
-      if (instanceDef != null && instanceDef.status().headerIsOK() && instanceDef.getResultType() instanceof ClassCallExpression) {
-        ClassCallExpression instanceResultType = (ClassCallExpression) instanceDef.getResultType();
-        if (classifyingExpression != null) {
-          Expression instanceClassifyingExpr = instanceResultType.getImplementationHere(classifyingField);
-          if (instanceClassifyingExpr != null) {
-            instanceClassifyingExpr = instanceClassifyingExpr.normalize(NormalizeVisitor.Mode.WHNF);
-          }
-          while (instanceClassifyingExpr instanceof LamExpression) {
-            instanceClassifyingExpr = ((LamExpression) instanceClassifyingExpr).getBody();
-          }
-          if (!(instanceClassifyingExpr instanceof UniverseExpression && classifyingExpression.isInstance(UniverseExpression.class) ||
-            instanceClassifyingExpr instanceof IntegerExpression && (classifyingExpression.isInstance(IntegerExpression.class) && ((IntegerExpression) instanceClassifyingExpr).isEqual(classifyingExpression.cast(IntegerExpression.class)) ||
-              classifyingExpression.isInstance(ConCallExpression.class) && ((IntegerExpression) instanceClassifyingExpr).match(classifyingExpression.cast(ConCallExpression.class).getDefinition())) ||
-            instanceClassifyingExpr instanceof DefCallExpression && classifyingExpression.isInstance(DefCallExpression.class) && ((DefCallExpression) instanceClassifyingExpr).getDefinition() == classifyingExpression.cast(DefCallExpression.class).getDefinition())) {
-            continue;
-          }
-        }
-
-        Concrete.Expression instanceExpr = new Concrete.ReferenceExpression(sourceNode.getData(), instance.getData());
-        for (DependentLink link = instanceDef.getParameters(); link.hasNext(); link = link.getNext()) {
-          if (link.isExplicit()) {
-            instanceExpr = Concrete.AppExpression.make(sourceNode.getData(), instanceExpr, new Concrete.HoleExpression(sourceNode.getData()), true);
-          }
-        }
-
-        Expression expectedType = classifyingField == null ? null : myCheckTypeVisitor.fixClassExtSort(new ClassCallExpression(instanceResultType.getDefinition(), Sort.generateInferVars(myCheckTypeVisitor.getEquations(), instanceResultType.getDefinition().hasUniverses(), sourceNode)), sourceNode);
-        CheckTypeVisitor.Result result = myCheckTypeVisitor.checkExpr(instanceExpr, expectedType);
-        return result == null ? new ErrorExpression(null, null) : result.expression;
+    Concrete.Expression instanceExpr = new Concrete.ReferenceExpression(sourceNode.getData(), entry.instance.getData());
+    for (DependentLink link = entry.definition.getParameters(); link.hasNext(); link = link.getNext()) {
+      if (link.isExplicit()) {
+        instanceExpr = Concrete.AppExpression.make(sourceNode.getData(), instanceExpr, new Concrete.HoleExpression(sourceNode.getData()), true);
       }
     }
 
-    return null;
+    Expression expectedType = classifyingField == null ? null : myCheckTypeVisitor.fixClassExtSort(new ClassCallExpression(entry.resultType.getDefinition(), Sort.generateInferVars(myCheckTypeVisitor.getEquations(), entry.resultType.getDefinition().hasUniverses(), sourceNode)), sourceNode);
+    CheckTypeVisitor.Result result = myCheckTypeVisitor.checkExpr(instanceExpr, expectedType);
+    return result == null ? new ErrorExpression(null, null) : result.expression;
+  }
+
+  // Integers are distinguished by their values and other classifying expressions by their heads
+  private static Object getResolutionKey(Expression classifyingExpression) {
+    if (classifyingExpression == null) {
+      return GlobalInstancePool.class;
+    }
+    if (classifyingExpression.isInstance(IntegerExpression.class)) {
+      return classifyingExpression.cast(IntegerExpression.class).getBigInteger();
+    }
+    if (classifyingExpression.isInstance(UniverseExpression.class)) {
+      return UniverseExpression.class;
+    }
+    return classifyingExpression.cast(DefCallExpression.class).getDefinition();
   }
 
   @Override
   public GlobalInstancePool subst(ExprSubstitution substitution) {
     if (myInstancePool != null) {
-      GlobalInstancePool result = new GlobalInstancePool(myTypecheckerState, myInstanceProvider, myCheckTypeVisitor);
+      GlobalInstancePool result = new GlobalInstancePool(myTypecheckerState, myInstanceProvider, myCheckTypeVisitor, myResolvedInstances);
       result.setInstancePool(myInstancePool.subst(substitution));
       return result;
     } else {
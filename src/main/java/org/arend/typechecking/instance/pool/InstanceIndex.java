@@ -0,0 +1,175 @@
+package org.arend.typechecking.instance.pool;
+
+import org.arend.core.definition.ClassDefinition;
+import org.arend.core.definition.ClassField;
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.*;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.naming.reference.ClassReferable;
+import org.arend.naming.reference.Referable;
+import org.arend.naming.reference.TCClassReferable;
+import org.arend.prelude.Prelude;
+import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.instance.provider.InstanceProvider;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes instances of an {@link InstanceProvider} by classes and by heads of their classifying implementations.
+ * The index of a class is built on the first request and rebuilt when the class or any of its instances is (re)typechecked.
+ * The index can be shared by several threads.
+ */
+public class InstanceIndex {
+  private final InstanceProvider myInstanceProvider;
+  private final Map<ClassReferable, List<Concrete.FunctionDefinition>> myClassInstances = new ConcurrentHashMap<>();
+  private final Map<TCClassReferable, ClassIndex> myClassIndices = new ConcurrentHashMap<>();
+
+  public InstanceIndex(InstanceProvider instanceProvider) {
+    myInstanceProvider = instanceProvider;
+  }
+
+  /**
+   * @return instances of subclasses of {@code classRef} in the order of {@link InstanceProvider#getInstances}.
+   */
+  public List<Concrete.FunctionDefinition> getInstances(ClassReferable classRef) {
+    return myClassInstances.computeIfAbsent(classRef, ref -> {
+      List<Concrete.FunctionDefinition> result = new ArrayList<>();
+      for (Concrete.FunctionDefinition instance : myInstanceProvider.getInstances()) {
+        Referable instanceRef = instance.getReferenceInType();
+        if (instanceRef instanceof ClassReferable && ((ClassReferable) instanceRef).isSubClassOf(ref)) {
+          result.add(instance);
+        }
+      }
+      return result;
+    });
+  }
+
+  public static class Entry {
+    public final Concrete.FunctionDefinition instance;
+    public final FunctionDefinition definition;
+    public final ClassCallExpression resultType;
+    private final Expression myClassifyingExpression; // the implementation of the classifying field in WHNF without lambdas
+    private final ClassIndex myIndex;
+
+    private Entry(ClassIndex index, Concrete.FunctionDefinition instance, FunctionDefinition definition, ClassField classifyingField) {
+      myIndex = index;
+      this.instance = instance;
+      this.definition = definition;
+      resultType = (ClassCallExpression) definition.getResultType();
+
+      Expression classifyingExpr = classifyingField == null ? null : resultType.getImplementationHere(classifyingField);
+      if (classifyingExpr != null) {
+        classifyingExpr = classifyingExpr.normalize(NormalizeVisitor.Mode.WHNF);
+      }
+      while (classifyingExpr instanceof LamExpression) {
+        classifyingExpr = ((LamExpression) classifyingExpr).getBody();
+      }
+      myClassifyingExpression = classifyingExpr;
+    }
+
+    /**
+     * @return true if neither the class nor any of its instances was (re)typechecked after this entry was found,
+     *         that is, if this entry is still the result of the same search.
+     */
+    public boolean isUpToDate(TypecheckerState state) {
+      return myIndex.isUpToDate(state);
+    }
+
+    private boolean matches(Expression classifyingExpression) {
+      Expression instanceClassifyingExpr = myClassifyingExpression;
+      return instanceClassifyingExpr instanceof UniverseExpression && classifyingExpression.isInstance(UniverseExpression.class) ||
+        instanceClassifyingExpr instanceof IntegerExpression && (classifyingExpression.isInstance(IntegerExpression.class) && ((IntegerExpression) instanceClassifyingExpr).isEqual(classifyingExpression.cast(IntegerExpression.class)) ||
+          classifyingExpression.isInstance(ConCallExpression.class) && ((IntegerExpression) instanceClassifyingExpr).match(classifyingExpression.cast(ConCallExpression.class).getDefinition())) ||
+        instanceClassifyingExpr instanceof DefCallExpression && classifyingExpression.isInstance(DefCallExpression.class) && ((DefCallExpression) instanceClassifyingExpr).getDefinition() == classifyingExpression.cast(DefCallExpression.class).getDefinition();
+    }
+  }
+
+  /**
+   * @return an object such that instances can match {@code expr} only if their classifying expressions have the same head,
+   *         or null if nothing matches {@code expr}.
+   */
+  private static Object getHead(Expression expr) {
+    if (expr == null) {
+      return null;
+    }
+    if (expr.isInstance(UniverseExpression.class)) {
+      return UniverseExpression.class;
+    }
+    if (expr.isInstance(IntegerExpression.class)) {
+      return expr.cast(IntegerExpression.class).isZero() ? Prelude.ZERO : Prelude.SUC;
+    }
+    DefCallExpression defCall = expr.checkedCast(DefCallExpression.class);
+    return defCall == null ? null : defCall.getDefinition();
+  }
+
+  private static class ClassIndex {
+    final TCClassReferable classRef;
+    final Definition classDefinition;
+    final List<Entry> entries = new ArrayList<>();
+    final Map<Object, List<Entry>> entriesByHead = new HashMap<>();
+    final Concrete.FunctionDefinition[] instances;
+    final Definition[] instanceDefinitions; // typechecked instances, including those which are not indexed since they have incorrect headers, or null
+
+    ClassIndex(TypecheckerState state, TCClassReferable classRef, List<Concrete.FunctionDefinition> instances) {
+      this.classRef = classRef;
+      classDefinition = state.getTypechecked(classRef);
+      this.instances = instances.toArray(new Concrete.FunctionDefinition[0]);
+      instanceDefinitions = new Definition[this.instances.length];
+      ClassField classifyingField = classDefinition instanceof ClassDefinition ? ((ClassDefinition) classDefinition).getClassifyingField() : null;
+      for (int i = 0; i < this.instances.length; i++) {
+        Concrete.FunctionDefinition instance = this.instances[i];
+        Definition instanceDef = state.getTypechecked(instance.getData());
+        instanceDefinitions[i] = instanceDef;
+        if (instanceDef instanceof FunctionDefinition && instanceDef.status().headerIsOK() && ((FunctionDefinition) instanceDef).getResultType() instanceof ClassCallExpression) {
+          Entry entry = new Entry(this, instance, (FunctionDefinition) instanceDef, classifyingField);
+          entries.add(entry);
+          Object head = getHead(entry.myClassifyingExpression);
+          if (head != null) {
+            entriesByHead.computeIfAbsent(head, k -> new ArrayList<>()).add(entry);
+          }
+        }
+      }
+    }
+
+    // Every instance is checked since a retypechecked instance can move to another bucket and change the order of resolution
+    boolean isUpToDate(TypecheckerState state) {
+      if (state.getTypechecked(classRef) != classDefinition) {
+        return false;
+      }
+      for (int i = 0; i < instances.length; i++) {
+        if (state.getTypechecked(instances[i].getData()) != instanceDefinitions[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private ClassIndex getClassIndex(TypecheckerState state, TCClassReferable classRef) {
+    ClassIndex index = myClassIndices.get(classRef);
+    if (index == null || !index.isUpToDate(state)) {
+      index = new ClassIndex(state, classRef, getInstances(classRef));
+      myClassIndices.put(classRef, index);
+    }
+    return index;
+  }
+
+  /**
+   * Finds the first typechecked instance of {@code classRef} with the classifying expression matching {@code classifyingExpression}.
+   *
+   * @param classifyingExpression an expression in WHNF without lambdas or null if any instance of {@code classRef} is suitable.
+   */
+  public Entry findInstance(TypecheckerState state, TCClassReferable classRef, Expression classifyingExpression) {
+    ClassIndex index = getClassIndex(state, classRef);
+    List<Entry> candidates = classifyingExpression == null ? index.entries : index.entriesByHead.getOrDefault(getHead(classifyingExpression), Collections.emptyList());
+    for (Entry entry : candidates) {
+      if (classifyingExpression == null || entry.matches(classifyingExpression)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+}
@@ -1,12 +1,14 @@
 package org.arend.typechecking.instance.provider;
 
 import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.instance.pool.InstanceIndex;
 
 import java.util.Collections;
 import java.util.List;
 
 public class EmptyInstanceProvider implements InstanceProvider {
   private static final EmptyInstanceProvider INSTANCE = new EmptyInstanceProvider();
+  private final InstanceIndex myIndex = new InstanceIndex(this);
 
   private EmptyInstanceProvider() {}
 
@@ -18,4 +20,9 @@ public class EmptyInstanceProvider implements InstanceProvider {
   public List<? extends Concrete.FunctionDefinition> getInstances() {
     return Collections.emptyList();
   }
+
+  @Override
+  public InstanceIndex getIndex() {
+    return myIndex;
+  }
 }
@@ -1,9 +1,17 @@
 package org.arend.typechecking.instance.provider;
 
 import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.instance.pool.InstanceIndex;
 
 import java.util.List;
 
 public interface InstanceProvider {
   List<? extends Concrete.FunctionDefinition> getInstances();
+
+  /**
+   * @return the index of instances; implementations should return the same index every time, so that it is shared by all users of this provider.
+   */
+  default InstanceIndex getIndex() {
+    return new InstanceIndex(this);
+  }
 }
@@ -6,6 +6,7 @@ import org.arend.naming.reference.Referable;
 import org.arend.naming.reference.TCReferable;
 import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.naming.scope.CachingScope;
+import org.arend.naming.scope.ImportedScope;
 import org.arend.naming.scope.LexicalScope;
 import org.arend.naming.scope.NamespaceCommandNamespace;
 import org.arend.naming.scope.Scope;
@@ -21,6 +22,19 @@ import java.util.function.Predicate;
 public class InstanceProviderSet {
   private final Map<TCReferable, InstanceProvider> myProviders = new HashMap<>();
   private final Set<Group> myCollected = new HashSet<>();
+  private final Map<Scope, ImportedInstances> myImportedInstances = Collections.synchronizedMap(new WeakHashMap<>());
+
+  private static class ImportedInstances {
+    final ConcreteProvider concreteProvider;
+    final ReferableConverter referableConverter;
+    final List<Concrete.FunctionDefinition> instances;
+
+    ImportedInstances(ConcreteProvider concreteProvider, ReferableConverter referableConverter, List<Concrete.FunctionDefinition> instances) {
+      this.concreteProvider = concreteProvider;
+      this.referableConverter = referableConverter;
+      this.instances = instances;
+    }
+  }
 
   public void put(TCReferable referable, InstanceProvider provider) {
     myProviders.put(referable, provider);
@@ -56,21 +70,39 @@ public class InstanceProviderSet {
       return ref;
     }
 
-    @Override
-    public boolean test(Referable ref) {
+    Concrete.FunctionDefinition getInstance(Referable ref) {
       if (referableConverter != null && ref instanceof LocatedReferable && !(ref instanceof TCReferable)) {
         ref = referableConverter.toDataLocatedReferable((LocatedReferable) ref);
       }
       if (ref instanceof TCReferable) {
         Concrete.FunctionDefinition instance = concreteProvider.getConcreteInstance((GlobalReferable) ref);
         if (instance != null && instance.getKind() == Concrete.FunctionDefinition.Kind.INSTANCE) {
-          if (used) {
-            instanceProvider = new SimpleInstanceProvider(instanceProvider);
-            used = false;
-          }
-          instanceProvider.put(instance);
+          return instance;
         }
       }
+      return null;
+    }
+
+    private SimpleInstanceProvider getInstanceProvider() {
+      if (used) {
+        instanceProvider = new SimpleInstanceProvider(instanceProvider);
+        used = false;
+      }
+      return instanceProvider;
+    }
+
+    void putAll(List<? extends Concrete.FunctionDefinition> instances) {
+      if (!instances.isEmpty()) {
+        getInstanceProvider().putAll(instances);
+      }
+    }
+
+    @Override
+    public boolean test(Referable ref) {
+      Concrete.FunctionDefinition instance = getInstance(ref);
+      if (instance != null) {
+        getInstanceProvider().put(instance);
+      }
       return false;
     }
   }
@@ -97,12 +129,44 @@ public class InstanceProviderSet {
 
     parentScope = CachingScope.make(LexicalScope.insideOf(group, parentScope));
     for (NamespaceCommand command : namespaceCommands) {
+      if (command.getKind() == NamespaceCommand.Kind.IMPORT && command.isUsing() && command.getOpenedReferences().isEmpty() && command.getHiddenReferences().isEmpty() && !command.getPath().isEmpty()) {
+        ImportedScope importedScope = parentScope.getImportedSubscope();
+        Scope moduleScope = importedScope == null ? null : importedScope.resolveNamespace(command.getPath());
+        if (moduleScope != null) {
+          predicate.putAll(getImportedInstances(moduleScope, predicate));
+        }
+        continue;
+      }
       NamespaceCommandNamespace.resolveNamespace(command.getKind() == NamespaceCommand.Kind.IMPORT ? parentScope.getImportedSubscope() : parentScope, command).find(predicate);
     }
     processSubgroups(parentScope, predicate, dynamicSubgroups);
     processSubgroups(parentScope, predicate, subgroups);
   }
 
+  /**
+   * Instances of a module which is imported without renamings are collected once for every scope of this module,
+   * so providers of all modules that import it share the same list.
+   */
+  private List<Concrete.FunctionDefinition> getImportedInstances(Scope moduleScope, MyPredicate predicate) {
+    ImportedInstances imported = myImportedInstances.get(moduleScope);
+    if (imported != null && imported.concreteProvider == predicate.concreteProvider && imported.referableConverter == predicate.referableConverter) {
+      return imported.instances;
+    }
+
+    List<Concrete.FunctionDefinition> instances = new ArrayList<>();
+    for (Referable ref : moduleScope.getElements()) {
+      Concrete.FunctionDefinition instance = predicate.getInstance(ref);
+      if (instance != null) {
+        instances.add(instance);
+      }
+    }
+    if (instances.isEmpty()) {
+      instances = Collections.emptyList();
+    }
+    myImportedInstances.put(moduleScope, new ImportedInstances(predicate.concreteProvider, predicate.referableConverter, instances));
+    return instances;
+  }
+
   private void processSubgroups(Scope parentScope, MyPredicate predicate, Collection<? extends Group> subgroups) {
     for (Group subgroup : subgroups) {
       SimpleInstanceProvider instanceProvider = predicate.instanceProvider;
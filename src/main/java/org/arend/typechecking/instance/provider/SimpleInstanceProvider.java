@@ -1,27 +1,148 @@
 package org.arend.typechecking.instance.provider;
 
 import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.instance.pool.InstanceIndex;
 
-import java.util.ArrayList;
-import java.util.List;
+import javax.annotation.Nonnull;
+import java.util.*;
 
+/**
+ * A list of instances which extends a prefix of another provider.
+ * A copy of a provider refers to the original and remembers how many of its instances it sees, so copying a provider does not copy its instances.
+ * Lists of instances added with {@link #putAll} are stored as segments without copying, so they can be shared between providers of different modules.
+ */
 public class SimpleInstanceProvider implements InstanceProvider {
-  private List<Concrete.FunctionDefinition> myInstances;
+  private final SimpleInstanceProvider myParent;
+  private final int myParentSize;
+  private final List<List<? extends Concrete.FunctionDefinition>> mySegments = new ArrayList<>();
+  private List<Concrete.FunctionDefinition> myLastSegment;
+  private int mySize;
+  private final List<Concrete.FunctionDefinition> myInstanceList = new InstanceList();
+  private InstanceIndex myIndex;
 
   public SimpleInstanceProvider() {
-    myInstances = new ArrayList<>();
+    myParent = null;
+    myParentSize = 0;
   }
 
   public SimpleInstanceProvider(SimpleInstanceProvider another) {
-    myInstances = new ArrayList<>(another.myInstances);
+    if (another.mySegments.isEmpty()) {
+      myParent = another.myParent;
+      myParentSize = another.myParentSize;
+    } else {
+      myParent = another;
+      myParentSize = another.mySize;
+    }
+    mySize = myParentSize;
+  }
+
+  private class InstanceList extends AbstractList<Concrete.FunctionDefinition> {
+    @Override
+    public Concrete.FunctionDefinition get(int index) {
+      if (index < 0 || index >= mySize) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+      }
+
+      SimpleInstanceProvider provider = SimpleInstanceProvider.this;
+      while (index < provider.myParentSize) {
+        provider = provider.myParent;
+      }
+      index -= provider.myParentSize;
+      for (List<? extends Concrete.FunctionDefinition> segment : provider.mySegments) {
+        if (index < segment.size()) {
+          return segment.get(index);
+        }
+        index -= segment.size();
+      }
+      throw new IllegalStateException();
+    }
+
+    @Override
+    public int size() {
+      return mySize;
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<Concrete.FunctionDefinition> iterator() {
+      // Collect the visible segments of the whole chain from the end, then iterate over them from the beginning
+      Deque<List<? extends Concrete.FunctionDefinition>> segments = new ArrayDeque<>();
+      int size = mySize;
+      for (SimpleInstanceProvider provider = SimpleInstanceProvider.this; provider != null && size > 0; size = provider.myParentSize, provider = provider.myParent) {
+        int remaining = size - provider.myParentSize;
+        List<List<? extends Concrete.FunctionDefinition>> visible = new ArrayList<>();
+        for (List<? extends Concrete.FunctionDefinition> segment : provider.mySegments) {
+          if (remaining <= 0) {
+            break;
+          }
+          visible.add(segment.size() <= remaining ? segment : segment.subList(0, remaining));
+          remaining -= segment.size();
+        }
+        for (int i = visible.size() - 1; i >= 0; i--) {
+          segments.addFirst(visible.get(i));
+        }
+      }
+
+      return new Iterator<Concrete.FunctionDefinition>() {
+        private Iterator<? extends Concrete.FunctionDefinition> myIterator = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+          while (!myIterator.hasNext()) {
+            List<? extends Concrete.FunctionDefinition> segment = segments.pollFirst();
+            if (segment == null) {
+              return false;
+            }
+            myIterator = segment.iterator();
+          }
+          return true;
+        }
+
+        @Override
+        public Concrete.FunctionDefinition next() {
+          if (!hasNext()) {
+            throw new NoSuchElementException();
+          }
+          return myIterator.next();
+        }
+      };
+    }
   }
 
   public void put(Concrete.FunctionDefinition instance) {
-    myInstances.add(instance);
+    if (myLastSegment == null) {
+      myLastSegment = new ArrayList<>();
+      mySegments.add(myLastSegment);
+    }
+    myLastSegment.add(instance);
+    mySize++;
+    myIndex = null;
+  }
+
+  /**
+   * Adds a list of instances without copying it.
+   * The list must not be modified afterwards.
+   */
+  public void putAll(List<? extends Concrete.FunctionDefinition> instances) {
+    if (instances.isEmpty()) {
+      return;
+    }
+    mySegments.add(instances);
+    myLastSegment = null;
+    mySize += instances.size();
+    myIndex = null;
   }
 
   @Override
   public List<? extends Concrete.FunctionDefinition> getInstances() {
-    return myInstances;
+    return myInstanceList;
+  }
+
+  @Override
+  public synchronized InstanceIndex getIndex() {
+    if (myIndex == null) {
+      myIndex = new InstanceIndex(this);
+    }
+    return myIndex;
   }
 }
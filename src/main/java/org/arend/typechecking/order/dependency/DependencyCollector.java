@@ -1,32 +1,82 @@
 package org.arend.typechecking.order.dependency;
 
 import org.arend.core.definition.*;
+import org.arend.core.expr.visitor.NormalizationCache;
+import org.arend.module.serialization.DefinitionFingerprint;
 import org.arend.naming.reference.TCReferable;
 import org.arend.typechecking.TypecheckerState;
 
 import java.util.*;
 
+/**
+ * Collects dependencies between definitions and resets definitions when they are updated.
+ * By default, an updated definition is reset together with everything that depends on it transitively.
+ * In the incremental mode, only the updated definition is reset;
+ * its dependents are reset by {@link #propagateUpdates} after it is typechecked again and only if its {@link DefinitionFingerprint} has changed.
+ * Since core expressions refer to definitions by identity, dependents that are kept must refer to the current definition.
+ * Thus, if the fingerprint has not changed, the old definition is put back into the state instead of the retypechecked one
+ * together with its old dependencies.
+ * A dependent that is reset by {@link #propagateUpdates} for the second time is reset together with all its dependents,
+ * so that mutually dependent definitions are not retypechecked against each other indefinitely.
+ */
 public class DependencyCollector implements DependencyListener {
   private final Map<TCReferable, Set<TCReferable>> myDependencies = new HashMap<>();
   private final Map<TCReferable, Set<TCReferable>> myReverseDependencies = new HashMap<>();
+  private final Map<TCReferable, UpdatedDefinition> myUpdatedDefinitions = new LinkedHashMap<>();
+  private final Set<TCReferable> myPropagatedDefinitions = new HashSet<>();
   private final TypecheckerState myState;
+  private boolean myIncremental;
+
+  private static class UpdatedDefinition {
+    final Definition definition;
+    final DefinitionFingerprint fingerprint;
+    final Set<TCReferable> dependencies;
+
+    UpdatedDefinition(Definition definition, DefinitionFingerprint fingerprint, Set<TCReferable> dependencies) {
+      this.definition = definition;
+      this.fingerprint = fingerprint;
+      this.dependencies = dependencies;
+    }
+  }
 
   public DependencyCollector(TypecheckerState state) {
     myState = state;
   }
 
+  public synchronized boolean isIncremental() {
+    return myIncremental;
+  }
+
+  public synchronized void setIncremental(boolean incremental) {
+    myIncremental = incremental;
+    if (!incremental) {
+      myUpdatedDefinitions.clear();
+      myPropagatedDefinitions.clear();
+    }
+  }
+
   @Override
-  public void dependsOn(TCReferable def1, boolean header, TCReferable def2) {
+  public synchronized void dependsOn(TCReferable def1, boolean header, TCReferable def2) {
     myDependencies.computeIfAbsent(def1, k -> new HashSet<>()).add(def2);
     myReverseDependencies.computeIfAbsent(def2, k -> new HashSet<>()).add(def1);
   }
 
   @Override
-  public Set<? extends TCReferable> update(TCReferable definition) {
+  public synchronized Set<? extends TCReferable> update(TCReferable definition) {
     if (myState.getTypechecked(definition) == null) {
       return Collections.emptySet();
     }
 
+    if (myIncremental) {
+      Set<TCReferable> updated = Collections.singleton(definition);
+      reset(updated, true);
+      return updated;
+    }
+
+    return updateTransitively(definition);
+  }
+
+  private Set<TCReferable> updateTransitively(TCReferable definition) {
     Set<TCReferable> updated = new HashSet<>();
     Stack<TCReferable> stack = new Stack<>();
     stack.push(definition);
@@ -37,24 +87,152 @@ public class DependencyCollector implements DependencyListener {
         continue;
       }
 
-      Set<TCReferable> dependencies = myDependencies.remove(toUpdate);
-      if (dependencies != null) {
-        for (TCReferable dependency : dependencies) {
-          Set<TCReferable> definitions = myReverseDependencies.get(dependency);
-          if (definitions != null) {
-            definitions.remove(definition);
-          }
-        }
-      }
-
+      removeDependencies(toUpdate);
       Set<TCReferable> reverseDependencies = myReverseDependencies.remove(toUpdate);
       if (reverseDependencies != null) {
         stack.addAll(reverseDependencies);
       }
     }
 
-    for (TCReferable updatedDef : updated) {
+    reset(updated, false);
+    return updated;
+  }
+
+  /**
+   * Resets dependents of updated definitions whose fingerprints have changed.
+   * If the fingerprint of a definition has not changed, the old definition is restored, so that its dependents remain valid.
+   * This is impossible if the old definition refers to definitions that were retypechecked since then
+   * or if some dependents were already typechecked against the new definition.
+   * In this case, dependents are reset as if the fingerprint has changed.
+   * This method should be invoked in the incremental mode after definitions returned by {@link #update} or by the previous invocation of this method are typechecked.
+   * It can also be invoked after each typechecked unit, so that the old definition is restored before other definitions are typechecked against the new one.
+   * Definitions that are not completely typechecked yet are checked again on the next invocation.
+   *
+   * @return the set of reset definitions; it is empty if there is nothing to typecheck.
+   */
+  public synchronized Set<? extends TCReferable> propagateUpdates() {
+    Map<TCReferable, UpdatedDefinition> typechecked = new LinkedHashMap<>();
+    for (Iterator<Map.Entry<TCReferable, UpdatedDefinition>> it = myUpdatedDefinitions.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<TCReferable, UpdatedDefinition> entry = it.next();
+      Definition definition = myState.getTypechecked(entry.getKey());
+      if (definition != null && definition.status().isTypeChecked()) {
+        typechecked.put(entry.getKey(), entry.getValue());
+        it.remove();
+      }
+    }
+
+    Set<TCReferable> dependents = new LinkedHashSet<>();
+    for (Map.Entry<TCReferable, UpdatedDefinition> entry : typechecked.entrySet()) {
+      Set<TCReferable> reverseDependencies = myReverseDependencies.get(entry.getKey());
+      if (reverseDependencies == null) {
+        reverseDependencies = Collections.emptySet();
+      }
+
+      Definition definition = myState.getTypechecked(entry.getKey());
+      DefinitionFingerprint fingerprint = DefinitionFingerprint.of(definition);
+      UpdatedDefinition updated = entry.getValue();
+      if (fingerprint != null && fingerprint.equals(updated.fingerprint) && Collections.disjoint(reverseDependencies, typechecked.keySet()) && isValid(updated)) {
+        restore(entry.getKey(), definition, updated);
+        continue;
+      }
+
+      for (TCReferable dependent : reverseDependencies) {
+        if (!typechecked.containsKey(dependent) && myState.getTypechecked(dependent) != null) {
+          dependents.add(dependent);
+        }
+      }
+    }
+
+    Set<TCReferable> result = new LinkedHashSet<>();
+    for (TCReferable dependent : dependents) {
+      if (myPropagatedDefinitions.add(dependent)) {
+        result.add(dependent);
+      }
+    }
+    reset(result, true);
+    for (TCReferable dependent : dependents) {
+      if (!result.contains(dependent) && myState.getTypechecked(dependent) != null) {
+        result.addAll(updateTransitively(dependent));
+      }
+    }
+
+    if (myUpdatedDefinitions.isEmpty()) {
+      myPropagatedDefinitions.clear();
+    }
+    return result;
+  }
+
+  /**
+   * Checks that the old version of a definition refers only to definitions from the state.
+   */
+  private boolean isValid(UpdatedDefinition updated) {
+    if (updated.definition == null || updated.fingerprint == null) {
+      return false;
+    }
+    for (Definition target : updated.fingerprint.getCallTargets()) {
+      if (target == updated.definition || target instanceof ClassField && ((ClassField) target).getParentClass() == updated.definition || target instanceof Constructor && ((Constructor) target).getDataType() == updated.definition) {
+        continue;
+      }
+      if (myState.getTypechecked(target.getReferable()) != target) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void restore(TCReferable referable, Definition newDefinition, UpdatedDefinition updated) {
+    NormalizationCache cache = myState.getNormalizationCache();
+    if (cache != null) {
+      cache.invalidate(newDefinition);
+    }
+
+    // The dependencies of the new definition were recorded when it was typechecked; the old one has its own
+    removeDependencies(referable);
+    for (TCReferable dependency : updated.dependencies) {
+      dependsOn(referable, false, dependency);
+    }
+
+    Definition oldDefinition = updated.definition;
+    myState.rewrite(referable, oldDefinition);
+    if (oldDefinition instanceof ClassDefinition) {
+      for (ClassField field : ((ClassDefinition) oldDefinition).getPersonalFields()) {
+        myState.rewrite(field.getReferable(), field);
+      }
+    } else if (oldDefinition instanceof DataDefinition) {
+      for (Constructor constructor : ((DataDefinition) oldDefinition).getConstructors()) {
+        myState.rewrite(constructor.getReferable(), constructor);
+      }
+    }
+  }
+
+  private void removeDependencies(TCReferable definition) {
+    Set<TCReferable> dependencies = myDependencies.remove(definition);
+    if (dependencies != null) {
+      for (TCReferable dependency : dependencies) {
+        Set<TCReferable> definitions = myReverseDependencies.get(dependency);
+        if (definitions != null) {
+          definitions.remove(definition);
+        }
+      }
+    }
+  }
+
+  private void reset(Set<TCReferable> definitions, boolean recordFingerprints) {
+    for (TCReferable updatedDef : definitions) {
+      if (recordFingerprints) {
+        Definition def = myState.getTypechecked(updatedDef);
+        if (def != null && !myUpdatedDefinitions.containsKey(updatedDef)) {
+          Set<TCReferable> dependencies = myDependencies.get(updatedDef);
+          myUpdatedDefinitions.put(updatedDef, new UpdatedDefinition(def, DefinitionFingerprint.of(def), dependencies == null ? Collections.emptySet() : new HashSet<>(dependencies)));
+        }
+        removeDependencies(updatedDef);
+      }
+
       Definition def = myState.reset(updatedDef);
+      NormalizationCache cache = myState.getNormalizationCache();
+      if (def != null && cache != null) {
+        cache.invalidate(def);
+      }
       if (def instanceof ClassDefinition) {
         for (ClassField field : ((ClassDefinition) def).getPersonalFields()) {
           myState.reset(field.getReferable());
@@ -65,7 +243,5 @@ public class DependencyCollector implements DependencyListener {
         }
       }
     }
-
-    return updated;
   }
 }
@@ -0,0 +1,206 @@
+package org.arend.typechecking.order.listener;
+
+import org.arend.naming.reference.TCReferable;
+import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.order.SCC;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.typecheckable.TypecheckingUnit;
+import org.arend.util.ComputationInterruptedException;
+import org.arend.util.Pair;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects units and SCCs found by an ordering together with dependencies between them
+ * and feeds them to another listener using several threads.
+ * A unit or an SCC is passed to the listener as soon as everything it depends on is processed.
+ * The listener must support concurrent invocations on independent units.
+ */
+public class ParallelOrderingListener implements OrderingListener, DependencyListener {
+  private final DependencyListener myDependencyListener;
+  private final List<Task> myTasks = new ArrayList<>();
+  private final Map<TCReferable, Set<TCReferable>> myDependencies = new HashMap<>();
+
+  public ParallelOrderingListener(DependencyListener dependencyListener) {
+    myDependencyListener = dependencyListener;
+  }
+
+  private static class Task {
+    final Object item;
+    final List<Concrete.Definition> definitions;
+    final List<Task> dependents = new ArrayList<>();
+    final AtomicInteger pending = new AtomicInteger();
+
+    Task(Object item, List<Concrete.Definition> definitions) {
+      this.item = item;
+      this.definitions = definitions;
+    }
+
+    void run(OrderingListener listener) {
+      if (item instanceof SCC) {
+        listener.sccFound((SCC) item);
+      } else {
+        //noinspection unchecked
+        Pair<TypecheckingUnit, Recursion> pair = (Pair<TypecheckingUnit, Recursion>) item;
+        listener.unitFound(pair.proj1, pair.proj2);
+      }
+    }
+  }
+
+  @Override
+  public void unitFound(TypecheckingUnit unit, Recursion recursion) {
+    myTasks.add(new Task(new Pair<>(unit, recursion), Collections.singletonList(unit.getDefinition())));
+  }
+
+  @Override
+  public void sccFound(SCC scc) {
+    List<Concrete.Definition> definitions = new ArrayList<>(scc.getUnits().size());
+    for (TypecheckingUnit unit : scc.getUnits()) {
+      definitions.add(unit.getDefinition());
+    }
+    myTasks.add(new Task(scc, definitions));
+  }
+
+  @Override
+  public void dependsOn(TCReferable def1, boolean header, TCReferable def2) {
+    myDependencies.computeIfAbsent(def1, k -> new HashSet<>()).add(def2);
+    myDependencyListener.dependsOn(def1, header, def2);
+  }
+
+  @Override
+  public Set<? extends TCReferable> update(TCReferable definition) {
+    return myDependencyListener.update(definition);
+  }
+
+  /**
+   * Computes the edges between collected tasks.
+   * A task may depend only on tasks found before it, so the sequential order is always a valid schedule.
+   * Besides direct dependencies, a task waits for every earlier task containing the same definition (a header is processed before its body)
+   * and for every earlier task containing a definition used by one of its dependencies since such definitions (for example, \\use \\coerce) modify the latter.
+   *
+   * @return the list of tasks without dependencies.
+   */
+  private List<Task> link() {
+    Map<TCReferable, List<Task>> tasksByDefinition = new HashMap<>();
+    Map<TCReferable, Concrete.Definition> concreteDefinitions = new HashMap<>();
+    List<Task> roots = new ArrayList<>();
+
+    for (Task task : myTasks) {
+      Set<Task> dependencies = new LinkedHashSet<>();
+      for (Concrete.Definition definition : task.definitions) {
+        addTasks(tasksByDefinition.get(definition.getData()), dependencies);
+        Set<TCReferable> defDependencies = myDependencies.get(definition.getData());
+        if (defDependencies != null) {
+          for (TCReferable dependency : defDependencies) {
+            addTasks(tasksByDefinition.get(dependency), dependencies);
+            Concrete.Definition concreteDependency = concreteDefinitions.get(dependency);
+            if (concreteDependency != null) {
+              for (TCReferable usedDefinition : concreteDependency.getUsedDefinitions()) {
+                addTasks(tasksByDefinition.get(usedDefinition), dependencies);
+              }
+            }
+          }
+        }
+      }
+
+      dependencies.remove(task);
+      for (Task dependency : dependencies) {
+        dependency.dependents.add(task);
+      }
+      task.pending.set(dependencies.size());
+      if (dependencies.isEmpty()) {
+        roots.add(task);
+      }
+
+      for (Concrete.Definition definition : task.definitions) {
+        tasksByDefinition.computeIfAbsent(definition.getData(), k -> new ArrayList<>()).add(task);
+        concreteDefinitions.put(definition.getData(), definition);
+      }
+    }
+
+    return roots;
+  }
+
+  private static void addTasks(List<Task> tasks, Set<Task> result) {
+    if (tasks != null) {
+      result.addAll(tasks);
+    }
+  }
+
+  /**
+   * Feeds collected units and SCCs to a listener.
+   *
+   * @param listener  a listener which will process units.
+   * @param threads   the number of worker threads.
+   *
+   * @return true if all of the units were processed, false if the computation was interrupted.
+   */
+  public boolean feed(OrderingListener listener, int threads) {
+    if (myTasks.isEmpty()) {
+      return true;
+    }
+
+    List<Task> roots = link();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch latch = new CountDownLatch(myTasks.size());
+    List<Throwable> exceptions = Collections.synchronizedList(new ArrayList<>());
+
+    class Runner implements Runnable {
+      private final Task myTask;
+
+      Runner(Task task) {
+        myTask = task;
+      }
+
+      @Override
+      public void run() {
+        try {
+          if (exceptions.isEmpty()) {
+            myTask.run(listener);
+          }
+        } catch (Throwable e) {
+          exceptions.add(e);
+        } finally {
+          for (Task dependent : myTask.dependents) {
+            if (dependent.pending.decrementAndGet() == 0) {
+              executor.execute(new Runner(dependent));
+            }
+          }
+          latch.countDown();
+        }
+      }
+    }
+
+    try {
+      for (Task root : roots) {
+        executor.execute(new Runner(root));
+      }
+      latch.await();
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      executor.shutdown();
+    }
+
+    for (Throwable exception : exceptions) {
+      if (exception instanceof ComputationInterruptedException) {
+        return false;
+      }
+    }
+    if (!exceptions.isEmpty()) {
+      Throwable exception = exceptions.get(0);
+      if (exception instanceof RuntimeException) {
+        throw (RuntimeException) exception;
+      }
+      if (exception instanceof Error) {
+        throw (Error) exception;
+      }
+      throw new IllegalStateException(exception);
+    }
+    return true;
+  }
+}
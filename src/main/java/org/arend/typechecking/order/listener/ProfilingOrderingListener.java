@@ -0,0 +1,79 @@
+package org.arend.typechecking.order.listener;
+
+import org.arend.core.definition.Definition;
+import org.arend.error.ErrorReporter;
+import org.arend.naming.reference.TCReferable;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.PartialComparator;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.typecheckable.provider.ConcreteProvider;
+
+import javax.annotation.Nullable;
+
+/**
+ * A typechecking listener which records typechecking of definitions in a {@link TypecheckingProfiler}.
+ * If the profiler is null, it behaves as {@link TypecheckingOrderingListener}.
+ */
+public class ProfilingOrderingListener extends TypecheckingOrderingListener {
+  private final TypecheckingProfiler myProfiler;
+
+  public ProfilingOrderingListener(InstanceProviderSet instanceProviderSet, TypecheckerState state, ConcreteProvider concreteProvider, ErrorReporter errorReporter, DependencyListener dependencyListener, PartialComparator<TCReferable> comparator, @Nullable TypecheckingProfiler profiler) {
+    super(instanceProviderSet, state, concreteProvider, errorReporter, dependencyListener, comparator);
+    myProfiler = profiler;
+  }
+
+  @Nullable
+  public TypecheckingProfiler getProfiler() {
+    return myProfiler;
+  }
+
+  @Override
+  public void typecheckingHeaderStarted(TCReferable definition) {
+    if (myProfiler != null) {
+      myProfiler.started(definition);
+    }
+  }
+
+  @Override
+  public void typecheckingBodyStarted(TCReferable definition) {
+    if (myProfiler != null) {
+      myProfiler.started(definition);
+    }
+  }
+
+  @Override
+  public void typecheckingUnitStarted(TCReferable definition) {
+    if (myProfiler != null) {
+      myProfiler.started(definition);
+    }
+  }
+
+  @Override
+  public void typecheckingHeaderFinished(TCReferable referable, Definition definition) {
+    if (myProfiler != null) {
+      myProfiler.finished(referable);
+    }
+  }
+
+  @Override
+  public void typecheckingBodyFinished(TCReferable referable, Definition definition) {
+    if (myProfiler != null) {
+      myProfiler.finished(referable);
+    }
+  }
+
+  @Override
+  public void typecheckingUnitFinished(TCReferable referable, Definition definition) {
+    if (myProfiler != null) {
+      myProfiler.finished(referable);
+    }
+  }
+
+  @Override
+  public void typecheckingInterrupted(TCReferable definition) {
+    if (myProfiler != null) {
+      myProfiler.interrupted(definition);
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package org.arend.typechecking.order.listener;
+
+/**
+ * Per-thread counters of the work done by the normalizer and the equation solver.
+ * Counters are also used to limit the number of normalization steps spent on a definition.
+ * A limit is set by {@link #start} and, when it is exhausted, the normalizer stops performing beta, iota, and delta reductions,
+ * so normalization terminates (with a possibly not normalized expression) and typechecking of the definition fails.
+ * A limit does not bound the depth of the stack, which grows with the size of terms, so deep normalization may overflow it before the limit is exhausted.
+ * Counters are incremented only after {@link #enable} is invoked, so they cost a single check otherwise.
+ */
+public final class TypecheckingCounters {
+  public enum Counter {
+    /** Applications of lambdas. */
+    BETA_STEPS,
+    /** Evaluations of case expressions. */
+    IOTA_STEPS,
+    /** Unfoldings of functions. */
+    DELTA_STEPS,
+    /** Operations on integer literals. */
+    ARITHMETIC_STEPS,
+    EQUATION_SOLVER_ITERATIONS;
+
+    public boolean isNormalizationStep() {
+      return this != EQUATION_SOLVER_ITERATIONS;
+    }
+  }
+
+  private static class State {
+    final long[] values = new long[ourCounters.length];
+    long remainingFuel = -1; // -1 if there is no limit
+    boolean exhausted;
+  }
+
+  private static final Counter[] ourCounters = Counter.values();
+  private static final ThreadLocal<State> ourState = ThreadLocal.withInitial(State::new);
+  private static volatile boolean ourEnabled;
+
+  private TypecheckingCounters() {
+  }
+
+  public static void enable() {
+    ourEnabled = true;
+  }
+
+  public static boolean isEnabled() {
+    return ourEnabled;
+  }
+
+  public static void increment(Counter counter) {
+    if (ourEnabled) {
+      ourState.get().values[counter.ordinal()]++;
+    }
+  }
+
+  /**
+   * Counts a normalization step which consumes fuel.
+   *
+   * @return true if the step can be performed, false if the limit is exhausted.
+   */
+  public static boolean step(Counter counter) {
+    if (!ourEnabled) {
+      return true;
+    }
+
+    State state = ourState.get();
+    if (state.remainingFuel == 0) {
+      state.exhausted = true;
+      return false;
+    }
+    state.values[counter.ordinal()]++;
+    if (state.remainingFuel > 0) {
+      state.remainingFuel--;
+    }
+    return true;
+  }
+
+  /**
+   * @return the value of a counter in the current thread.
+   */
+  public static long get(Counter counter) {
+    return ourState.get().values[counter.ordinal()];
+  }
+
+  /**
+   * Sets the limit of normalization steps in the current thread.
+   *
+   * @param fuel  the maximum number of steps or 0 if the number of steps is not limited.
+   */
+  public static void start(long fuel) {
+    State state = ourState.get();
+    state.remainingFuel = fuel > 0 ? fuel : -1;
+    state.exhausted = false;
+  }
+
+  /**
+   * Removes the limit of normalization steps in the current thread.
+   *
+   * @return true if the limit was exhausted since the last invocation of {@link #start}.
+   */
+  public static boolean finish() {
+    State state = ourState.get();
+    boolean exhausted = state.exhausted;
+    state.remainingFuel = -1;
+    state.exhausted = false;
+    return exhausted;
+  }
+
+  /**
+   * @return true if the limit of normalization steps is exhausted in the current thread.
+   */
+  public static boolean isExhausted() {
+    return ourEnabled && ourState.get().exhausted;
+  }
+}
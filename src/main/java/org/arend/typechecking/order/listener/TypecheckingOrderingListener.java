@@ -8,6 +8,7 @@ import org.arend.core.elimtree.Clause;
 import org.arend.core.expr.ClassCallExpression;
 import org.arend.core.expr.ErrorExpression;
 import org.arend.core.expr.PiExpression;
+import org.arend.core.expr.visitor.NormalizationCache;
 import org.arend.core.sort.Sort;
 import org.arend.error.CompositeErrorReporter;
 import org.arend.error.CountingErrorReporter;
@@ -46,17 +47,19 @@ import org.arend.util.ComputationInterruptedException;
 import org.arend.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class TypecheckingOrderingListener implements OrderingListener {
   private final TypecheckerState myState;
   private final DependencyListener myDependencyListener;
-  private final Map<GlobalReferable, Pair<CheckTypeVisitor,Boolean>> mySuspensions = new HashMap<>();
+  private final Map<GlobalReferable, Pair<CheckTypeVisitor,Boolean>> mySuspensions = new ConcurrentHashMap<>();
   private final ErrorReporter myErrorReporter;
   private final InstanceProviderSet myInstanceProviderSet;
   private final ConcreteProvider myConcreteProvider;
   private final PartialComparator<TCReferable> myComparator;
-  private boolean myTypecheckingHeaders = false;
-  private TCReferable myCurrentDefinition;
+  private TCReferable myCurrentDefinition; // used only to report interrupted definitions in the sequential mode
+  private boolean myParallel; // set while units are fed to worker threads; myCurrentDefinition is not updated then
+  private long myNormalizationLimit;
 
   public static CancellationIndicator CANCELLATION_INDICATOR = ThreadCancellationIndicator.INSTANCE;
 
@@ -86,6 +89,34 @@ public class TypecheckingOrderingListener implements OrderingListener {
     myComparator = ordering.getComparator();
   }
 
+  /**
+   * Limits the number of normalization steps performed while typechecking a definition (see {@link TypecheckingCounters}).
+   * If the limit is exceeded, an error is reported and the definition is marked as having errors.
+   * The limit bounds the number of steps but not the depth of recursion of the normalizer,
+   * so a definition can still cause {@link StackOverflowError} before the limit is exceeded.
+   *
+   * @param limit the maximum number of steps or 0 if the number of steps is not limited.
+   */
+  public void setNormalizationLimit(long limit) {
+    myNormalizationLimit = limit;
+    if (limit > 0) {
+      TypecheckingCounters.enable();
+    }
+  }
+
+  public long getNormalizationLimit() {
+    return myNormalizationLimit;
+  }
+
+  private void checkNormalizationLimit(Concrete.Definition definition, Definition typechecked) {
+    if (TypecheckingCounters.finish()) {
+      myErrorReporter.report(new ProxyError(definition.getData(), new TypecheckingError("Typechecking of '" + definition.getData().textRepresentation() + "' exceeded the limit of " + myNormalizationLimit + " normalization steps", definition)));
+      if (typechecked != null) {
+        typechecked.setStatus(typechecked.status().max(Definition.TypeCheckingStatus.HAS_ERRORS));
+      }
+    }
+  }
+
   public boolean typecheckDefinitions(final Collection<? extends Concrete.Definition> definitions) {
     try {
       Ordering ordering = new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, IdReferableConverter.INSTANCE, myState, myComparator, false);
@@ -124,6 +155,43 @@ public class TypecheckingOrderingListener implements OrderingListener {
     }
   }
 
+  /**
+   * Typechecks a library using several threads.
+   * The library is ordered first, then independent units are typechecked concurrently.
+   * The typechecker state, the error reporter, and the callbacks of this listener must be thread-safe.
+   *
+   * @param library  a library to typecheck.
+   * @param threads  the number of threads; if it is less than 2, the library is typechecked sequentially.
+   *
+   * @return true if typechecking was finished, false if it was interrupted.
+   */
+  public boolean typecheckLibrary(Library library, int threads) {
+    if (threads < 2) {
+      return typecheckLibrary(library);
+    }
+
+    ParallelOrderingListener collector = new ParallelOrderingListener(myDependencyListener);
+    try {
+      if (!library.orderModules(new Ordering(myInstanceProviderSet, myConcreteProvider, collector, collector, IdReferableConverter.INSTANCE, myState, myComparator, false))) {
+        return false;
+      }
+    } catch (ComputationInterruptedException ignored) {
+      return false;
+    }
+    myParallel = true;
+    try {
+      return collector.feed(this, threads);
+    } finally {
+      myParallel = false;
+    }
+  }
+
+  private void setCurrentDefinition(TCReferable definition) {
+    if (!myParallel) {
+      myCurrentDefinition = definition;
+    }
+  }
+
   public boolean typecheckCollected(CollectingOrderingListener collector) {
     try {
       collector.feed(this);
@@ -203,6 +271,15 @@ public class TypecheckingOrderingListener implements OrderingListener {
 
   @Override
   public void sccFound(SCC scc) {
+    NormalizationCache previous = NormalizationCache.setCurrent(myState.getNormalizationCache());
+    try {
+      sccFound(scc, false);
+    } finally {
+      NormalizationCache.setCurrent(previous);
+    }
+  }
+
+  private void sccFound(SCC scc, boolean typecheckingHeaders) {
     for (TypecheckingUnit unit : scc.getUnits()) {
       if (!TypecheckingUnit.hasHeader(unit.getDefinition())) {
         List<TCReferable> cycle = new ArrayList<>();
@@ -233,7 +310,7 @@ public class TypecheckingOrderingListener implements OrderingListener {
       }
     }
 
-    boolean ok = typecheckHeaders(scc);
+    boolean ok = typecheckHeaders(scc, typecheckingHeaders);
     List<Concrete.Definition> definitions = new ArrayList<>(scc.getUnits().size());
     for (TypecheckingUnit unit : scc.getUnits()) {
       if (!unit.isHeader()) {
@@ -252,11 +329,16 @@ public class TypecheckingOrderingListener implements OrderingListener {
       myErrorReporter.report(new CycleError(Collections.singletonList(unit.getDefinition().getData())));
       typecheckingUnitFinished(unit.getDefinition().getData(), newDefinition(unit.getDefinition()));
     } else {
-      typecheck(unit, recursion == Recursion.IN_BODY);
+      NormalizationCache previous = NormalizationCache.setCurrent(myState.getNormalizationCache());
+      try {
+        typecheck(unit, recursion == Recursion.IN_BODY);
+      } finally {
+        NormalizationCache.setCurrent(previous);
+      }
     }
   }
 
-  private boolean typecheckHeaders(SCC scc) {
+  private boolean typecheckHeaders(SCC scc, boolean typecheckingHeaders) {
     int numberOfHeaders = 0;
     TypecheckingUnit unit = null;
     for (TypecheckingUnit unit1 : scc.getUnits()) {
@@ -271,8 +353,9 @@ public class TypecheckingOrderingListener implements OrderingListener {
     }
 
     if (numberOfHeaders == 1) {
-      myCurrentDefinition = unit.getDefinition().getData();
-      typecheckingHeaderStarted(myCurrentDefinition);
+      setCurrentDefinition(unit.getDefinition().getData());
+      TypecheckingCounters.start(myNormalizationLimit);
+      typecheckingHeaderStarted(unit.getDefinition().getData());
 
       CountingErrorReporter countingErrorReporter = new CountingErrorReporter();
       CheckTypeVisitor visitor = new CheckTypeVisitor(myState, new LinkedHashMap<>(), new ProxyErrorReporter(unit.getDefinition().getData(), new CompositeErrorReporter(myErrorReporter, countingErrorReporter)), null);
@@ -286,12 +369,13 @@ public class TypecheckingOrderingListener implements OrderingListener {
         mySuspensions.put(unit.getDefinition().getData(), new Pair<>(visitor, oldTypechecked == null));
       }
 
+      checkNormalizationLimit(unit.getDefinition(), typechecked);
       typecheckingHeaderFinished(unit.getDefinition().getData(), typechecked);
-      myCurrentDefinition = null;
+      setCurrentDefinition(null);
       return typechecked.status().headerIsOK();
     }
 
-    if (myTypecheckingHeaders) {
+    if (typecheckingHeaders) {
       List<Concrete.Definition> cycle = new ArrayList<>(scc.getUnits().size());
       for (TypecheckingUnit unit1 : scc.getUnits()) {
         cycle.add(unit1.getDefinition());
@@ -305,8 +389,18 @@ public class TypecheckingOrderingListener implements OrderingListener {
       return false;
     }
 
-    myTypecheckingHeaders = true;
-    Ordering ordering = new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, IdReferableConverter.INSTANCE, myState, myComparator, true);
+    OrderingListener headersListener = new OrderingListener() {
+      @Override
+      public void unitFound(TypecheckingUnit unit, Recursion recursion) {
+        TypecheckingOrderingListener.this.unitFound(unit, recursion);
+      }
+
+      @Override
+      public void sccFound(SCC scc) {
+        TypecheckingOrderingListener.this.sccFound(scc, true);
+      }
+    };
+    Ordering ordering = new Ordering(myInstanceProviderSet, myConcreteProvider, headersListener, myDependencyListener, IdReferableConverter.INSTANCE, myState, myComparator, true);
     boolean ok = true;
     for (TypecheckingUnit unit1 : scc.getUnits()) {
       if (unit1.isHeader()) {
@@ -317,7 +411,6 @@ public class TypecheckingOrderingListener implements OrderingListener {
         }
       }
     }
-    myTypecheckingHeaders = false;
     return ok;
   }
 
@@ -340,8 +433,9 @@ public class TypecheckingOrderingListener implements OrderingListener {
 
     DefinitionTypechecking typechecking = new DefinitionTypechecking(null);
     for (Concrete.Definition definition : orderedDefinitions) {
-      myCurrentDefinition = definition.getData();
-      typecheckingBodyStarted(myCurrentDefinition);
+      setCurrentDefinition(definition.getData());
+      TypecheckingCounters.start(myNormalizationLimit);
+      typecheckingBodyStarted(definition.getData());
 
       Definition def = myState.getTypechecked(definition.getData());
       Pair<CheckTypeVisitor, Boolean> pair = mySuspensions.remove(definition.getData());
@@ -354,17 +448,20 @@ public class TypecheckingOrderingListener implements OrderingListener {
         }
       }
 
+      checkNormalizationLimit(definition, def);
       typecheckingBodyFinished(definition.getData(), def);
-      myCurrentDefinition = null;
+      setCurrentDefinition(null);
     }
 
     if (!functionDefinitions.isEmpty()) {
       FindDefCallVisitor visitor = new FindDefCallVisitor(dataDefinitions);
       Iterator<Map.Entry<FunctionDefinition, Concrete.Definition>> it = functionDefinitions.entrySet().iterator();
+      boolean removedBodies = false;
       while (it.hasNext()) {
         Map.Entry<FunctionDefinition, Concrete.Definition> entry = it.next();
         visitor.findDefinition(entry.getKey().getBody());
         if (visitor.getFoundDefinition() != null) {
+          removedBodies = true;
           entry.getKey().setBody(null);
           if (entry.getKey().status().headerIsOK()) {
             entry.getKey().setStatus(Definition.TypeCheckingStatus.BODY_HAS_ERRORS);
@@ -375,6 +472,14 @@ public class TypecheckingOrderingListener implements OrderingListener {
         }
       }
 
+      if (removedBodies) {
+        List<Definition> typecheckedDefinitions = new ArrayList<>(definitions.size());
+        for (Concrete.Definition definition : definitions) {
+          typecheckedDefinitions.add(myState.getTypechecked(definition.getData()));
+        }
+        invalidateNormalForms(typecheckedDefinitions);
+      }
+
       if (!functionDefinitions.isEmpty()) {
         checkRecursiveFunctions(functionDefinitions, clausesMap);
       }
@@ -390,28 +495,32 @@ public class TypecheckingOrderingListener implements OrderingListener {
       if (pair == null) {
         return;
       }
-      myCurrentDefinition = unit.getDefinition().getData();
-      typecheckingBodyStarted(myCurrentDefinition);
-      typechecked = myState.getTypechecked(myCurrentDefinition);
+      setCurrentDefinition(unit.getDefinition().getData());
+      TypecheckingCounters.start(myNormalizationLimit);
+      typecheckingBodyStarted(unit.getDefinition().getData());
+      typechecked = myState.getTypechecked(unit.getDefinition().getData());
       clauses = new DefinitionTypechecking(pair.proj1).typecheckBody(typechecked, unit.getDefinition(), Collections.emptySet(), pair.proj2);
     } else {
       CheckTypeVisitor checkTypeVisitor = new CheckTypeVisitor(myState, new LinkedHashMap<>(), new ProxyErrorReporter(unit.getDefinition().getData(), myErrorReporter), null);
       checkTypeVisitor.setInstancePool(new GlobalInstancePool(myState, myInstanceProviderSet.get(unit.getDefinition().getData()), checkTypeVisitor));
       DesugarVisitor.desugar(unit.getDefinition(), myConcreteProvider, checkTypeVisitor.getErrorReporter());
       if (isLevel) {
-        myCurrentDefinition = unit.getDefinition().getData();
-        typecheckingHeaderStarted(myCurrentDefinition);
+        setCurrentDefinition(unit.getDefinition().getData());
+        TypecheckingCounters.start(myNormalizationLimit);
+        typecheckingHeaderStarted(unit.getDefinition().getData());
         Definition oldTypechecked = myState.getTypechecked(unit.getDefinition().getData());
         mySuspensions.put(unit.getDefinition().getData(), new Pair<>(checkTypeVisitor, oldTypechecked == null));
         typechecked = new DefinitionTypechecking(checkTypeVisitor).typecheckHeader(oldTypechecked, checkTypeVisitor.getInstancePool(), unit.getDefinition(), false);
+        checkNormalizationLimit(unit.getDefinition(), typechecked);
         typecheckingHeaderFinished(unit.getDefinition().getData(), typechecked);
-        myCurrentDefinition = null;
+        setCurrentDefinition(null);
         return;
       } else {
-        myCurrentDefinition = unit.getDefinition().getData();
-        typecheckingUnitStarted(myCurrentDefinition);
+        setCurrentDefinition(unit.getDefinition().getData());
+        TypecheckingCounters.start(myNormalizationLimit);
+        typecheckingUnitStarted(unit.getDefinition().getData());
         clauses = unit.getDefinition().accept(new DefinitionTypechecking(checkTypeVisitor), recursive);
-        typechecked = myState.getTypechecked(myCurrentDefinition);
+        typechecked = myState.getTypechecked(unit.getDefinition().getData());
       }
     }
 
@@ -419,12 +528,13 @@ public class TypecheckingOrderingListener implements OrderingListener {
       checkRecursiveFunctions(Collections.singletonMap((FunctionDefinition) typechecked, unit.getDefinition()), Collections.singletonMap((FunctionDefinition) typechecked, clauses));
     }
 
+    checkNormalizationLimit(unit.getDefinition(), typechecked);
     if (isLevel && !unit.isHeader()) {
       typecheckingBodyFinished(unit.getDefinition().getData(), typechecked);
     } else {
       typecheckingUnitFinished(unit.getDefinition().getData(), typechecked);
     }
-    myCurrentDefinition = null;
+    setCurrentDefinition(null);
   }
 
   private void checkRecursiveFunctions(Map<FunctionDefinition,Concrete.Definition> definitions, Map<FunctionDefinition,List<Clause>> clauses) {
@@ -448,9 +558,19 @@ public class TypecheckingOrderingListener implements OrderingListener {
         definition.setStatus(Definition.TypeCheckingStatus.BODY_HAS_ERRORS);
         definition.setBody(null);
       }
+      invalidateNormalForms(definitions.keySet());
       for (Map.Entry<Definition, Set<RecursiveBehavior<Definition>>> entry : callCategory.myErrorInfo.entrySet()) {
         myErrorReporter.report(new TerminationCheckError(entry.getKey(), Collections.singleton(entry.getKey()), entry.getValue()));
       }
     }
   }
+
+  // Normal forms computed while the bodies were typechecked may reduce through bodies that were removed
+  private void invalidateNormalForms(Collection<? extends Definition> definitions) {
+    NormalizationCache cache = myState.getNormalizationCache();
+    if (cache != null) {
+      cache.invalidate(definitions);
+    }
+  }
+
 }
@@ -0,0 +1,290 @@
+package org.arend.typechecking.order.listener;
+
+import org.arend.naming.reference.TCReferable;
+import org.arend.util.FullName;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures wall time, CPU time, allocated bytes, normalization steps, and iterations of the equation solver
+ * spent on typechecking of definitions.
+ * Measurements of a definition are started by {@link #started} and stopped by {@link #finished} which must be invoked in the same thread.
+ * The header and the body of a definition are accumulated in the same profile.
+ * CPU time and allocated bytes are zero if the JVM does not support their measurement.
+ */
+public class TypecheckingProfiler {
+  private static final TypecheckingCounters.Counter[] COUNTERS = TypecheckingCounters.Counter.values();
+
+  private final Map<TCReferable, Profile> myProfiles = new ConcurrentHashMap<>();
+  private final ThreadLocal<Deque<Frame>> myFrames = ThreadLocal.withInitial(ArrayDeque::new);
+  private final ThreadMXBean myThreadBean = ManagementFactory.getThreadMXBean();
+  private final boolean myMeasureCpuTime;
+  private final boolean myMeasureAllocation;
+
+  public TypecheckingProfiler() {
+    TypecheckingCounters.enable();
+    myMeasureCpuTime = myThreadBean.isCurrentThreadCpuTimeSupported() && myThreadBean.isThreadCpuTimeEnabled();
+    myMeasureAllocation = myThreadBean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) myThreadBean).isThreadAllocatedMemorySupported() && ((com.sun.management.ThreadMXBean) myThreadBean).isThreadAllocatedMemoryEnabled();
+  }
+
+  public static class Profile {
+    private final String myModule;
+    private final String myName;
+    private long myWallTime;
+    private long myCpuTime;
+    private long myAllocatedBytes;
+    private final long[] myCounters = new long[COUNTERS.length];
+
+    Profile(String module, String name) {
+      myModule = module;
+      myName = name;
+    }
+
+    public String getModule() {
+      return myModule;
+    }
+
+    /**
+     * @return the name of a definition or the name of a module.
+     */
+    public String getName() {
+      return myName;
+    }
+
+    /**
+     * @return wall time in nanoseconds.
+     */
+    public synchronized long getWallTime() {
+      return myWallTime;
+    }
+
+    /**
+     * @return CPU time in nanoseconds.
+     */
+    public synchronized long getCpuTime() {
+      return myCpuTime;
+    }
+
+    public synchronized long getAllocatedBytes() {
+      return myAllocatedBytes;
+    }
+
+    public synchronized long getCounter(TypecheckingCounters.Counter counter) {
+      return myCounters[counter.ordinal()];
+    }
+
+    /**
+     * @return the total number of normalization steps of all kinds.
+     */
+    public synchronized long getNormalizationSteps() {
+      long result = 0;
+      for (TypecheckingCounters.Counter counter : COUNTERS) {
+        if (counter.isNormalizationStep()) {
+          result += myCounters[counter.ordinal()];
+        }
+      }
+      return result;
+    }
+
+    public long getSolverIterations() {
+      return getCounter(TypecheckingCounters.Counter.EQUATION_SOLVER_ITERATIONS);
+    }
+
+    synchronized void add(long wallTime, long cpuTime, long allocatedBytes, long[] counters) {
+      myWallTime += wallTime;
+      myCpuTime += cpuTime;
+      myAllocatedBytes += allocatedBytes;
+      for (int i = 0; i < counters.length; i++) {
+        myCounters[i] += counters[i];
+      }
+    }
+
+    void add(Profile profile) {
+      long[] counters;
+      synchronized (profile) {
+        counters = profile.myCounters.clone();
+      }
+      add(profile.getWallTime(), profile.getCpuTime(), profile.getAllocatedBytes(), counters);
+    }
+  }
+
+  private static class Frame {
+    final TCReferable referable;
+    final long wallTime;
+    final long cpuTime;
+    final long allocatedBytes;
+    final long[] counters;
+
+    Frame(TCReferable referable, long wallTime, long cpuTime, long allocatedBytes, long[] counters) {
+      this.referable = referable;
+      this.wallTime = wallTime;
+      this.cpuTime = cpuTime;
+      this.allocatedBytes = allocatedBytes;
+      this.counters = counters;
+    }
+  }
+
+  private static long[] getCounters() {
+    long[] counters = new long[COUNTERS.length];
+    for (TypecheckingCounters.Counter counter : COUNTERS) {
+      counters[counter.ordinal()] = TypecheckingCounters.get(counter);
+    }
+    return counters;
+  }
+
+  private long getCpuTime() {
+    return myMeasureCpuTime ? myThreadBean.getCurrentThreadCpuTime() : 0;
+  }
+
+  private long getAllocatedBytes() {
+    return myMeasureAllocation ? ((com.sun.management.ThreadMXBean) myThreadBean).getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+  }
+
+  public void started(TCReferable referable) {
+    myFrames.get().push(new Frame(referable, System.nanoTime(), getCpuTime(), getAllocatedBytes(), getCounters()));
+  }
+
+  /**
+   * Stops the measurement of a definition.
+   * Measurements of nested definitions which were not finished are discarded.
+   */
+  public void finished(TCReferable referable) {
+    long wallTime = System.nanoTime();
+    long cpuTime = getCpuTime();
+    long allocatedBytes = getAllocatedBytes();
+    long[] counters = getCounters();
+
+    Deque<Frame> frames = myFrames.get();
+    Frame frame = pop(frames, referable);
+    if (frame == null) {
+      return;
+    }
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] -= frame.counters[i];
+    }
+    myProfiles.computeIfAbsent(referable, ref -> {
+      FullName fullName = new FullName(ref);
+      return new Profile(fullName.modulePath == null ? "" : fullName.modulePath.toString(), fullName.longName.toString());
+    }).add(
+      wallTime - frame.wallTime,
+      cpuTime - frame.cpuTime,
+      allocatedBytes - frame.allocatedBytes,
+      counters);
+  }
+
+  /**
+   * Discards the measurement of an interrupted definition.
+   */
+  public void interrupted(TCReferable referable) {
+    pop(myFrames.get(), referable);
+  }
+
+  private static Frame pop(Deque<Frame> frames, TCReferable referable) {
+    for (Frame frame : frames) {
+      if (frame.referable == referable) {
+        while (frames.pop() != frame) {
+          // discard unfinished nested measurements
+        }
+        return frame;
+      }
+    }
+    return null;
+  }
+
+  private static final Comparator<Profile> COMPARATOR = Comparator.comparingLong(Profile::getWallTime).reversed().thenComparing(Profile::getName);
+
+  /**
+   * @return profiles of typechecked definitions sorted by wall time in descending order.
+   */
+  public List<Profile> getDefinitionProfiles() {
+    List<Profile> result = new ArrayList<>(myProfiles.values());
+    result.sort(COMPARATOR);
+    return result;
+  }
+
+  /**
+   * @return profiles of modules sorted by wall time in descending order.
+   *         The profile of a module is the sum of profiles of its definitions.
+   */
+  public List<Profile> getModuleProfiles() {
+    Map<String, Profile> modules = new HashMap<>();
+    for (Profile profile : myProfiles.values()) {
+      modules.computeIfAbsent(profile.getModule(), module -> new Profile(module, module)).add(profile);
+    }
+    List<Profile> result = new ArrayList<>(modules.values());
+    result.sort(COMPARATOR);
+    return result;
+  }
+
+  public void writeJson(Appendable out) throws IOException {
+    out.append("{\n");
+    writeJson(out, "modules", getModuleProfiles(), false);
+    out.append(",\n");
+    writeJson(out, "definitions", getDefinitionProfiles(), true);
+    out.append("\n}\n");
+  }
+
+  private static void writeJson(Appendable out, String key, List<Profile> profiles, boolean withModule) throws IOException {
+    out.append("  \"").append(key).append("\": [");
+    for (int i = 0; i < profiles.size(); i++) {
+      Profile profile = profiles.get(i);
+      out.append(i == 0 ? "\n    {" : ",\n    {");
+      out.append("\"name\": ").append(quote(profile.getName()));
+      if (withModule) {
+        out.append(", \"module\": ").append(quote(profile.getModule()));
+      }
+      out.append(", \"wallTimeNanos\": ").append(Long.toString(profile.getWallTime()))
+        .append(", \"cpuTimeNanos\": ").append(Long.toString(profile.getCpuTime()))
+        .append(", \"allocatedBytes\": ").append(Long.toString(profile.getAllocatedBytes()))
+        .append(", \"normalizationSteps\": ").append(Long.toString(profile.getNormalizationSteps()))
+        .append(", \"betaSteps\": ").append(Long.toString(profile.getCounter(TypecheckingCounters.Counter.BETA_STEPS)))
+        .append(", \"iotaSteps\": ").append(Long.toString(profile.getCounter(TypecheckingCounters.Counter.IOTA_STEPS)))
+        .append(", \"deltaSteps\": ").append(Long.toString(profile.getCounter(TypecheckingCounters.Counter.DELTA_STEPS)))
+        .append(", \"arithmeticSteps\": ").append(Long.toString(profile.getCounter(TypecheckingCounters.Counter.ARITHMETIC_STEPS)))
+        .append(", \"solverIterations\": ").append(Long.toString(profile.getSolverIterations()))
+        .append("}");
+    }
+    out.append(profiles.isEmpty() ? "]" : "\n  ]");
+  }
+
+  private static String quote(String str) {
+    StringBuilder builder = new StringBuilder(str.length() + 2).append('"');
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\').append(c);
+      } else if (c < 0x20) {
+        builder.append(String.format("\\u%04x", (int) c));
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.append('"').toString();
+  }
+
+  /**
+   * Prints the most expensive modules and definitions.
+   *
+   * @param limit the maximum number of modules and definitions to print.
+   */
+  public void printSummary(PrintStream out, int limit) {
+    printSummary(out, "modules", getModuleProfiles(), limit);
+    printSummary(out, "definitions", getDefinitionProfiles(), limit);
+  }
+
+  private static void printSummary(PrintStream out, String title, List<Profile> profiles, int limit) {
+    out.println("Most expensive " + title + " (wall ms, cpu ms, allocated MB, normalization steps, solver iterations):");
+    for (int i = 0; i < profiles.size() && i < limit; i++) {
+      Profile profile = profiles.get(i);
+      out.println(String.format("  %10.1f %10.1f %10.1f %12d %12d  %s",
+        profile.getWallTime() / 1e6, profile.getCpuTime() / 1e6, profile.getAllocatedBytes() / 1e6,
+        profile.getNormalizationSteps(), profile.getSolverIterations(),
+        profile.getModule().equals(profile.getName()) ? profile.getName() : profile.getModule() + "::" + profile.getName()));
+    }
+  }
+}
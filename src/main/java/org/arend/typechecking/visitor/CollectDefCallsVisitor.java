@@ -46,11 +46,8 @@ public class CollectDefCallsVisitor extends VoidConcreteExpressionVisitor<Void>
         if (!ignoreFirstParameter) {
           LocatedReferable fieldParent = referable.getLocatedReferableParent();
           if (fieldParent instanceof ClassReferable) {
-            for (Concrete.FunctionDefinition instance : myInstanceProvider.getInstances()) {
-              Referable ref = instance.getReferenceInType();
-              if (ref instanceof ClassReferable && ((ClassReferable) ref).isSubClassOf((ClassReferable) fieldParent)) {
-                myDeque.push(instance.getData());
-              }
+            for (Concrete.FunctionDefinition instance : myInstanceProvider.getIndex().getInstances((ClassReferable) fieldParent)) {
+              myDeque.push(instance.getData());
             }
           }
         }
@@ -85,11 +82,8 @@ public class CollectDefCallsVisitor extends VoidConcreteExpressionVisitor<Void>
   }
 
   private void addClassInstances(TCClassReferable classRef) {
-    for (Concrete.FunctionDefinition instance : myInstanceProvider.getInstances()) {
-      Referable ref = instance.getReferenceInType();
-      if (ref instanceof ClassReferable && ((ClassReferable) ref).isSubClassOf(classRef)) {
-        myDeque.push(instance.getData());
-      }
+    for (Concrete.FunctionDefinition instance : myInstanceProvider.getIndex().getInstances(classRef)) {
+      myDeque.push(instance.getData());
     }
   }
 
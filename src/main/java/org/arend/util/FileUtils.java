@@ -13,6 +13,7 @@ public class FileUtils {
   public static final String EXTENSION = ".ard";
   public static final String SERIALIZED_EXTENSION = ".arc";
   public static final String LIBRARY_CONFIG_FILE = "arend.yaml";
+  public static final String BINARY_BUNDLE_FILE = "modules.arcb";
 
   private static Path baseFile(Path root, ModulePath modulePath) {
     return root.resolve(Paths.get("", modulePath.toArray()));
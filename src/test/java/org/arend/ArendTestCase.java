@@ -15,7 +15,7 @@ import org.arend.naming.scope.Scope;
 import org.arend.prelude.Prelude;
 import org.arend.prelude.PreludeFileLibrary;
 import org.arend.term.prettyprint.PrettyPrinterConfig;
-import org.arend.typechecking.SimpleTypecheckerState;
+import org.arend.typechecking.ConcurrentTypecheckerState;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
 import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
@@ -39,7 +39,7 @@ public abstract class ArendTestCase {
   protected Library preludeLibrary;
   protected ModuleScopeProvider moduleScopeProvider;
 
-  protected final TypecheckerState typecheckerState = new SimpleTypecheckerState();
+  protected final TypecheckerState typecheckerState = new ConcurrentTypecheckerState();
   protected final List<GeneralError> errorList = new ArrayList<>();
   protected final ListErrorReporter errorReporter = new ListErrorReporter(errorList);
   protected final TypecheckingOrderingListener typechecking = new TypecheckingOrderingListener(new InstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, errorReporter, PositionComparator.INSTANCE);
@@ -9,12 +9,15 @@ import org.arend.core.sort.Sort;
 import org.arend.typechecking.TypeCheckingTestCase;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 
 import static org.arend.core.expr.ExpressionFactory.Suc;
 import static org.arend.core.expr.ExpressionFactory.Zero;
 import static org.arend.typechecking.Matchers.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class ExtensionsTest extends TypeCheckingTestCase {
@@ -362,4 +365,37 @@ public class ExtensionsTest extends TypeCheckingTestCase {
       "\\func f (a : A 1) : A 1 => \\new B { | A => a }", 2);
     assertThatErrorsAre(fieldsImplementation(true, Collections.singletonList(get("A.x"))), typeMismatchError());
   }
+
+  @Test
+  public void ancestors() {
+    typeCheckModule(
+      "\\class Monoid (E : \\Set0)\n" +
+      "\\class Group \\extends Monoid\n" +
+      "\\class AbGroup \\extends Group\n" +
+      "\\class Ring \\extends AbGroup, Monoid");
+    ClassDefinition monoid = (ClassDefinition) getDefinition("Monoid");
+    ClassDefinition group = (ClassDefinition) getDefinition("Group");
+    ClassDefinition ring = (ClassDefinition) getDefinition("Ring");
+    assertEquals(new HashSet<>(Arrays.asList(monoid, group, getDefinition("AbGroup"))), ring.getAncestors());
+    assertTrue(ring.isSubClassOf(monoid));
+    assertTrue(ring.isSubClassOf(ring));
+    assertFalse(group.isSubClassOf(ring));
+  }
+
+  @Test
+  public void ancestorsOfChangedSuperClass() {
+    typeCheckModule(
+      "\\class Semigroup (E : \\Set0)\n" +
+      "\\class Monoid (E : \\Set0)\n" +
+      "\\class Group \\extends Monoid");
+    ClassDefinition semigroup = (ClassDefinition) getDefinition("Semigroup");
+    ClassDefinition monoid = (ClassDefinition) getDefinition("Monoid");
+    ClassDefinition group = (ClassDefinition) getDefinition("Group");
+    assertFalse(monoid.isSubClassOf(semigroup));
+    monoid.addSuperClass(semigroup);
+    assertTrue(monoid.isSubClassOf(semigroup));
+    assertFalse(group.isSubClassOf(semigroup));
+    group.updateAncestors();
+    assertTrue(group.isSubClassOf(semigroup));
+  }
 }
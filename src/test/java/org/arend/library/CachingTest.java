@@ -1,6 +1,13 @@
 package org.arend.library;
 
+import org.arend.core.definition.ClassDefinition;
 import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.elimtree.ElimTree;
+import org.arend.core.expr.IntegerExpression;
+import org.arend.core.expr.SmallIntegerExpression;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.core.sort.Sort;
 import org.arend.naming.reference.converter.IdReferableConverter;
 import org.arend.source.Source;
 import org.arend.term.group.ChildGroup;
@@ -8,8 +15,11 @@ import org.arend.term.group.Group;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
+import static org.arend.ExpressionFactory.FunCall;
 import static org.arend.module.ModulePath.moduleName;
 import static org.arend.typechecking.Matchers.*;
 import static org.hamcrest.CoreMatchers.is;
@@ -45,6 +55,28 @@ public class CachingTest extends LibraryTestCase {
     assertThat(typecheckerState.getTypechecked(get(aClass.getGroupScope(), "b2")).status(), is(equalTo(Definition.TypeCheckingStatus.MAY_BE_TYPE_CHECKED_WITH_WARNINGS)));
   }
 
+  @Test
+  public void ancestorsSerialization() {
+    library.addModule(moduleName("A"),
+        "\\class C \\extends B\n" +
+        "\\class B \\extends A\n" +
+        "\\class A (E : \\Set0)");
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    assertThat(errorList, is(empty()));
+
+    libraryManager.unloadLibrary(library);
+    assertTrue(libraryManager.loadLibrary(library));
+    ChildGroup aGroup = library.getModuleGroup(moduleName("A"));
+    assertThat(aGroup, is(notNullValue()));
+
+    ClassDefinition c = (ClassDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "C"));
+    Definition b = typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "B"));
+    Definition a = typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "A"));
+    assertEquals(new HashSet<>(Arrays.asList(b, a)), c.getAncestors());
+  }
+
   @Test
   public void circularDependencies() {
     library.addModule(moduleName("A"), "\\import B() \\func a (n : Nat) : Nat | zero => zero | suc n => B.b n");
@@ -271,4 +303,48 @@ public class CachingTest extends LibraryTestCase {
     assertThat(sourceB, is(notNullValue()));
     assertTrue(sourceB.isAvailable());
   }
+
+  @Test
+  public void lazyBody() {
+    library.addModule(moduleName("A"),
+      "\\func f (n : Nat) : Nat\n" +
+      "  | 0 => 1\n" +
+      "  | suc n => f n");
+    libraryManager.loadLibrary(library);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    assertThat(errorList, is(empty()));
+    libraryManager.unloadLibrary(library);
+
+    assertTrue(libraryManager.loadLibrary(library));
+    ChildGroup aGroup = library.getModuleGroup(moduleName("A"));
+    assertThat(aGroup, is(notNullValue()));
+    FunctionDefinition f = (FunctionDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "f"));
+    assertThat(f.getBody(), is(instanceOf(ElimTree.class)));
+    assertEquals(1, FunCall(f, Sort.SET0, new SmallIntegerExpression(5)).normalize(NormalizeVisitor.Mode.WHNF).cast(IntegerExpression.class).getBigInteger().intValue());
+  }
+
+  @Test
+  public void parallelLoading() {
+    library.addModule(moduleName("A"), "\\func a (n : Nat) : Nat | zero => 1 | suc n => suc (a n)");
+    library.addModule(moduleName("B"), "\\import A \\func b => a 2");
+    library.addModule(moduleName("C"), "\\import A \\import D() \\func c (n : Nat) : Nat | zero => a 3 | suc n => D.d n");
+    library.addModule(moduleName("D"), "\\import C() \\func d (n : Nat) : Nat | zero => 0 | suc n => C.c n");
+    library.addModule(moduleName("E"), "\\import B \\import C \\func e => b Nat.+ c 0");
+    libraryManager.loadLibrary(library);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdateModules(errorReporter);
+    assertThat(errorList, is(empty()));
+    libraryManager.unloadLibrary(library);
+
+    libraryManager.setLoadingThreads(4);
+    assertTrue(libraryManager.loadLibrary(library));
+    assertThat(errorList, is(empty()));
+    assertThat(library.getUpdatedModules(), is(empty()));
+    ChildGroup eGroup = library.getModuleGroup(moduleName("E"));
+    assertThat(eGroup, is(notNullValue()));
+    FunctionDefinition e = (FunctionDefinition) typecheckerState.getTypechecked(get(eGroup.getGroupScope(), "e"));
+    assertThat(e.status(), is(Definition.TypeCheckingStatus.NO_ERRORS));
+    assertEquals(7, FunCall(e, Sort.SET0).normalize(NormalizeVisitor.Mode.WHNF).cast(IntegerExpression.class).getBigInteger().intValue());
+  }
 }
@@ -1,11 +1,25 @@
 package org.arend.library;
 
+import org.arend.core.definition.Definition;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
 import org.arend.module.ModulePath;
+import org.arend.naming.reference.TCReferable;
+import org.arend.naming.scope.LexicalScope;
+import org.arend.naming.scope.Scope;
 import org.arend.source.Source;
 import org.arend.source.SourceLoader;
+import org.arend.term.concrete.Concrete;
 import org.arend.term.group.Group;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import static org.arend.module.ModulePath.moduleName;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
@@ -70,4 +84,106 @@ public class LibraryLoadingTest extends LibraryTestCase {
     assertThat(library.getModuleGroup(modulePath), is(nullValue()));
     assertThat(errorList, is(not(empty())));
   }
+
+  @Test
+  public void parallelLoading() {
+    library.addModule(moduleName("A"), "\\class C (X : \\Set) | x : X \\func f => 0");
+    library.addModule(moduleName("B"), "\\import A \\instance NatC : C Nat | x => f");
+    library.addModule(moduleName("D"), "\\import A \\import B \\func g : Nat => x {NatC}");
+    library.addModule(moduleName("E"), "\\import D \\func h => g");
+    library.addModule(moduleName("F"), "hello world");
+    libraryManager.setLoadingThreads(4);
+    assertTrue(libraryManager.loadLibrary(library));
+    assertThat(errorList, hasSize(1));
+    assertThat(library.getModuleGroup(moduleName("E")), is(notNullValue()));
+    assertThat(library.getModuleGroup(moduleName("F")), is(nullValue()));
+
+    errorList.clear();
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, containsErrors(0));
+  }
+
+  @Test
+  public void importedInstancesAreShared() {
+    library.addModule(moduleName("A"), "\\class C (X : \\Set) | x : X \\instance NatC : C Nat | x => 0");
+    library.addModule(moduleName("B"), "\\import A \\func f : Nat => x");
+    library.addModule(moduleName("D"), "\\import A \\func g => 0 \\where \\instance NatD : C Nat | x => 1");
+    assertTrue(libraryManager.loadLibrary(library));
+    assertThat(errorList, containsErrors(0));
+
+    TCReferable f = (TCReferable) LexicalScope.opened(library.getModuleGroup(moduleName("B"))).resolveName("f");
+    TCReferable g = (TCReferable) LexicalScope.opened(library.getModuleGroup(moduleName("D"))).resolveName("g");
+    List<? extends Concrete.FunctionDefinition> instancesF = libraryManager.getInstanceProviderSet().get(f).getInstances();
+    List<? extends Concrete.FunctionDefinition> instancesG = libraryManager.getInstanceProviderSet().get(g).getInstances();
+    assertThat(instancesF, hasSize(1));
+    assertThat(instancesG, hasSize(2));
+    assertThat(instancesG.get(0), is(sameInstance(instancesF.get(0))));
+    assertThat(new ArrayList<>(instancesG), contains(instancesG.get(0), instancesG.get(1)));
+
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, containsErrors(0));
+  }
+
+  @Test
+  public void reloadModules() {
+    library.addModule(moduleName("A"), "\\func f => 0");
+    library.addModule(moduleName("B"), "\\import A \\func g => f");
+    library.addModule(moduleName("C"), "\\func h => 1");
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    library.clearUpdateModules();
+    Group groupC = library.getModuleGroup(moduleName("C"));
+
+    library.updateModule(moduleName("A"), "\\func f => 0 \\func f' => 1", true);
+    assertThat(library.reloadModules(libraryManager, Collections.singletonList(moduleName("A"))), containsInAnyOrder(moduleName("A"), moduleName("B")));
+    assertThat(library.getUpdatedModules(), containsInAnyOrder(moduleName("A"), moduleName("B")));
+    assertThat(library.getModuleGroup(moduleName("C")), is(sameInstance(groupC)));
+
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, containsErrors(0));
+  }
+
+  @Test
+  public void reloadModulesKeepsDefinitions() {
+    library.addModule(moduleName("A"), "\\func f => 0");
+    library.addModule(moduleName("B"), "\\import A \\func g => f");
+    assertTrue(libraryManager.loadLibrary(library));
+    typechecking.typecheckLibrary(library);
+    library.clearUpdateModules();
+    Definition g = typecheckerState.getTypechecked(get(LexicalScope.opened(library.getModuleGroup(moduleName("B"))), "g"));
+
+    library.updateModule(moduleName("A"), "\\func f =>  0", true);
+    DependencyCollector dependencyCollector = new DependencyCollector(typecheckerState);
+    dependencyCollector.setIncremental(true);
+    library.reloadModules(libraryManager, Collections.singletonList(moduleName("A")), dependencyCollector);
+    TCReferable newG = get(LexicalScope.opened(library.getModuleGroup(moduleName("B"))), "g");
+    assertThat(typecheckerState.getTypechecked(newG), is(sameInstance(g)));
+    assertThat(g.getReferable(), is(sameInstance(newG)));
+
+    new TypecheckingOrderingListener(new InstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, errorReporter, dependencyCollector, PositionComparator.INSTANCE).typecheckLibrary(library);
+    assertTrue(dependencyCollector.propagateUpdates().isEmpty());
+    assertThat(typecheckerState.getTypechecked(newG), is(sameInstance(g)));
+    assertThat(errorList, containsErrors(0));
+  }
+
+  @Test
+  public void moduleScopeCache() {
+    ModulePath module = moduleName("A");
+    library.addModule(module, "\\func f => 0");
+    assertTrue(libraryManager.loadLibrary(library));
+    assertThat(libraryManager.getRegisteredLibrary(library.getName()), is(library));
+
+    Scope scope = libraryManager.getAvailableModuleScopeProvider(library).forModule(module);
+    assertThat(scope, is(notNullValue()));
+    assertThat(libraryManager.getAvailableModuleScopeProvider(library).forModule(module), is(sameInstance(scope)));
+
+    library.updateModule(module, "\\func g => 0", true);
+    library.reloadModules(libraryManager, Collections.singletonList(module));
+    Scope newScope = libraryManager.getAvailableModuleScopeProvider(library).forModule(module);
+    assertThat(newScope, is(not(sameInstance(scope))));
+    assertThat(newScope.resolveName("g"), is(notNullValue()));
+
+    libraryManager.unloadLibrary(library);
+    assertThat(libraryManager.getRegisteredLibrary(library.getName()), is(nullValue()));
+  }
 }
@@ -0,0 +1,89 @@
+package org.arend.library;
+
+import org.arend.core.definition.Definition;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.junit.Test;
+
+import static org.arend.module.ModulePath.moduleName;
+import static org.arend.typechecking.Matchers.goal;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelTypecheckingTest extends LibraryTestCase {
+  private boolean typecheckInParallel() {
+    return new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, error -> {
+      synchronized (errorList) {
+        errorList.add(error);
+      }
+    }, PositionComparator.INSTANCE).typecheckLibrary(library, 4);
+  }
+
+  private Definition getDefinition(String module, String name) {
+    ChildGroup group = library.getModuleGroup(moduleName(module));
+    assertThat(group, is(notNullValue()));
+    return typecheckerState.getTypechecked(get(group.getGroupScope(), name));
+  }
+
+  @Test
+  public void independentModules() {
+    for (int i = 0; i < 10; i++) {
+      library.addModule(moduleName("M" + i),
+        "\\func f (n : Nat) : Nat | zero => " + i + " | suc n => suc (f n)\n" +
+        "\\func g => f 3");
+    }
+    assertTrue(libraryManager.loadLibrary(library));
+    assertTrue(typecheckInParallel());
+    assertThat(errorList, containsErrors(0));
+    for (int i = 0; i < 10; i++) {
+      assertThat(getDefinition("M" + i, "g").status(), is(Definition.TypeCheckingStatus.NO_ERRORS));
+    }
+  }
+
+  @Test
+  public void dependentModules() {
+    library.addModule(moduleName("A"), "\\data D | con Nat \\func a (n : Nat) : D => con n");
+    library.addModule(moduleName("B"), "\\import A \\func b : D => a 0");
+    library.addModule(moduleName("C"), "\\import A \\func c : D => a 1");
+    library.addModule(moduleName("E"), "\\import A \\import B \\import C \\func e : \\Sigma D D => (b, c)");
+    assertTrue(libraryManager.loadLibrary(library));
+    assertTrue(typecheckInParallel());
+    assertThat(errorList, containsErrors(0));
+    assertThat(getDefinition("E", "e").status(), is(Definition.TypeCheckingStatus.NO_ERRORS));
+  }
+
+  @Test
+  public void mutualRecursion() {
+    library.addModule(moduleName("A"), "\\import B() \\func a (n : Nat) : Nat | zero => zero | suc n => B.b n");
+    library.addModule(moduleName("B"), "\\import A() \\func b (n : Nat) : Nat | zero => zero | suc n => A.a n");
+    assertTrue(libraryManager.loadLibrary(library));
+    assertTrue(typecheckInParallel());
+    assertThat(errorList, containsErrors(0));
+    assertThat(getDefinition("A", "a").status(), is(Definition.TypeCheckingStatus.NO_ERRORS));
+    assertThat(getDefinition("B", "b").status(), is(Definition.TypeCheckingStatus.NO_ERRORS));
+  }
+
+  @Test
+  public void coercionBeforeDependents() {
+    library.addModule(moduleName("A"),
+      "\\data D | con Nat\n" +
+      "  \\where \\use \\coerce fromNat (n : Nat) => con n");
+    library.addModule(moduleName("B"), "\\import A \\func f (n : Nat) : D => n");
+    library.addModule(moduleName("C"), "\\import A \\func g : D => 7");
+    assertTrue(libraryManager.loadLibrary(library));
+    assertTrue(typecheckInParallel());
+    assertThat(errorList, containsErrors(0));
+  }
+
+  @Test
+  public void errorsAreReported() {
+    library.addModule(moduleName("A"), "\\func a : Nat => {?}");
+    library.addModule(moduleName("B"), "\\import A \\func b => a");
+    assertTrue(libraryManager.loadLibrary(library));
+    assertTrue(typecheckInParallel());
+    assertThatErrorsAre(goal(0));
+  }
+}
@@ -5,7 +5,9 @@ import org.arend.module.ModulePath;
 import org.arend.naming.reference.LocatedReferableImpl;
 import org.arend.naming.reference.Referable;
 import org.arend.naming.scope.EmptyScope;
+import org.arend.naming.scope.LexicalScope;
 import org.arend.naming.scope.ListScope;
+import org.arend.naming.scope.Scope;
 import org.arend.naming.scope.SingletonScope;
 import org.arend.prelude.Prelude;
 import org.arend.term.Precedence;
@@ -672,4 +674,21 @@ public class NameResolverTest extends NameResolverTestCase {
       "\\import Mod\n" +
       "\\func bar => foo");
   }
+
+  @Test
+  public void lexicalScopeIndex() {
+    ChildGroup group = resolveNamesModule(
+      "\\func f => 0 \\where { \\func g => 0 }\n" +
+      "\\data D | con\n" +
+      "\\open f(g \\as h)");
+    Scope scope = LexicalScope.insideOf(group, EmptyScope.INSTANCE);
+    Scope namespace = scope.resolveNamespace("f", false);
+    assertNotNull(namespace);
+    assertSame(namespace, scope.resolveNamespace("f", false));
+    assertNotNull(namespace.resolveName("g"));
+    assertNotNull(scope.resolveName("con"));
+    assertEquals("h", scope.resolveName("h").textRepresentation());
+    assertNull(scope.resolveName("g"));
+    assertEquals(4, scope.getElements().size());
+  }
 }
@@ -0,0 +1,91 @@
+package org.arend.source;
+
+import org.arend.error.ListErrorReporter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.arend.module.ModulePath.moduleName;
+import static org.junit.Assert.*;
+
+public class BinaryBundleTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private static void write(BinaryBundle bundle, String module, String data) throws IOException {
+    try (OutputStream stream = bundle.write(moduleName(module))) {
+      stream.write(data.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private static String read(BinaryBundle bundle, String module) throws IOException {
+    try (InputStream stream = bundle.read(moduleName(module))) {
+      if (stream == null) {
+        return null;
+      }
+      byte[] buffer = new byte[1024];
+      StringBuilder builder = new StringBuilder();
+      for (int n; (n = stream.read(buffer)) != -1; ) {
+        builder.append(new String(buffer, 0, n, StandardCharsets.UTF_8));
+      }
+      return builder.toString();
+    }
+  }
+
+  private void persistAndReload(boolean compressed) throws IOException {
+    Path file = folder.getRoot().toPath().resolve("bin").resolve("modules.arcb");
+    BinaryBundle bundle = new BinaryBundle(file, compressed);
+    write(bundle, "A", "module A");
+    write(bundle, "B", "module B");
+    bundle.flush();
+    assertFalse(bundle.hasChanges());
+
+    bundle = new BinaryBundle(file, compressed);
+    assertEquals("module A", read(bundle, "A"));
+    assertEquals("module B", read(bundle, "B"));
+    assertNull(read(bundle, "C"));
+    assertTrue(bundle.getTimeStamp(moduleName("A")) > 0);
+
+    write(bundle, "A", "new module A");
+    bundle.delete(moduleName("B"));
+    bundle.flush();
+
+    bundle = new BinaryBundle(file, !compressed);
+    assertEquals("new module A", read(bundle, "A"));
+    assertFalse(bundle.contains(moduleName("B")));
+    assertEquals(0, bundle.getTimeStamp(moduleName("B")));
+  }
+
+  @Test
+  public void uncompressed() throws IOException {
+    persistAndReload(false);
+  }
+
+  @Test
+  public void compressed() throws IOException {
+    persistAndReload(true);
+  }
+
+  @Test
+  public void corruptIndexIsReported() throws IOException {
+    Path file = folder.getRoot().toPath().resolve("modules.arcb");
+    Files.write(file, "not a bundle".getBytes(StandardCharsets.UTF_8));
+    ListErrorReporter errorReporter = new ListErrorReporter();
+    BinaryBundle bundle = new BinaryBundle(file, false, errorReporter);
+    assertFalse(bundle.contains(moduleName("A")));
+    assertEquals(0, bundle.getTimeStamp(moduleName("A")));
+    assertEquals(1, errorReporter.getErrorList().size());
+
+    write(bundle, "A", "module A");
+    bundle.flush();
+    assertEquals("module A", read(new BinaryBundle(file, false, errorReporter), "A"));
+    assertEquals(1, errorReporter.getErrorList().size());
+  }
+}
@@ -15,7 +15,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.arend.core.expr.ExpressionFactory.*;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class BuiltinNormalizationTest extends TypeCheckingTestCase {
   private static Expression funCall(FunctionDefinition definition, Expression arg1, Expression arg2) {
@@ -54,6 +54,33 @@ public class BuiltinNormalizationTest extends TypeCheckingTestCase {
     assertEquals(Suc(Suc(Suc(x))), plus(x, val(3)).normalize(NormalizeVisitor.Mode.NF));
   }
 
+  @Test
+  public void testLargeOffset() {
+    ReferenceExpression x = new ReferenceExpression(new TypedBinding("x", Nat()));
+    // (x + 1000000) + 1000000 = suc (x + 1999999)
+    Expression result = plus(plus(x, val(1000000)), val(1000000)).normalize(NormalizeVisitor.Mode.WHNF);
+    ConCallExpression conCall = result.checkedCast(ConCallExpression.class);
+    assertTrue(conCall != null && conCall.getDefinition() == Prelude.SUC);
+    FunCallExpression funCall = conCall.getDefCallArguments().get(0).checkedCast(FunCallExpression.class);
+    assertTrue(funCall != null && funCall.getDefinition() == Prelude.PLUS);
+    assertEquals(x, funCall.getDefCallArguments().get(0));
+    assertEquals(val(1999999), funCall.getDefCallArguments().get(1));
+    // 3000000 - (x + 1000000) = 2000000 - x
+    assertEquals(minus(val(2000000), x), minus(val(3000000), plus(x, val(1000000))).normalize(NormalizeVisitor.Mode.WHNF));
+    // (x + 3000000) - (x + 1000000) = (x + 2000000) - x
+    assertEquals(minus(plus(x, val(2000000)), x), minus(plus(x, val(3000000)), plus(x, val(1000000))).normalize(NormalizeVisitor.Mode.WHNF));
+    // 1000000 /= suc (x + 999999)
+    assertNotEquals(val(1000000), Suc(plus(x, val(999999))));
+    // 1000000 = suc (0 + 999999)
+    assertEquals(val(1000000), Suc(plus(Zero(), val(999999))));
+  }
+
+  @Test
+  public void testLargeMul() {
+    assertEquals(new BigIntegerExpression(BigInteger.valueOf(100000).multiply(BigInteger.valueOf(100000))), funCall(Prelude.MUL, val(100000), val(100000)).normalize(NormalizeVisitor.Mode.WHNF));
+    assertEquals(val(1000000000), funCall(Prelude.MUL, val(100000), val(10000)).normalize(NormalizeVisitor.Mode.WHNF));
+  }
+
   @Test
   public void testVarPlusVar() {
     ReferenceExpression x = new ReferenceExpression(new TypedBinding("x", Nat()));
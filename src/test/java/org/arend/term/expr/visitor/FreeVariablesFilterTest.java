@@ -0,0 +1,79 @@
+package org.arend.term.expr.visitor;
+
+import org.arend.core.context.binding.Binding;
+import org.arend.core.context.binding.TypedBinding;
+import org.arend.core.context.param.SingleDependentLink;
+import org.arend.core.definition.ClassDefinition;
+import org.arend.core.definition.ClassField;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.FieldCallExpression;
+import org.arend.core.expr.visitor.FreeVariablesFilterVisitor;
+import org.arend.core.sort.Sort;
+import org.arend.typechecking.TypeCheckingTestCase;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.arend.ExpressionFactory.*;
+import static org.arend.core.expr.ExpressionFactory.*;
+import static org.junit.Assert.*;
+
+public class FreeVariablesFilterTest extends TypeCheckingTestCase {
+  @Test
+  public void occurringVariables() {
+    Binding f = new TypedBinding("f", Pi(Nat(), Nat()));
+    SingleDependentLink x = singleParam("x", Nat());
+    Expression expr = Lam(x, Apps(Ref(f), Ref(x)));
+    assertTrue(FreeVariablesFilterVisitor.mayContain(expr, f));
+    assertTrue(FreeVariablesFilterVisitor.mayContain(expr, x));
+    assertTrue(FreeVariablesFilterVisitor.mayContainAny(expr, Arrays.asList(new TypedBinding("y", Nat()), f)));
+    assertTrue(expr.findBinding(f));
+  }
+
+  @Test
+  public void closedExpressions() {
+    Binding a = new TypedBinding("a", Nat());
+    Expression expr = Lam(singleParam("x", Nat()), Suc(Zero()));
+    assertFalse(FreeVariablesFilterVisitor.mayContain(expr, a));
+    assertFalse(FreeVariablesFilterVisitor.mayContainAny(expr, Collections.singleton(a)));
+    assertFalse(expr.findBinding(a));
+    assertNotEquals(0, expr.getCachedFreeVariablesFilter());
+  }
+
+  @Test
+  public void fieldCalls() {
+    typeCheckModule("\\record R (f : Nat)");
+    ClassField field = ((ClassDefinition) getDefinition("R")).getPersonalFields().get(0);
+    Binding r = new TypedBinding("r", getDefinition("R").getDefCall(Sort.STD, Collections.emptyList()));
+    Expression expr = Suc(FieldCallExpression.make(field, Sort.STD, Ref(r)));
+    assertTrue(FreeVariablesFilterVisitor.mayContain(expr, field));
+    assertTrue(FreeVariablesFilterVisitor.mayContain(expr, r));
+    assertTrue(FreeVariablesFilterVisitor.mayContain(Zero(), getDefinition("R")));
+  }
+
+  @Test
+  public void classCallsAreNotCached() {
+    typeCheckModule("\\record R (f : Nat)");
+    Expression classCall = getDefinition("R").getDefCall(Sort.STD, Collections.emptyList());
+    Expression expr = Pi(singleParam("r", classCall), Nat());
+    expr.freeVariablesFilter();
+    assertEquals(0, classCall.getCachedFreeVariablesFilter());
+    assertEquals(0, expr.getCachedFreeVariablesFilter());
+  }
+
+  @Test
+  public void uncacheableFilters() {
+    typeCheckModule("\\record R (f : Nat)");
+    Binding a = new TypedBinding("a", Nat());
+    Expression classCall = getDefinition("R").getDefCall(Sort.STD, Collections.emptyList());
+    Expression body = Pi(singleParam("r", classCall), Nat());
+    Expression expr = Lam(singleParam("x", Nat()), body);
+    assertTrue(FreeVariablesFilterVisitor.mayContainAnyCached(body, Collections.singleton(a)));
+
+    FreeVariablesFilterVisitor visitor = FreeVariablesFilterVisitor.memoizing();
+    assertFalse(visitor.mayContainAnyMemoized(expr, Collections.singleton(a)));
+    assertFalse(visitor.mayContainAnyMemoized(body, Collections.singleton(a)));
+    assertEquals(0, expr.getCachedFreeVariablesFilter());
+  }
+}
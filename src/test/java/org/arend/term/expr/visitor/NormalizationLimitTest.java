@@ -0,0 +1,62 @@
+package org.arend.term.expr.visitor;
+
+import org.arend.core.definition.Definition;
+import org.arend.error.GeneralError;
+import org.arend.typechecking.TypeCheckingTestCase;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class NormalizationLimitTest extends TypeCheckingTestCase {
+  private static final String LOOP =
+    "\\func loop (n : Nat) : Nat\n" +
+    "  | 0 => 0\n" +
+    "  | suc n => loop n\n";
+
+  private boolean hasLimitError(String name) {
+    for (GeneralError error : errorList) {
+      String message = error.toString();
+      if (message.contains("'" + name + "'") && message.contains("normalization steps")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void typeCheckWithLimit(String text, long limit) {
+    typechecking.setNormalizationLimit(limit);
+    lastGroup = resolveNamesModule(text);
+    typechecking.typecheckModules(Collections.singletonList(lastGroup));
+  }
+
+  @Test
+  public void withinLimit() {
+    typeCheckWithLimit(LOOP + "\\func test : loop 100 = 0 => path (\\lam _ => 0)", 1000);
+    assertTrue(errorList.isEmpty());
+    assertEquals(Definition.TypeCheckingStatus.NO_ERRORS, getDefinition("test").status());
+  }
+
+  @Test
+  public void limitExceeded() {
+    typeCheckWithLimit(LOOP +
+      "\\func test : loop 100000 = 0 => path (\\lam _ => 0)\n" +
+      "\\func test2 : loop 10 = 0 => path (\\lam _ => 0)", 200);
+    assertTrue(hasLimitError("test"));
+    assertFalse(hasLimitError("test2"));
+    assertNotEquals(Definition.TypeCheckingStatus.NO_ERRORS, getDefinition("test").status());
+    assertEquals(Definition.TypeCheckingStatus.NO_ERRORS, getDefinition("test2").status());
+  }
+
+  @Test
+  public void limitIsPerDefinition() {
+    typeCheckWithLimit(LOOP +
+      "\\func loop' (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | suc n => loop' n\n" +
+      "\\func test1 : loop 150 = 0 => path (\\lam _ => 0)\n" +
+      "\\func test2 : loop' 150 = 0 => path (\\lam _ => 0)", 200);
+    assertTrue(errorList.isEmpty());
+  }
+}
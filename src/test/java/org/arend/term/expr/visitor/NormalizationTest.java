@@ -9,17 +9,20 @@ import org.arend.core.context.param.SingleDependentLink;
 import org.arend.core.definition.Constructor;
 import org.arend.core.definition.Definition;
 import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.elimtree.Body;
 import org.arend.core.elimtree.BranchElimTree;
 import org.arend.core.elimtree.ElimTree;
 import org.arend.core.elimtree.LeafElimTree;
 import org.arend.core.expr.*;
 import org.arend.core.expr.let.LetClause;
+import org.arend.core.expr.visitor.NormalizationCache;
 import org.arend.core.expr.visitor.NormalizeVisitor;
 import org.arend.core.sort.Level;
 import org.arend.core.sort.Sort;
 import org.arend.frontend.reference.ParsedLocalReferable;
 import org.arend.prelude.Prelude;
 import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.ConcurrentTypecheckerState;
 import org.arend.typechecking.TypeCheckingTestCase;
 import org.arend.typechecking.visitor.CheckTypeVisitor;
 import org.junit.Before;
@@ -33,7 +36,7 @@ import java.util.Map;
 import static org.arend.ExpressionFactory.*;
 import static org.arend.core.expr.ExpressionFactory.*;
 import static org.arend.frontend.ConcreteExpressionFactory.*;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class NormalizationTest extends TypeCheckingTestCase {
   // \func + (x y : Nat) : Nat => \elim x | zero => y | suc x' => suc (x' + y)
@@ -430,4 +433,142 @@ public class NormalizationTest extends TypeCheckingTestCase {
     assertEquals(1, conCall.getDefCallArguments().size());
     assertEquals(f.getParameters().getNext(), conCall.getDefCallArguments().get(0).cast(ReferenceExpression.class).getBinding());
   }
+
+  @Test
+  public void cachedNormalForm() {
+    typeCheckModule(
+      "\\func fib (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | 1 => 1\n" +
+      "  | suc (suc n) => fib n Nat.+ fib (suc n)\n" +
+      "\\func test : fib 20 = 6765 => path (\\lam _ => 6765)");
+    FunctionDefinition fib = (FunctionDefinition) getDefinition("fib");
+    Expression call = FunCall(fib, Sort.SET0, new SmallIntegerExpression(20));
+    NormalizationCache cache = typecheckerState.getNormalizationCache();
+    NormalizationCache previous = NormalizationCache.setCurrent(cache);
+    try {
+      Expression result = call.normalize(NormalizeVisitor.Mode.WHNF);
+      assertEquals(6765, result.cast(IntegerExpression.class).getBigInteger().intValue());
+      assertSame(result, FunCall(fib, Sort.SET0, new SmallIntegerExpression(20)).normalize(NormalizeVisitor.Mode.WHNF));
+
+      cache.invalidate(fib);
+      assertNotSame(result, call.normalize(NormalizeVisitor.Mode.WHNF));
+    } finally {
+      NormalizationCache.setCurrent(previous);
+    }
+  }
+
+  @Test
+  public void cacheIsOwnedByState() {
+    typeCheckModule(
+      "\\func fib (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | 1 => 1\n" +
+      "  | suc (suc n) => fib n Nat.+ fib (suc n)");
+    FunctionDefinition fib = (FunctionDefinition) getDefinition("fib");
+    Expression call = FunCall(fib, Sort.SET0, new SmallIntegerExpression(20));
+    NormalizationCache previous = NormalizationCache.setCurrent(typecheckerState.getNormalizationCache());
+    try {
+      Expression result = call.normalize(NormalizeVisitor.Mode.WHNF);
+      new ConcurrentTypecheckerState().reset();
+      assertSame(result, call.normalize(NormalizeVisitor.Mode.WHNF));
+    } finally {
+      NormalizationCache.setCurrent(previous);
+    }
+  }
+
+  @Test
+  public void stuckNormalFormIsNotCached() {
+    typeCheckModule(
+      "\\func isEven (n : Nat) : Nat\n" +
+      "  | 0 => 1\n" +
+      "  | suc n => isOdd n\n" +
+      "\\func isOdd (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | suc n => isEven n");
+    FunctionDefinition isEven = (FunctionDefinition) getDefinition("isEven");
+    FunctionDefinition isOdd = (FunctionDefinition) getDefinition("isOdd");
+    NormalizationCache previous = NormalizationCache.setCurrent(typecheckerState.getNormalizationCache());
+    try {
+      // isOdd is not typechecked yet as it happens when the bodies of a recursive group are typechecked one by one
+      Body body = isOdd.getBody();
+      Definition.TypeCheckingStatus status = isOdd.status();
+      isOdd.setBody(null);
+      isOdd.setStatus(Definition.TypeCheckingStatus.BODY_NEEDS_TYPE_CHECKING);
+      assertTrue(FunCall(isEven, Sort.SET0, new SmallIntegerExpression(3)).normalize(NormalizeVisitor.Mode.WHNF).isInstance(FunCallExpression.class));
+
+      isOdd.setBody(body);
+      isOdd.setStatus(status);
+      Expression result = FunCall(isEven, Sort.SET0, new SmallIntegerExpression(3)).normalize(NormalizeVisitor.Mode.WHNF);
+      assertEquals(0, result.cast(IntegerExpression.class).getBigInteger().intValue());
+    } finally {
+      NormalizationCache.setCurrent(previous);
+    }
+  }
+
+  @Test
+  public void invalidateArgument() {
+    typeCheckModule(
+      "\\func c : Nat => 2\n" +
+      "\\func h (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | suc n => suc (h n)");
+    Definition c = getDefinition("c");
+    FunctionDefinition h = (FunctionDefinition) getDefinition("h");
+    NormalizationCache cache = typecheckerState.getNormalizationCache();
+    NormalizationCache previous = NormalizationCache.setCurrent(cache);
+    try {
+      Expression result = FunCall(h, Sort.SET0, FunCall((FunctionDefinition) c, Sort.SET0)).normalize(NormalizeVisitor.Mode.NF);
+      assertSame(result, FunCall(h, Sort.SET0, FunCall((FunctionDefinition) c, Sort.SET0)).normalize(NormalizeVisitor.Mode.NF));
+      cache.invalidate(c);
+      assertNotSame(result, FunCall(h, Sort.SET0, FunCall((FunctionDefinition) c, Sort.SET0)).normalize(NormalizeVisitor.Mode.NF));
+    } finally {
+      NormalizationCache.setCurrent(previous);
+    }
+  }
+
+  private Expression normalizeWith(NormalizeVisitor.Backend backend, Expression expr, NormalizeVisitor.Mode mode) {
+    NormalizeVisitor.Backend oldBackend = NormalizeVisitor.getBackend();
+    NormalizationCache oldCache = NormalizationCache.setCurrent(null);
+    NormalizeVisitor.setBackend(backend);
+    try {
+      return expr.normalize(mode);
+    } finally {
+      NormalizeVisitor.setBackend(oldBackend);
+      NormalizationCache.setCurrent(oldCache);
+    }
+  }
+
+  @Test
+  public void environmentBackend() {
+    typeCheckModule(
+      "\\data List (A : \\Type) | nil | cons A (List A)\n" +
+      "\\func replicate {A : \\Type} (n : Nat) (a : A) : List A \\elim n\n" +
+      "  | 0 => nil\n" +
+      "  | suc n => cons a (replicate n a)\n" +
+      "\\func length {A : \\Type} (xs : List A) : Nat \\elim xs\n" +
+      "  | nil => 0\n" +
+      "  | cons _ xs => suc (length xs)\n" +
+      "\\func head {A : \\Type} (a : A) (xs : List A) : A => \\case xs \\with {\n" +
+      "  | nil => a\n" +
+      "  | cons x _ => x\n" +
+      "}\n" +
+      "\\func last {A : \\Type} (a : A) (xs : List A) : A \\elim xs\n" +
+      "  | nil => a\n" +
+      "  | cons x xs => last x xs\n" +
+      "\\func test1 => length (replicate 100 0)\n" +
+      "\\func test2 => last 0 (cons 1 (cons 2 (replicate 100 3)))\n" +
+      "\\func test3 (n : Nat) => last 0 (cons 1 (replicate n 2))\n" +
+      "\\func test4 => head 0 (replicate 5 1)\n" +
+      "\\func test5 => last 0 (replicate 10000 3)");
+    for (String name : new String[] { "test1", "test2", "test3", "test4" }) {
+      FunctionDefinition test = (FunctionDefinition) getDefinition(name);
+      Expression body = ((LeafElimTree) test.getBody()).getExpression();
+      for (NormalizeVisitor.Mode mode : new NormalizeVisitor.Mode[] { NormalizeVisitor.Mode.WHNF, NormalizeVisitor.Mode.NF }) {
+        assertEquals(normalizeWith(NormalizeVisitor.Backend.SUBSTITUTION, body, mode), normalizeWith(NormalizeVisitor.Backend.ENVIRONMENT, body, mode));
+      }
+    }
+    // Tail calls are evaluated without recursion
+    assertEquals(3, normalizeWith(NormalizeVisitor.Backend.ENVIRONMENT, ((LeafElimTree) ((FunctionDefinition) getDefinition("test5")).getBody()).getExpression(), NormalizeVisitor.Mode.WHNF).cast(IntegerExpression.class).getBigInteger().intValue());
+  }
 }
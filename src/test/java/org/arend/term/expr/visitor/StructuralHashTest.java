@@ -0,0 +1,86 @@
+package org.arend.term.expr.visitor;
+
+import org.arend.core.context.binding.Binding;
+import org.arend.core.context.binding.TypedBinding;
+import org.arend.core.context.param.SingleDependentLink;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.LetExpression;
+import org.arend.core.expr.SigmaExpression;
+import org.arend.core.expr.visitor.AlphaEquivalenceVisitor;
+import org.arend.core.sort.Sort;
+import org.arend.typechecking.TypeCheckingTestCase;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.arend.ExpressionFactory.*;
+import static org.arend.core.expr.ExpressionFactory.*;
+import static org.junit.Assert.*;
+
+public class StructuralHashTest extends TypeCheckingTestCase {
+  private static void assertAlphaEquivalent(Expression expr1, Expression expr2) {
+    assertNotEquals(0, expr1.structuralHash());
+    assertEquals(expr1.structuralHash(), expr2.structuralHash());
+    assertTrue(AlphaEquivalenceVisitor.compare(expr1, expr2, new HashMap<>()));
+  }
+
+  @Test
+  public void boundVariables() {
+    SingleDependentLink x = singleParam("x", Nat());
+    SingleDependentLink y = singleParam("y", Nat());
+    SingleDependentLink xy = singleParam(true, vars("x", "y"), Nat());
+    SingleDependentLink uv = singleParam(true, vars("u", "v"), Nat());
+    assertAlphaEquivalent(Lam(x, Suc(Ref(x))), Lam(y, Suc(Ref(y))));
+    assertAlphaEquivalent(Lam(xy, Ref(xy.getNext())), Lam(uv, Ref(uv.getNext())));
+    assertFalse(AlphaEquivalenceVisitor.compare(Lam(xy, Ref(xy)), Lam(uv, Ref(uv.getNext())), new HashMap<>()));
+    assertNotEquals(Lam(xy, Ref(xy)).structuralHash(), Lam(uv, Ref(uv.getNext())).structuralHash());
+  }
+
+  @Test
+  public void freeVariables() {
+    Binding a = new TypedBinding("a", Nat());
+    Binding b = new TypedBinding("b", Nat());
+    SingleDependentLink x = singleParam("x", Nat());
+    assertAlphaEquivalent(Pi(x, Suc(Ref(a))), Pi(singleParam("y", Nat()), Suc(Ref(a))));
+    assertFalse(AlphaEquivalenceVisitor.compare(Ref(a), Ref(b), new HashMap<>()));
+
+    HashMap<Binding, Binding> substitution = new HashMap<>();
+    substitution.put(b, a);
+    assertTrue(AlphaEquivalenceVisitor.compare(Suc(Ref(a)), Suc(Ref(b)), substitution));
+    assertEquals(1, substitution.size());
+  }
+
+  @Test
+  public void cachedSubexpressions() {
+    Binding a = new TypedBinding("a", Nat());
+    SingleDependentLink x = singleParam("x", Nat());
+    Expression closed = Suc(Zero());
+    Expression open = Suc(Ref(a));
+    Expression bound = Suc(Ref(x));
+    Lam(x, Tuple(new SigmaExpression(Sort.SET0, params(param("p", Nat()), param("q", Nat()), param("r", Nat()))), closed, open, bound)).structuralHash();
+    assertNotEquals(0, closed.getCachedStructuralHash());
+    assertNotEquals(0, open.getCachedStructuralHash());
+    assertEquals(0, bound.getCachedStructuralHash());
+    assertEquals(closed.getCachedStructuralHash(), Suc(Zero()).structuralHash());
+    assertEquals(open.getCachedStructuralHash(), Suc(Ref(a)).structuralHash());
+  }
+
+  @Test
+  public void notHashed() {
+    LetExpression let = let(lets(let("x", Zero())), Zero());
+    assertEquals(0, let.structuralHash());
+    assertEquals(0, Suc(let).structuralHash());
+    assertFalse(AlphaEquivalenceVisitor.compare(let, let(lets(let("x", Zero())), Zero()), new HashMap<>()));
+  }
+
+  @Test
+  public void notHashedIsCached() {
+    LetExpression let = let(lets(let("x", Zero())), Zero());
+    Expression suc = Suc(let);
+    assertEquals(0, suc.structuralHash());
+    assertNotEquals(0, let.getCachedStructuralHash());
+    assertEquals(let.getCachedStructuralHash(), suc.getCachedStructuralHash());
+    assertEquals(0, suc.structuralHash());
+    assertEquals(0, Suc(suc).structuralHash());
+  }
+}
@@ -4,13 +4,29 @@ import org.arend.core.context.binding.Binding;
 import org.arend.core.context.binding.TypedBinding;
 import org.arend.core.context.param.DependentLink;
 import org.arend.core.context.param.SingleDependentLink;
+import org.arend.core.context.binding.LevelVariable;
+import org.arend.core.definition.Definition;
+import org.arend.core.expr.AppExpression;
 import org.arend.core.expr.Expression;
+import org.arend.core.expr.LamExpression;
+import org.arend.core.expr.UniverseExpression;
+import org.arend.core.expr.let.LetClause;
+import org.arend.core.expr.visitor.FreeVariablesFilterVisitor;
+import org.arend.core.sort.Level;
+import org.arend.core.sort.Sort;
+import org.arend.core.subst.ExprSubstitution;
+import org.arend.core.subst.LevelSubstitution;
+import org.arend.core.subst.StdLevelSubstitution;
+import org.arend.core.subst.SubstVisitor;
+import org.arend.error.DummyErrorReporter;
 import org.arend.typechecking.TypeCheckingTestCase;
 import org.junit.Test;
 
+import java.util.Collections;
+
 import static org.arend.ExpressionFactory.*;
 import static org.arend.core.expr.ExpressionFactory.*;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class SubstTest extends TypeCheckingTestCase {
   @Test
@@ -118,4 +134,64 @@ public class SubstTest extends TypeCheckingTestCase {
     Expression expr2 = let(lets(let("x", Lam(z, Ref(z))), let("y", Lam(w, Zero()))), Zero());
     assertEquals(expr2, expr1.subst(a, Zero()));
   }
+
+  @Test
+  public void internedCalls() {
+    assertSame(Nat(), Nat());
+    assertSame(Interval(), Interval().accept(new SubstVisitor(new ExprSubstitution(), LevelSubstitution.EMPTY), null));
+
+    typeCheckModule(
+      "\\data D | con\n" +
+      "\\func f => D");
+    Definition d = getDefinition("D");
+    Expression call1 = DefCall(d, new Sort(new Level(LevelVariable.PVAR), new Level(LevelVariable.HVAR)), Collections.emptyList());
+    Expression call2 = DefCall(d, Sort.SET0, Collections.emptyList());
+    assertSame(call2, call1.subst(new StdLevelSubstitution(new Level(0), new Level(0))));
+    assertSame(call2, DefCall(d, new Sort(new Level(0), new Level(0)), Collections.emptyList()));
+  }
+
+  @Test
+  public void internedUniverses() {
+    UniverseExpression universe = new UniverseExpression(new Sort(new Level(LevelVariable.PVAR), new Level(LevelVariable.HVAR)));
+    assertSame(universe.subst(new StdLevelSubstitution(new Level(2), new Level(1))), universe.subst(new StdLevelSubstitution(new Level(2), new Level(1))));
+  }
+
+  @Test
+  public void sharedSubexpressions() {
+    // \x. f x (\y. suc y) [f := g] = \x. g x (\y. suc y)
+    SingleDependentLink x = singleParam("x", Nat());
+    SingleDependentLink y = singleParam("y", Nat());
+    Expression closed = Lam(y, Suc(Ref(y)));
+    // Subexpressions are shared only if filters of free variables exclude substituted variables, so we avoid collisions
+    Binding f;
+    do {
+      f = new TypedBinding("f", Pi(Nat(), Pi(Pi(Nat(), Nat()), Nat())));
+    } while (FreeVariablesFilterVisitor.mayContain(closed, f));
+    LamExpression expr = Lam(x, Apps(Ref(f), Ref(x), closed));
+    Binding g;
+    do {
+      g = new TypedBinding("g", Pi(Nat(), Pi(Pi(Nat(), Nat()), Nat())));
+    } while (FreeVariablesFilterVisitor.mayContain(expr, g));
+
+    LamExpression result = expr.subst(f, Ref(g)).cast(LamExpression.class);
+    assertEquals(Lam(x, Apps(Ref(g), Ref(x), closed)), result);
+    assertSame(closed, result.getBody().cast(AppExpression.class).getArgument());
+    assertSame(expr, expr.subst(g, Zero()));
+    assertNotSame(closed, closed.copy());
+  }
+
+  @Test
+  public void stripKeepsSharedParameters() {
+    // \x : c. x where c is a let clause with value Nat
+    LetClause c = new LetClause("c", null, Nat());
+    SingleDependentLink x = singleParam("x", Ref(c));
+    LamExpression lam = Lam(x, Ref(x));
+    Expression shared = lam.subst(new TypedBinding("y", Nat()), Zero());
+    assertSame(lam, shared);
+
+    LamExpression stripped = (LamExpression) shared.strip(DummyErrorReporter.INSTANCE);
+    assertEquals(Nat(), stripped.getParameters().getTypeExpr());
+    assertEquals(Ref(c), x.getTypeExpr());
+    assertEquals(Ref(stripped.getParameters()), stripped.getBody());
+  }
 }
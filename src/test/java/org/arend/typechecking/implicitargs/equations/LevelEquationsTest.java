@@ -0,0 +1,65 @@
+package org.arend.typechecking.implicitargs.equations;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class LevelEquationsTest {
+  private static LevelEquations<String> equations(String... variables) {
+    LevelEquations<String> equations = new LevelEquations<>();
+    for (String variable : variables) {
+      equations.addVariable(variable);
+    }
+    return equations;
+  }
+
+  @Test
+  public void manyUpdatesWithoutCycle() {
+    // x is updated more than |V| + 1 times, but the equations are solvable
+    LevelEquations<String> equations = equations("x", "y", "z");
+    equations.addEquation(new LevelEquation<>("y", "x", -1));
+    equations.addEquation(new LevelEquation<>("y", "x", -2));
+    equations.addEquation(new LevelEquation<>("z", "z", 3));
+    equations.addEquation(new LevelEquation<>("z", "x", -2));
+    equations.addEquation(new LevelEquation<>("y", "x", -3));
+    equations.addEquation(new LevelEquation<>("z", "y", -2));
+    equations.addEquation(new LevelEquation<>("y", "x", -3));
+
+    Map<String, Integer> solution = new HashMap<>();
+    assertNull(equations.solve(solution));
+    assertEquals(Integer.valueOf(-5), solution.get("x"));
+    assertEquals(Integer.valueOf(-2), solution.get("y"));
+    assertEquals(Integer.valueOf(0), solution.get("z"));
+  }
+
+  @Test
+  public void negativeCycle() {
+    LevelEquations<String> equations = equations("x", "y");
+    equations.addEquation(new LevelEquation<>("x", "y", -1));
+    equations.addEquation(new LevelEquation<>("y", "x", 0));
+
+    assertNotNull(equations.solve(new HashMap<>()));
+  }
+
+  @Test
+  public void removeEquations() {
+    LevelEquations<String> equations = equations("x", "y", "z");
+    equations.addEquation(new LevelEquation<>("x", "y", -1));
+    equations.addEquation(new LevelEquation<>("y", "x", 0));
+    equations.addEquation(new LevelEquation<>("z", "x", -2));
+    equations.addEquation(new LevelEquation<>("y"));
+    equations.removeEquations(Collections.singleton("y"));
+    assertEquals(2, equations.getEquations().size());
+
+    Map<String, Integer> solution = new HashMap<>();
+    assertNull(equations.solve(solution));
+    assertEquals(Integer.valueOf(-2), solution.get("x"));
+    assertNull(solution.get("y"));
+  }
+}
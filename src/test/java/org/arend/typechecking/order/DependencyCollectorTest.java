@@ -0,0 +1,172 @@
+package org.arend.typechecking.order;
+
+import org.arend.core.definition.DataDefinition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.DataCallExpression;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.visitor.CompareVisitor;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.naming.reference.TCReferable;
+import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.TypeCheckingTestCase;
+import org.arend.typechecking.implicitargs.equations.DummyEquations;
+import org.arend.typechecking.implicitargs.equations.Equations;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.arend.ExpressionFactory.DataCall;
+import static org.junit.Assert.*;
+
+public class DependencyCollectorTest extends TypeCheckingTestCase {
+  private DependencyCollector dependencyCollector;
+
+  @Before
+  public void initialize() {
+    dependencyCollector = new DependencyCollector(typecheckerState);
+  }
+
+  private TypecheckingOrderingListener listener() {
+    return new TypecheckingOrderingListener(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, errorReporter, dependencyCollector, PositionComparator.INSTANCE);
+  }
+
+  private void typeCheck(String text) {
+    lastGroup = resolveNamesModule(text);
+    assertTrue(listener().typecheckModules(Collections.singletonList(lastGroup)));
+  }
+
+  private void typeCheckAgain(TCReferable... definitions) {
+    for (TCReferable definition : definitions) {
+      assertTrue(listener().typecheckDefinitions(Collections.singletonList((Concrete.Definition) ConcreteReferableProvider.INSTANCE.getConcrete(definition))));
+    }
+  }
+
+  @Test
+  public void transitiveUpdate() {
+    typeCheck(
+      "\\func f => 0\n" +
+      "\\func g => f\n" +
+      "\\func h => g\n" +
+      "\\func k => 1");
+    assertEquals(new HashSet<>(Arrays.asList(get("f"), get("g"), get("h"))), dependencyCollector.update(get("f")));
+    assertNull(getDefinition("h"));
+    assertNotNull(getDefinition("k"));
+  }
+
+  @Test
+  public void incrementalUpdate() {
+    typeCheck(
+      "\\lemma l : 0 = 0 => path (\\lam _ => 0)\n" +
+      "\\func g : 0 = 0 => l\n" +
+      "\\func h => g");
+    dependencyCollector.setIncremental(true);
+    assertEquals(Collections.singleton(get("l")), dependencyCollector.update(get("l")));
+    assertNull(getDefinition("l"));
+    assertNotNull(getDefinition("g"));
+
+    typeCheckAgain(get("l"));
+    assertTrue(dependencyCollector.propagateUpdates().isEmpty());
+    assertNotNull(getDefinition("g"));
+    assertNotNull(getDefinition("h"));
+  }
+
+  @Test
+  public void incrementalUpdateChanged() {
+    typeCheck(
+      "\\func f => 0\n" +
+      "\\func f' => 1\n" +
+      "\\func g => f\n" +
+      "\\func h => g");
+    dependencyCollector.setIncremental(true);
+    assertEquals(Collections.singleton(get("f")), dependencyCollector.update(get("f")));
+    assertTrue(dependencyCollector.propagateUpdates().isEmpty());
+
+    typecheckerState.record(get("f"), getDefinition("f'"));
+    assertEquals(Collections.singleton(get("g")), dependencyCollector.propagateUpdates());
+    assertNull(getDefinition("g"));
+    assertNotNull(getDefinition("h"));
+  }
+
+  @Test
+  public void keptDependentRefersToCurrentDefinition() {
+    typeCheck(
+      "\\data D | d\n" +
+      "\\func g (x : D) : D => x");
+    dependencyCollector.setIncremental(true);
+    assertEquals(Collections.singleton(get("D")), dependencyCollector.update(get("D")));
+
+    typeCheckAgain(get("D"));
+    assertTrue(dependencyCollector.propagateUpdates().isEmpty());
+    FunctionDefinition g = (FunctionDefinition) getDefinition("g");
+    assertNotNull(g);
+    Expression type = DataCall((DataDefinition) getDefinition("D"), g.getResultType().cast(DataCallExpression.class).getSortArgument());
+    assertTrue(CompareVisitor.compare(DummyEquations.getInstance(), Equations.CMP.EQ, g.getResultType(), type, null));
+  }
+
+  @Test
+  public void dependentOfRetypecheckedDefinition() {
+    typeCheck(
+      "\\data D | d\n" +
+      "\\func f (x : D) : D => x\n" +
+      "\\func g (x : D) : D => f x");
+    dependencyCollector.setIncremental(true);
+    dependencyCollector.update(get("D"));
+    dependencyCollector.update(get("f"));
+
+    typeCheckAgain(get("D"), get("f"));
+    assertTrue(dependencyCollector.propagateUpdates().contains(get("g")));
+    assertNull(getDefinition("g"));
+  }
+
+  @Test
+  public void restoredDefinitionKeepsDependencies() {
+    typeCheck(
+      "\\func f => 0\n" +
+      "\\lemma l : 0 = 0 => path (\\lam _ => f)\n" +
+      "\\lemma l' : 0 = 0 => path (\\lam _ => 0)");
+    dependencyCollector.setIncremental(true);
+    dependencyCollector.update(get("l"));
+
+    // The new proof of l does not refer to f, but the restored one does
+    Concrete.FunctionDefinition l = (Concrete.FunctionDefinition) ConcreteReferableProvider.INSTANCE.getConcrete(get("l"));
+    Concrete.FunctionDefinition l1 = (Concrete.FunctionDefinition) ConcreteReferableProvider.INSTANCE.getConcrete(get("l'"));
+    ((Concrete.TermFunctionBody) l.getBody()).setTerm(((Concrete.TermFunctionBody) l1.getBody()).getTerm());
+    typeCheckAgain(get("l"));
+    assertTrue(dependencyCollector.propagateUpdates().isEmpty());
+
+    dependencyCollector.setIncremental(false);
+    assertTrue(dependencyCollector.update(get("f")).contains(get("l")));
+  }
+
+  @Test
+  public void mutuallyDependentDefinitionsTerminate() {
+    typeCheck(
+      "\\func f : Nat => 0\n" +
+      "\\func f' : Nat => 1\n" +
+      "\\func g (n : Nat) : Nat \\elim n | 0 => f | suc n => h n\n" +
+      "\\func h (n : Nat) : Nat \\elim n | 0 => 0 | suc n => g n");
+    dependencyCollector.setIncremental(true);
+    dependencyCollector.update(get("f"));
+
+    Concrete.FunctionDefinition f = (Concrete.FunctionDefinition) ConcreteReferableProvider.INSTANCE.getConcrete(get("f"));
+    Concrete.FunctionDefinition f1 = (Concrete.FunctionDefinition) ConcreteReferableProvider.INSTANCE.getConcrete(get("f'"));
+    ((Concrete.TermFunctionBody) f.getBody()).setTerm(((Concrete.TermFunctionBody) f1.getBody()).getTerm());
+    typeCheckAgain(get("f"));
+
+    Set<? extends TCReferable> reset = dependencyCollector.propagateUpdates();
+    for (int i = 0; !reset.isEmpty(); i++) {
+      assertTrue(i < 4);
+      typeCheckAgain(reset.toArray(new TCReferable[0]));
+      reset = dependencyCollector.propagateUpdates();
+    }
+    assertNotNull(getDefinition("g"));
+    assertNotNull(getDefinition("h"));
+  }
+}
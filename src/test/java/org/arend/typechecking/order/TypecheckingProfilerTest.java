@@ -0,0 +1,77 @@
+package org.arend.typechecking.order;
+
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.typechecking.TypeCheckingTestCase;
+import org.arend.typechecking.order.dependency.DummyDependencyListener;
+import org.arend.typechecking.order.listener.ProfilingOrderingListener;
+import org.arend.typechecking.order.listener.TypecheckingProfiler;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TypecheckingProfilerTest extends TypeCheckingTestCase {
+  private TypecheckingProfiler typeCheck(String text) {
+    TypecheckingProfiler profiler = new TypecheckingProfiler();
+    lastGroup = resolveNamesModule(text);
+    assertTrue(new ProfilingOrderingListener(libraryManager.getInstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, errorReporter, DummyDependencyListener.INSTANCE, PositionComparator.INSTANCE, profiler).typecheckModules(Collections.singletonList(lastGroup)));
+    return profiler;
+  }
+
+  private static TypecheckingProfiler.Profile find(List<TypecheckingProfiler.Profile> profiles, String name) {
+    for (TypecheckingProfiler.Profile profile : profiles) {
+      if (profile.getName().equals(name)) {
+        return profile;
+      }
+    }
+    fail("Profile of " + name + " is not found");
+    return null;
+  }
+
+  @Test
+  public void definitionsAndModules() {
+    TypecheckingProfiler profiler = typeCheck(
+      "\\func fib (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | 1 => 1\n" +
+      "  | suc (suc n) => fib n Nat.+ fib (suc n)\n" +
+      "\\func test : fib 12 = 144 => path (\\lam _ => 144)\n" +
+      "\\func k => 1");
+
+    List<TypecheckingProfiler.Profile> definitions = profiler.getDefinitionProfiles();
+    assertEquals(3, definitions.size());
+    for (int i = 1; i < definitions.size(); i++) {
+      assertTrue(definitions.get(i - 1).getWallTime() >= definitions.get(i).getWallTime());
+    }
+    assertTrue(find(definitions, "test").getNormalizationSteps() > 0);
+    assertEquals(0, find(definitions, "k").getNormalizationSteps());
+
+    List<TypecheckingProfiler.Profile> modules = profiler.getModuleProfiles();
+    assertEquals(1, modules.size());
+    long wallTime = 0;
+    long normalizationSteps = 0;
+    for (TypecheckingProfiler.Profile definition : definitions) {
+      assertEquals(modules.get(0).getName(), definition.getModule());
+      wallTime += definition.getWallTime();
+      normalizationSteps += definition.getNormalizationSteps();
+    }
+    assertEquals(wallTime, modules.get(0).getWallTime());
+    assertEquals(normalizationSteps, modules.get(0).getNormalizationSteps());
+  }
+
+  @Test
+  public void json() throws IOException {
+    TypecheckingProfiler profiler = typeCheck("\\func f (x : Nat) => x\n\\func g => f 0");
+    StringBuilder builder = new StringBuilder();
+    profiler.writeJson(builder);
+    String json = builder.toString();
+    assertTrue(json.startsWith("{\n  \"modules\": ["));
+    assertTrue(json.contains("{\"name\": \"f\", \"module\": "));
+    assertTrue(json.contains("{\"name\": \"g\", \"module\": "));
+    assertTrue(json.contains("\"normalizationSteps\": "));
+  }
+}
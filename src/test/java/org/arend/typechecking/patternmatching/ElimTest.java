@@ -24,6 +24,7 @@ import java.util.Map;
 import static org.arend.ExpressionFactory.*;
 import static org.arend.core.expr.ExpressionFactory.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class ElimTest extends TypeCheckingTestCase {
   @Test
@@ -309,6 +310,33 @@ public class ElimTest extends TypeCheckingTestCase {
     assertEquals(new BranchElimTree(nParam, children), def.getBody());
   }
 
+  @Test
+  public void branchDispatch() {
+    typeCheckModule(
+      "\\data D | A | B | C | E\n" +
+      "\\data D' | A' | B'\n" +
+      "\\func f (d : D) : Nat\n" +
+      " | B => 1\n" +
+      " | E => 3\n" +
+      " | _ => 0\n" +
+      "\\func test : \\Sigma (f A = 0) (f B = 1) (f C = 0) (f E = 3) => (path (\\lam _ => 0), path (\\lam _ => 1), path (\\lam _ => 0), path (\\lam _ => 3))");
+    DataDefinition dataDef = (DataDefinition) getDefinition("D");
+    DataDefinition dataDef2 = (DataDefinition) getDefinition("D'");
+    for (int i = 0; i < dataDef.getConstructors().size(); i++) {
+      assertEquals(i, dataDef.getConstructors().get(i).getIndex());
+    }
+
+    Map<Constructor, ElimTree> children = new HashMap<>();
+    ElimTree leaf = new LeafElimTree(EmptyDependentLink.getInstance(), Zero());
+    children.put(dataDef.getConstructor("C"), leaf);
+    BranchElimTree elimTree = new BranchElimTree(EmptyDependentLink.getInstance(), children);
+    assertEquals(leaf, elimTree.getChild(dataDef.getConstructor("C")));
+    assertNull(elimTree.getChild(dataDef.getConstructor("A")));
+    assertNull(elimTree.getChild(dataDef.getConstructor("E")));
+    assertNull(elimTree.getChild(dataDef2.getConstructor("A'")));
+    assertNull(elimTree.getChild(null));
+  }
+
   @Test
   public void testElimTranslationSubst3() {
     typeCheckModule(
@@ -365,4 +365,20 @@ public class TypeClassesGlobal extends TypeCheckingTestCase {
       "\\class D \\extends C | X => Nat -> Nat\n" +
       "\\instance ddd : D", 1);
   }
+
+  @Test
+  public void integerInstances() {
+    typeCheckModule(
+      "\\class X (n : Nat) {\n" +
+      "  | val : n = n -> Nat\n" +
+      "}\n" +
+      "\\instance X0 : X 0 | val => \\lam _ => 10\n" +
+      "\\instance X1 : X 1 | val => \\lam _ => 11\n" +
+      "\\instance X2 : X 2 | val => \\lam _ => 12\n" +
+      "\\instance X2' : X 2 | val => \\lam _ => 13\n" +
+      "\\func f => val (path (\\lam _ => 2))\n" +
+      "\\func g => val (path (\\lam _ => 0)) Nat.+ val (path (\\lam _ => 2))\n" +
+      "\\func test1 : f = 12 => path (\\lam _ => 12)\n" +
+      "\\func test2 : g = 22 => path (\\lam _ => 22)");
+  }
 }